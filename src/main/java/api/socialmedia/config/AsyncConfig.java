@@ -0,0 +1,78 @@
+package api.socialmedia.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Value("${app.feed.fan-out.pool-size}")
+    private int poolSize;
+
+    @Value("${app.feed.fan-out.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${app.auth.hashing.pool-size}")
+    private int hashingPoolSize;
+
+    @Value("${app.auth.hashing.queue-capacity}")
+    private int hashingQueueCapacity;
+
+    @Value("${app.push.pool-size}")
+    private int pushPoolSize;
+
+    @Value("${app.push.queue-capacity}")
+    private int pushQueueCapacity;
+
+    /**
+     * Пул для обновления лент. Когда очередь заполнена, задачу выполняет вызывающий поток:
+     * запись поста замедляется, но события не теряются.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor timelineExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(poolSize);
+        taskExecutor.setMaxPoolSize(poolSize);
+        taskExecutor.setQueueCapacity(queueCapacity);
+        taskExecutor.setThreadNamePrefix("timeline-");
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        return taskExecutor;
+    }
+
+    /**
+     * Пул для BCrypt при входе и регистрации. Очередь ограничена, лишние задачи отклоняются
+     * (TaskRejectedException), а не выполняются потоком запроса.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingTaskExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(hashingPoolSize);
+        taskExecutor.setMaxPoolSize(hashingPoolSize);
+        taskExecutor.setQueueCapacity(hashingQueueCapacity);
+        taskExecutor.setThreadNamePrefix("password-hashing-");
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return taskExecutor;
+    }
+
+    /**
+     * Пул для доставки событий по WebSocket. Доставка best-effort: когда очередь заполнена,
+     * событие отбрасывается, чтобы не задерживать запись, а клиент догоняет пропущенное по курсору.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor pushExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(pushPoolSize);
+        taskExecutor.setMaxPoolSize(pushPoolSize);
+        taskExecutor.setQueueCapacity(pushQueueCapacity);
+        taskExecutor.setThreadNamePrefix("push-");
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        return taskExecutor;
+    }
+}
@@ -0,0 +1,95 @@
+package api.socialmedia.config;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.datasource.ReadYourWritesTracker;
+import api.socialmedia.datasource.ReplicaHealthMonitor;
+import api.socialmedia.datasource.ReplicaProperties;
+import api.socialmedia.datasource.ReplicaRoutingDataSource;
+import api.socialmedia.util.AccessTokenManager;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Источники данных: primary (spring.datasource) и реплики для чтения (app.datasource.replicas).
+ * Приложение работает через маршрутизирующий источник, обернутый в LazyConnectionDataSourceProxy.
+ * Без реплик все запросы идут на primary.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaHealthMonitor replicaHealthMonitor(HikariDataSource primaryDataSource,
+                                                     ReplicaProperties properties,
+                                                     MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaProperties.Replica> configured = properties.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            String name = "replica-" + i;
+            replicas.put(name, replicaDataSource(name, configured.get(i), properties.getReplicaPoolSize(), meterRegistry));
+        }
+        return new ReplicaHealthMonitor(primaryDataSource, replicas, properties.getMaxLag(), meterRegistry);
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(ReplicaProperties properties) {
+        return new ReadYourWritesTracker(properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public PrimaryReads primaryReads(PlatformTransactionManager transactionManager) {
+        return new PrimaryReads(transactionManager);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaHealthMonitor replicaHealthMonitor,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 AccessTokenManager accessTokenManager,
+                                 MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(replicaHealthMonitor,
+                readYourWritesTracker, accessTokenManager, meterRegistry);
+        Map<Object, Object> targets = new HashMap<>(replicaHealthMonitor.getReplicas());
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primaryDataSource);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static HikariDataSource replicaDataSource(String name, ReplicaProperties.Replica replica,
+                                                      int poolSize, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(replica.getUsername());
+        dataSource.setPassword(replica.getPassword());
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        dataSource.setInitializationFailTimeout(-1);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+}
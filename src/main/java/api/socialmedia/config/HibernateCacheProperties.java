@@ -0,0 +1,30 @@
+package api.socialmedia.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Регионы второго уровня кеша Hibernate (app.hibernate-cache.regions).
+ * Регион, которого нет в настройках, при старте считается ошибкой.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.hibernate-cache")
+public class HibernateCacheProperties {
+
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Data
+    public static class Region {
+
+        private long maxSize = 10_000;
+
+        /**
+         * Без значения записи не устаревают по времени (нужно для региона меток обновления таблиц).
+         */
+        private Duration expireAfterWrite;
+    }
+}
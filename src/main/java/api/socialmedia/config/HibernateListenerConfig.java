@@ -0,0 +1,47 @@
+package api.socialmedia.config;
+
+import api.socialmedia.security.PrincipalCache;
+import api.socialmedia.security.PrincipalCacheInvalidator;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Слушатели событий Hibernate, для которых нет аннотаций JPA.
+ * Изменения коллекций (роли пользователя) не вызывают @PostUpdate у владельца,
+ * поэтому {@link PrincipalCacheInvalidator} регистрируется и как слушатель коллекций.
+ */
+@Configuration
+public class HibernateListenerConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateListenerCustomizer(ObjectProvider<PrincipalCache> principalCache) {
+        PrincipalCacheInvalidator invalidator = new PrincipalCacheInvalidator(principalCache);
+        IntegratorProvider integrators = () -> List.of(new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                                  SessionFactoryImplementor sessionFactory) {
+                EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+                registry.appendListeners(EventType.POST_COLLECTION_UPDATE, invalidator);
+                registry.appendListeners(EventType.POST_COLLECTION_RECREATE, invalidator);
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        });
+        return hibernateProperties -> hibernateProperties.put(JpaSettings.INTEGRATOR_PROVIDER, integrators);
+    }
+}
@@ -0,0 +1,21 @@
+package api.socialmedia.config;
+
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    /**
+     * Планировщик для @Scheduled. WebSocket-брокер регистрирует свой messageBrokerTaskScheduler,
+     * и без этого бина задачи по расписанию делили бы его с heartbeat STOMP-сессий.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
@@ -63,6 +63,8 @@ public class SecurityConfig {
                 .permitAll()
                 .requestMatchers("/register*", "/login*")
                 .permitAll()
+                .requestMatchers("/ws")
+                .permitAll()
                 //.requestMatchers("/", "/").hasAnyAuthority("ROLE_USER", "ROLE_ADMIN")
                 .anyRequest()
                 .authenticated()
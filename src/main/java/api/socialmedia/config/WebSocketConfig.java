@@ -0,0 +1,98 @@
+package api.socialmedia.config;
+
+import api.socialmedia.security.StompAuthenticationInterceptor;
+import org.apache.tomcat.websocket.server.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
+
+/**
+ * STOMP поверх WebSocket для доставки новых сообщений и постов вместо опроса.
+ * Простой брокер в памяти: сессии и подписки каждого узла хранятся в его реестре, клиент подписывается
+ * на /user/queue/messages и /user/queue/feed. Исходящие кадры каждой сессии буферизуются не больше
+ * app.push.send-buffer-size-limit и отправляются не дольше app.push.send-time-limit:
+ * медленный клиент при превышении отключается, а не копит память узла.
+ * Heartbeat обнаруживает оборванные соединения, которые иначе держали бы сессию до таймаута TCP.
+ * Клиент присылает только короткие CONNECT и SUBSCRIBE, поэтому входящие буферы каждой сессии
+ * ограничены app.push.message-size-limit: на простаивающих соединениях они составляют основную часть памяти.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Value("${app.configuration.cors.origins}")
+    private String origins;
+
+    @Value("${app.push.heartbeat}")
+    private Duration heartbeat;
+
+    @Value("${app.push.send-buffer-size-limit}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${app.push.send-time-limit}")
+    private Duration sendTimeLimit;
+
+    @Value("${app.push.message-size-limit}")
+    private DataSize messageSizeLimit;
+
+    private final StompAuthenticationInterceptor stompAuthenticationInterceptor;
+    private TaskScheduler heartbeatScheduler;
+
+    public WebSocketConfig(StompAuthenticationInterceptor stompAuthenticationInterceptor) {
+        this.stompAuthenticationInterceptor = stompAuthenticationInterceptor;
+    }
+
+    @Autowired
+    public void setHeartbeatScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler heartbeatScheduler) {
+        this.heartbeatScheduler = heartbeatScheduler;
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> webSocketBufferCustomizer() {
+        String bufferSize = String.valueOf(messageSizeLimit.toBytes());
+        return factory -> factory.addContextCustomizers(context -> {
+            context.addParameter(Constants.TEXT_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM, bufferSize);
+            context.addParameter(Constants.BINARY_BUFFER_SIZE_SERVLET_CONTEXT_INIT_PARAM, bufferSize);
+        });
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOrigins(origins);
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/queue")
+                .setHeartbeatValue(new long[]{heartbeat.toMillis(), heartbeat.toMillis()})
+                .setTaskScheduler(heartbeatScheduler);
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit((int) sendBufferSizeLimit.toBytes())
+                .setSendTimeLimit((int) sendTimeLimit.toMillis())
+                .setMessageSizeLimit((int) messageSizeLimit.toBytes());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthenticationInterceptor);
+    }
+}
@@ -9,11 +9,14 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 
 
 @Slf4j
@@ -28,10 +31,11 @@ public class AuthenticationController {
     @ApiResponses(value = {
             @ApiResponse(responseCode  = "200", description = "User registered successfully"),
             @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "429", description = "Too many requests"),
     })
     @PostMapping("/register")
-    public ResponseEntity<?>register(@RequestBody RegRequest request) {
-        return authenticationService.register(request);
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody RegRequest request, HttpServletRequest httpRequest) {
+        return authenticationService.register(request, httpRequest.getRemoteAddr());
     }
 
 
@@ -39,11 +43,12 @@ public class AuthenticationController {
     @ApiResponses(value = {
             @ApiResponse(responseCode  = "200", description = "Login successful"),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "429", description = "Too many requests"),
     })
     @PostMapping("/login")
-    public AuthResponse login(@RequestBody AuthRequest request) {
+    public CompletableFuture<AuthResponse> login(@RequestBody AuthRequest request, HttpServletRequest httpRequest) {
         log.info("Authentication is successfully");
-        return authenticationService.login(request);
+        return authenticationService.login(request, httpRequest.getRemoteAddr());
 
     }
 }
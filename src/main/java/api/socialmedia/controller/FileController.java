@@ -1,16 +1,25 @@
 package api.socialmedia.controller;
 
 
+import api.socialmedia.dto.responce.FileMetadataDto;
 import api.socialmedia.service.FileService;
+import api.socialmedia.util.ContentTypeDetector;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping(value = "/file")
@@ -26,19 +35,44 @@ public class FileController {
      * Данный метод получает файл по ID поста
      * Метод выделен в отдельный класс контроллера, чтобы не нагружать пост-контроллер и чтобы
      * файл можно было получить по отдельному запросу, без выгрузки его сразу в посте.
+     * Файл отдается потоком из хранилища небольшими блоками, поэтому память на одну загрузку не зависит от размера файла.
+     * ETag - хеш содержимого файла, по If-None-Match / If-Modified-Since возвращается 304 без обращения к хранилищу.
+     * Заголовок Range (в том числе несколько диапазонов) обрабатывается Spring и дает ответ 206 Partial Content.
+     * Браузер не угадывает тип по содержимому (nosniff), а все, кроме картинок, отдается как вложение.
      */
     @Operation(summary = "Download a file", description = "Download a file by post ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "File downloaded successfully"),
-            @ApiResponse(responseCode = "404", description = "File not found")
+            @ApiResponse(responseCode = "206", description = "Requested ranges of the file"),
+            @ApiResponse(responseCode = "304", description = "File not modified"),
+            @ApiResponse(responseCode = "404", description = "File not found"),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable")
     })
 
     @GetMapping("/download/{id}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable Long id) {
-        byte[]file = fileService.downloadFile(id);
-        log.info("File %s loaded successfully");
+    public ResponseEntity<Resource> downloadFile(@PathVariable Long id, WebRequest request) {
+        FileMetadataDto metadata = fileService.getFileMetadata(id);
+        String eTag = "\"" + metadata.getBlobKey() + "\"";
+        long lastModified = metadata.getLastModified() == null ? -1
+                : metadata.getLastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (request.checkNotModified(eTag, lastModified)) {
+            log.info("File {} not modified", id);
+            return null;
+        }
+        Resource file = fileService.downloadFile(metadata.getBlobKey());
+        MediaType contentType = ContentTypeDetector.storedType(metadata.getContentType());
+        log.info("File {} loaded successfully", id);
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(MediaType.MULTIPART_FORM_DATA_VALUE))
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePrivate())
+                .contentType(contentType)
+                .header("X-Content-Type-Options", "nosniff")
+                .headers(headers -> {
+                    if (!ContentTypeDetector.isInline(contentType)) {
+                        headers.setContentDisposition(ContentDisposition.attachment().build());
+                    }
+                })
                 .body(file);
     }
 }
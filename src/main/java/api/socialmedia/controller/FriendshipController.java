@@ -1,6 +1,7 @@
 package api.socialmedia.controller;
 
 
+import api.socialmedia.dto.request.FriendshipBatchRequestDto;
 import api.socialmedia.dto.request.FriendshipRequestDto;
 import api.socialmedia.dto.responce.FollowersResponseDto;
 import api.socialmedia.dto.responce.FriendshipResponseDto;
@@ -47,6 +48,21 @@ public class FriendshipController {
         return new ResponseEntity<>(responseDto, HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Send friend requests to several users", responses = {
+            @ApiResponse(responseCode = "201"),
+            @ApiResponse(responseCode = "400", description = "Invalid request data",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Sender is not the current user, request to yourself or duplicate request",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "User not found",
+                    content = @Content)
+    })
+    @PostMapping("/request/batch")
+    public ResponseEntity<List<FollowersResponseDto>> sendFriendshipRequests(@RequestBody FriendshipBatchRequestDto request) {
+        List<FollowersResponseDto> responseDtos = friendshipService.sendFriendshipRequests(request);
+        return new ResponseEntity<>(responseDtos, HttpStatus.CREATED);
+    }
+
     @Operation(summary = "Accept a new friend request", responses = {
             @ApiResponse(responseCode = "200",
                     content = @Content(schema = @Schema(implementation = FriendshipResponseDto.class))),
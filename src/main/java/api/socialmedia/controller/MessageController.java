@@ -2,6 +2,8 @@ package api.socialmedia.controller;
 
 
 import api.socialmedia.dto.request.MessageRequestDto;
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.MessageResponseDto;
 import api.socialmedia.service.MessageService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(value = "/messages")
@@ -30,23 +33,79 @@ public class MessageController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Message sent successfully"),
             @ApiResponse(responseCode = "400", description = "Bad request"),
-            @ApiResponse(responseCode = "404", description = "User not found")
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "429", description = "Too many requests")
     })
     @PostMapping("/send")
-    public ResponseEntity<String> sendMessage(@RequestBody MessageRequestDto messageRequestDto) {
-        messageService.sendMessage(messageRequestDto);
-        return ResponseEntity.ok("Message sent successfully.");
+    public CompletableFuture<ResponseEntity<String>> sendMessage(@RequestBody MessageRequestDto messageRequestDto) {
+        return messageService.sendMessage(messageRequestDto)
+                .thenApply(sent -> ResponseEntity.ok("Message sent successfully."));
     }
 
 
-    @Operation(summary = "Get messages between users", description = "Retrieve messages between two users")
+    @Operation(summary = "Send messages in a batch", description = "Send several messages in one transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages sent successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "403", description = "Sender is not the current user"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    @PostMapping("/send/batch")
+    public ResponseEntity<String> sendMessages(@RequestBody List<MessageRequestDto> messageRequestDtos) {
+        messageService.sendMessages(messageRequestDtos);
+        return ResponseEntity.ok("Messages sent successfully.");
+    }
+
+
+    /**
+     * Get messages between users by cursor.
+     * @param before opaque token of an older page: nextCursor of a page read without cursor or with before.
+     * @param after opaque token of a newer page: nextCursor of a page read with after.
+     * @param size how many messages on page.
+     * @return messages from newest to oldest and the cursor of the next page in the same direction
+     */
+    @Operation(summary = "Get messages between users", description = "Retrieve a page of messages between two users, newest first")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
     @GetMapping("/{userOneId}/{userTwoId}")
-    public ResponseEntity<List<MessageResponseDto>> getMessages(@PathVariable Long userOneId, @PathVariable Long userTwoId) {
-        List<MessageResponseDto> messages = messageService.getMessages(userOneId, userTwoId);
+    public ResponseEntity<CursorPageDto<MessageResponseDto>> getMessages(@PathVariable Long userOneId,
+                                                                         @PathVariable Long userTwoId,
+                                                                         @RequestParam(required = false) String before,
+                                                                         @RequestParam(required = false) String after,
+                                                                         @RequestParam(defaultValue = "50") int size) {
+        CursorPageDto<MessageResponseDto> messages = messageService.getMessages(userOneId, userTwoId, before, after, size);
         return ResponseEntity.ok(messages);
     }
+
+
+    /**
+     * Get the inbox of the current user by cursor.
+     * @param cursor opaque token from the previous page, empty for the first page.
+     * @param size how many conversations on page.
+     * @return conversations from the most recently active and the cursor of the next page
+     */
+    @Operation(summary = "Get inbox", description = "Retrieve conversations of the current user, most recently active first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Inbox retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size")
+    })
+    @GetMapping("/inbox")
+    public ResponseEntity<CursorPageDto<ConversationResponseDto>> getInbox(@RequestParam(required = false) String cursor,
+                                                                           @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(messageService.getInbox(cursor, size));
+    }
+
+
+    @Operation(summary = "Mark conversation read", description = "Reset the unread counter of the current user in a conversation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Conversation marked read")
+    })
+    @PutMapping("/inbox/{userId}/read")
+    public ResponseEntity<String> markConversationRead(@PathVariable Long userId) {
+        messageService.markConversationRead(userId);
+        return ResponseEntity.ok("Conversation marked read.");
+    }
 }
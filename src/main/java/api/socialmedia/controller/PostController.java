@@ -2,6 +2,7 @@ package api.socialmedia.controller;
 
 
 import api.socialmedia.dto.request.PostRequestDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.service.PostService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -113,6 +114,47 @@ public class PostController {
 
 
 
+    /**
+     * Get a list of posts by cursor.
+     * @param cursor opaque token from the previous page, empty for the first page.
+     * @param size how many results on page.
+     * @return posts from newest to oldest and the cursor of the next page
+     */
+    @Operation(summary = "Get all posts by cursor", responses = {
+            @ApiResponse(responseCode = "200", description = "Success",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size",
+                    content = @Content)
+    })
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDto<PostResponseDto>> getPosts(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") int size) {
+        CursorPageDto<PostResponseDto> posts = postService.getPosts(cursor, size);
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+
+    /**
+     * Get a list of user's posts by cursor.
+     * @param cursor opaque token from the previous page, empty for the first page.
+     * @param size how many results on page.
+     * @return user's posts from newest to oldest and the cursor of the next page
+     */
+    @Operation(summary = "Get all user's posts by cursor", responses = {
+            @ApiResponse(responseCode = "200", description = "Success",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size",
+                    content = @Content)
+    })
+    @GetMapping("/{id}/user/cursor")
+    public ResponseEntity<CursorPageDto<PostResponseDto>> getUsersPosts(@PathVariable Long id,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "20") int size) {
+        CursorPageDto<PostResponseDto> posts = postService.getUsersPosts(id, cursor, size);
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+
     /**
      * Edit post.
      * @param editRequest contains required parameters 'title' and 'text'
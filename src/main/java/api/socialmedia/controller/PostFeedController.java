@@ -1,6 +1,7 @@
 package api.socialmedia.controller;
 
 
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.service.PostFeedService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -32,6 +34,7 @@ public class PostFeedController {
     @Operation(summary = "Get user activity feed", description = "Retrieve user's activity feed")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Activity feed retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Page is deeper than the stored feed, use the cursor endpoint"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
     public ResponseEntity<List<PostResponseDto>> getUserActivityFeed(
@@ -40,4 +43,19 @@ public class PostFeedController {
         List<PostResponseDto> activityFeed = activityService.getUserActivityFeed(userId, pageable);
         return ResponseEntity.ok(activityFeed);
     }
+
+    @GetMapping("/{userId}/cursor")
+    @Operation(summary = "Get user activity feed by cursor",
+            description = "Retrieve user's activity feed page after the given cursor, without a count query")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Activity feed retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public ResponseEntity<CursorPageDto<PostResponseDto>> getUserActivityFeed(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(activityService.getUserActivityFeed(userId, cursor, size));
+    }
 }
@@ -0,0 +1,51 @@
+package api.socialmedia.datasource;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Чтения, которые должны видеть primary, а не отстающую реплику: загрузки для долгих кешей (граф дружбы, принципал)
+ * и проверка пользователя при входе и регистрации.
+ * Соединения, полученные внутри {@link #read}, маршрутизируются на primary и не закрепляют пользователя за ним.
+ * Если текущая транзакция уже читает с реплики, чтение идет в отдельной readOnly-транзакции: она берет соединение
+ * из пула primary, а не ждет второе соединение из того же пула, что и приостановленная транзакция.
+ * Иначе чтение идет в текущей транзакции, а если ее соединение еще не получено, вся транзакция уходит на primary.
+ */
+public class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private final TransactionTemplate separateTransaction;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager) {
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.separateTransaction.setReadOnly(true);
+    }
+
+    public <T> T read(Supplier<T> read) {
+        if (ReplicaRoutingDataSource.isCurrentTransactionOnReplica()) {
+            return separateTransaction.execute(status -> onPrimary(read));
+        }
+        return onPrimary(read);
+    }
+
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+
+    private static <T> T onPrimary(Supplier<T> read) {
+        boolean outermost = ACTIVE.get() == null;
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (outermost) {
+                ACTIVE.remove();
+            }
+        }
+    }
+}
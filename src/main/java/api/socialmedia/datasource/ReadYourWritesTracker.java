@@ -0,0 +1,35 @@
+package api.socialmedia.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Пользователи, которые недавно писали в базу. Пока окно не истекло, их чтения идут на primary,
+ * чтобы пользователь видел свои изменения, даже если реплика еще не догнала primary.
+ */
+public class ReadYourWritesTracker {
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(1_000_000)
+                .build();
+    }
+
+    /**
+     * Вызывается сервисами после записи от имени пользователя. Без пользователя (фоновые задачи) ничего не делает.
+     */
+    public void recordWrite(Long userId) {
+        if (userId != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    public boolean isPinned(Long userId) {
+        return recentWriters.getIfPresent(userId) != null;
+    }
+}
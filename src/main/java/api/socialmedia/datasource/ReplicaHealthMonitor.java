@@ -0,0 +1,152 @@
+package api.socialmedia.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проверка реплик: доступность, прием WAL и отставание репликации.
+ * Реплика недоступна, потеряла поток WAL от primary или отстает больше app.datasource.max-lag - запросы на нее
+ * не идут до следующей успешной проверки. До первой проверки ни одна реплика не используется, чтения идут на primary.
+ */
+@Slf4j
+public class ReplicaHealthMonitor {
+
+    private static final String PRIMARY_LSN_QUERY = "SELECT pg_current_wal_lsn()::text";
+
+    /**
+     * Принимает ли реплика WAL и отставание в секундах.
+     * Реплика без потокового приемника WAL (pg_stat_wal_receiver) не догонит primary, сколько бы ни применила.
+     * Отставание 0, если реплика применила WAL до позиции, которую primary сообщил перед проверкой,
+     * или это не реплика (pg_is_in_recovery() = false). Иначе - время с последней примененной транзакции;
+     * без позиции primary сравнение пропускается, а без примененных транзакций отставание бесконечно.
+     */
+    private static final String STATE_QUERY = """
+            SELECT NOT pg_is_in_recovery() OR EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming'),
+                   CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_wal_lsn_diff(?::pg_lsn, pg_last_wal_replay_lsn()) <= 0 THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::float8, 'Infinity')
+                   END""";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final Duration maxLag;
+    private final Map<String, Double> lagSeconds = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> usable = List.of();
+
+    public ReplicaHealthMonitor(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLag = maxLag;
+        replicas.keySet().forEach(name -> {
+            Gauge.builder("datasource.replica.lag", lagSeconds, lags -> lags.getOrDefault(name, Double.NaN))
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.usable", this, monitor -> monitor.usable.contains(name) ? 1 : 0)
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Следующая пригодная реплика по кругу или null, если пригодных нет.
+     */
+    public String nextUsableReplica() {
+        List<String> current = usable;
+        if (current.isEmpty()) {
+            return null;
+        }
+        return current.get(Math.floorMod(next.getAndIncrement(), current.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.health-check-interval}")
+    public void checkReplicas() {
+        List<String> nowUsable = new ArrayList<>(replicas.size());
+        String primaryLsn = primaryLsn();
+        replicas.forEach((name, dataSource) -> {
+            boolean wasUsable = usable.contains(name);
+            try {
+                ReplicaState state = state(dataSource, primaryLsn);
+                double lag = state.lagSeconds();
+                lagSeconds.put(name, lag);
+                if (!state.streaming()) {
+                    if (wasUsable) {
+                        log.warn("Replica {} does not stream WAL from primary, reads fall back to primary", name);
+                    }
+                } else if (lag <= maxLag.toMillis() / 1000.0) {
+                    nowUsable.add(name);
+                    if (!wasUsable) {
+                        log.info("Replica {} is usable, lag {}s", name, lag);
+                    }
+                } else if (wasUsable) {
+                    log.warn("Replica {} lags {}s behind primary, reads fall back to primary", name, lag);
+                }
+            } catch (SQLException e) {
+                lagSeconds.remove(name);
+                if (wasUsable) {
+                    log.warn("Replica {} is unavailable, reads fall back to primary: {}", name, e.getMessage());
+                }
+            }
+        });
+        usable = List.copyOf(nowUsable);
+    }
+
+    public void close() throws Exception {
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Позиция WAL на primary или null, если primary недоступен: тогда отставание считается только по времени.
+     */
+    private String primaryLsn() {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(PRIMARY_LSN_QUERY)) {
+            rows.next();
+            return rows.getString(1);
+        } catch (SQLException e) {
+            log.debug("Primary WAL position is unavailable: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static ReplicaState state(DataSource dataSource, String primaryLsn) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(STATE_QUERY)) {
+            statement.setString(1, primaryLsn);
+            try (ResultSet rows = statement.executeQuery()) {
+                rows.next();
+                return new ReplicaState(rows.getBoolean(1), rows.getDouble(2));
+            }
+        }
+    }
+
+    private record ReplicaState(boolean streaming, double lagSeconds) {
+    }
+}
@@ -0,0 +1,37 @@
+package api.socialmedia.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки реплик для чтения (app.datasource). Primary по-прежнему задается spring.datasource.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Реплика с отставанием больше этого значения не получает запросы до следующей проверки.
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+
+    /**
+     * Сколько после своей записи пользователь читает с primary.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    private int replicaPoolSize = 10;
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,103 @@
+package api.socialmedia.datasource;
+
+import api.socialmedia.util.AccessTokenManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Маршрутизация соединений между primary и репликами.
+ * Транзакции readOnly = true идут на пригодную реплику (по кругу), все остальное - на primary.
+ * Чтения пользователя, который недавно писал, тоже идут на primary (read-your-writes): записи отмечают сервисы,
+ * маршрутизация только проверяет отметку. Чтения внутри {@link PrimaryReads} всегда идут на primary.
+ * Решение принимается при получении соединения, поэтому источник оборачивается в LazyConnectionDataSourceProxy:
+ * физическое соединение берется при первом запросе, когда признак readOnly транзакции уже выставлен.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final Object TRANSACTION_ROUTE = new Object();
+
+    private final ReplicaHealthMonitor healthMonitor;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final AccessTokenManager accessTokenManager;
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter pinnedRoutes;
+
+    public ReplicaRoutingDataSource(ReplicaHealthMonitor healthMonitor,
+                                    ReadYourWritesTracker readYourWritesTracker,
+                                    AccessTokenManager accessTokenManager,
+                                    MeterRegistry meterRegistry) {
+        this.healthMonitor = healthMonitor;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.accessTokenManager = accessTokenManager;
+        this.primaryRoutes = meterRegistry.counter("datasource.route", "target", "primary");
+        this.replicaRoutes = meterRegistry.counter("datasource.route", "target", "replica");
+        this.pinnedRoutes = meterRegistry.counter("datasource.route", "target", "primary-pinned");
+    }
+
+    /**
+     * Текущая транзакция уже получила соединение с репликой.
+     */
+    public static boolean isCurrentTransactionOnReplica() {
+        Object route = TransactionSynchronizationManager.getResource(TRANSACTION_ROUTE);
+        return route != null && !PRIMARY.equals(route);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String route = route();
+        bindToTransaction(route);
+        return route;
+    }
+
+    private String route() {
+        if (PrimaryReads.isActive() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+        Long userId = accessTokenManager.getUserId();
+        if (userId != null && readYourWritesTracker.isPinned(userId)) {
+            pinnedRoutes.increment();
+            return PRIMARY;
+        }
+        String replica = healthMonitor.nextUsableReplica();
+        if (replica == null) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+        replicaRoutes.increment();
+        return replica;
+    }
+
+    /**
+     * Маршрут запоминается на время транзакции, приостанавливается и восстанавливается вместе с ней.
+     */
+    private static void bindToTransaction(String route) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(TRANSACTION_ROUTE)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(TRANSACTION_ROUTE, route);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(TRANSACTION_ROUTE);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(TRANSACTION_ROUTE, route);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_ROUTE);
+            }
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package api.socialmedia.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class FriendshipBatchRequestDto {
+    private Long senderId;
+    private List<Long> receiverIds;
+}
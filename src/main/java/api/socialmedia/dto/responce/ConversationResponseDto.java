@@ -0,0 +1,21 @@
+package api.socialmedia.dto.responce;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationResponseDto {
+
+    private Long userId;
+    private Long lastMessageId;
+    private Long lastSenderId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageDate;
+    private Integer unreadCount;
+}
@@ -0,0 +1,24 @@
+package api.socialmedia.dto.responce;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница результатов для курсорной пагинации.
+ * В отличие от Page не содержит общего числа элементов, поэтому не требует count-запроса.
+ * Для следующей страницы клиент передает nextCursor без изменений.
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDto<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+}
@@ -0,0 +1,26 @@
+package api.socialmedia.dto.responce;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Метаданные файла поста: ссылка на блоб, размер, тип содержимого и дата изменения.
+ * newBlob заполняется только при сохранении файла: блоб был записан этой загрузкой.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileMetadataDto {
+
+    private Long postId;
+    private String blobKey;
+    private Long size;
+    private String contentType;
+    private LocalDateTime lastModified;
+    private boolean newBlob;
+}
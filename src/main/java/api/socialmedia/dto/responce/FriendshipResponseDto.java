@@ -1,10 +1,14 @@
 package api.socialmedia.dto.responce;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class FriendshipResponseDto {
     private Long id;
     private Long userOneId;
@@ -1,11 +1,15 @@
 package api.socialmedia.dto.responce;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class MessageResponseDto {
 
     private Long id;
@@ -0,0 +1,18 @@
+package api.socialmedia.dto.responce;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Уведомление о новом посте друга, которое уходит по WebSocket в /user/queue/feed.
+ * Сам пост клиент читает из ленты.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostNotificationDto {
+
+    private Long postId;
+    private Long authorId;
+}
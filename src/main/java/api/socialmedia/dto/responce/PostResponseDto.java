@@ -20,4 +20,11 @@ public class PostResponseDto {
     private String fileUrl;
     private Long userId;
     private LocalDateTime date;
+
+    /**
+     * Конструктор для JPQL-проекций (select new ...): ссылку на файл проставляет сервис.
+     */
+    public PostResponseDto(Long id, String title, String text, Long userId, LocalDateTime date) {
+        this(id, title, text, null, userId, date);
+    }
 }
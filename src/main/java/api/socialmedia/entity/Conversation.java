@@ -0,0 +1,64 @@
+package api.socialmedia.entity;
+
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Переписка двух пользователей в каноническом виде (userOneId меньше userTwoId) с денормализованным
+ * последним сообщением и числом непрочитанных для каждой стороны.
+ * Строка обновляется в той же транзакции, что и сообщение, поэтому инбокс читается из этой таблицы
+ * по индексу последней активности, без агрегации по messages.
+ * Строки инбокса сразу строят ConversationResponseDto со стороны читающего пользователя (см. {@link #INBOX_ENTRY}).
+ */
+@Entity
+@Table(name = "conversations")
+@IdClass(ConversationId.class)
+@SqlResultSetMapping(name = Conversation.INBOX_ENTRY, classes = @ConstructorResult(
+        targetClass = ConversationResponseDto.class,
+        columns = {
+                @ColumnResult(name = "user_id", type = Long.class),
+                @ColumnResult(name = "last_message_id", type = Long.class),
+                @ColumnResult(name = "last_sender_id", type = Long.class),
+                @ColumnResult(name = "last_message_preview", type = String.class),
+                @ColumnResult(name = "last_message_date", type = LocalDateTime.class),
+                @ColumnResult(name = "unread_count", type = Integer.class)
+        }))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Conversation {
+
+    public static final String INBOX_ENTRY = "Conversation.inboxEntry";
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    @Column(name = "user_one_id")
+    private Long userOneId;
+
+    @Id
+    @Column(name = "user_two_id")
+    private Long userTwoId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+
+    @Column(name = "last_message_preview", nullable = false, length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_date", nullable = false)
+    private LocalDateTime lastMessageDate;
+
+    @Column(name = "user_one_unread", nullable = false)
+    private int userOneUnread;
+
+    @Column(name = "user_two_unread", nullable = false)
+    private int userTwoUnread;
+}
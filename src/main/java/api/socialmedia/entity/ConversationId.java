@@ -0,0 +1,16 @@
+package api.socialmedia.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationId implements Serializable {
+
+    private Long userOneId;
+    private Long userTwoId;
+}
@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 public class Follower {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "followers_id_seq")
+    @SequenceGenerator(name = "followers_id_seq", sequenceName = "followers_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
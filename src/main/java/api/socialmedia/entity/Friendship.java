@@ -8,10 +8,14 @@ import java.time.LocalDateTime;
 @Entity
 @Data
 @Table(name = "friendships")
+@NamedQuery(name = "Friendship.findAllByUserId", query =
+        "select new api.socialmedia.dto.responce.FriendshipResponseDto(f.id, f.userOne.id, f.userTwo.id, f.date) " +
+        "from Friendship f where f.userOne.id = :userId or f.userTwo.id = :userId")
 public class Friendship {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "friendships_id_seq")
+    @SequenceGenerator(name = "friendships_id_seq", sequenceName = "friendships_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -7,16 +7,41 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
-
+/**
+ * Переписка двух пользователей адресуется парой (least(sender, receiver), greatest(sender, receiver)):
+ * под это выражение построен индекс messages_conversation_date_idx, поэтому обе стороны переписки
+ * читаются одним упорядоченным проходом по индексу. Запросы переписки именованные и сразу строят MessageResponseDto.
+ * Таблица секционирована по месяцам date. Все запросы переписки ограничены сверху началом следующего месяца (:until):
+ * заранее созданные пустые секции будущих месяцев отсекаются и не попадают в план. Страницы по курсору дублируют
+ * границу курсора условием на date: сравнение пар (date, id) секции не отсекает, а условие на date отсекает секции
+ * по другую сторону курсора. Последние сообщения читаются упорядоченным Append от новой секции к старой
+ * и с LIMIT останавливаются на первых секциях, в которых набралась страница.
+ */
 @Entity
 @Table(name = "messages")
+@NamedQuery(name = "Message.findConversation", query = Message.SELECT_RESPONSE_DTO +
+        "from Message m where " + Message.CONVERSATION +
+        "order by m.date desc, m.id desc")
+@NamedQuery(name = "Message.findConversationBefore", query = Message.SELECT_RESPONSE_DTO +
+        "from Message m where " + Message.CONVERSATION + "and m.date <= :date and (m.date, m.id) < (:date, :id) " +
+        "order by m.date desc, m.id desc")
+@NamedQuery(name = "Message.findConversationAfter", query = Message.SELECT_RESPONSE_DTO +
+        "from Message m where " + Message.CONVERSATION + "and m.date >= :date and (m.date, m.id) > (:date, :id) " +
+        "order by m.date asc, m.id asc")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Message {
 
+    public static final String SELECT_RESPONSE_DTO = "select new api.socialmedia.dto.responce.MessageResponseDto(" +
+            "m.id, m.sender.id, m.receiver.id, m.text, m.date) ";
+
+    static final String CONVERSATION = "least(m.sender.id, m.receiver.id) = :userOneId " +
+            "and greatest(m.sender.id, m.receiver.id) = :userTwoId and m.date < :until ";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_id_seq")
+    @SequenceGenerator(name = "messages_id_seq", sequenceName = "messages_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -4,19 +4,53 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 
 import java.time.LocalDateTime;
 
+/**
+ * Списочные запросы ленты и постов по курсору объявлены именованными: Hibernate разбирает их один раз при старте,
+ * а Spring Data не перестраивает строку запроса при каждом вызове, как для @Query.
+ * Все они сразу строят PostResponseDto, сущности Post при этом не создаются.
+ * Курсор следующей страницы строится из даты, поэтому посты без даты в постраничные запросы не попадают.
+ */
 @Entity
 @Table(name = "posts")
+@NamedQuery(name = "Post.findLatest", query = Post.SELECT_RESPONSE_DTO +
+        "from Post p where p.date is not null order by p.date desc, p.id desc")
+@NamedQuery(name = "Post.findLatestBefore", query = Post.SELECT_RESPONSE_DTO +
+        "from Post p where (p.date, p.id) < (:date, :id) order by p.date desc, p.id desc")
+@NamedQuery(name = "Post.findLatestByUserId", query = Post.SELECT_RESPONSE_DTO +
+        "from Post p where p.userId = :userId and p.date is not null order by p.date desc, p.id desc")
+@NamedQuery(name = "Post.findLatestByUserIdBefore", query = Post.SELECT_RESPONSE_DTO +
+        "from Post p where p.userId = :userId and (p.date, p.id) < (:date, :id) order by p.date desc, p.id desc")
+@NamedQuery(name = "Post.findTimeline", query = Post.SELECT_TIMELINE_DTO +
+        "from TimelineEntry t join Post p on p.id = t.postId " +
+        "where t.recipientId = :recipientId order by t.postDate desc, t.postId desc")
+@NamedQuery(name = "Post.findTimelineBefore", query = Post.SELECT_TIMELINE_DTO +
+        "from TimelineEntry t join Post p on p.id = t.postId " +
+        "where t.recipientId = :recipientId and (t.postDate, t.postId) < (:date, :id) " +
+        "order by t.postDate desc, t.postId desc")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "posts")
 public class Post {
 
+    public static final String SELECT_RESPONSE_DTO =
+            "select new api.socialmedia.dto.responce.PostResponseDto(p.id, p.title, p.text, p.userId, p.date) ";
+
+    /**
+     * Лента сортируется по дате записи в timeline_entries, и дата в ответе (а значит, и в курсоре) берется оттуда же.
+     */
+    public static final String SELECT_TIMELINE_DTO =
+            "select new api.socialmedia.dto.responce.PostResponseDto(p.id, p.title, p.text, p.userId, t.postDate) ";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "posts_id_seq")
+    @SequenceGenerator(name = "posts_id_seq", sequenceName = "posts_id_seq", allocationSize = 50)
     @Column(nullable = false)
     private Long id;
 
@@ -26,8 +60,14 @@ public class Post {
     @Column(nullable = false)
     private String text;
 
-    @Column(name = "file" , nullable = false)
-    private byte[] fileData;
+    @Column(name = "blob_key")
+    private String blobKey;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "content_type")
+    private String contentType;
 
     @Column(name = "user_id" , nullable = false)
     private Long userId;
@@ -0,0 +1,35 @@
+package api.socialmedia.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись материализованной ленты: пост автора, доставленный в ленту получателя.
+ * Дата поста продублирована, чтобы лента читалась одним проходом по индексу (recipient_id, post_date, post_id).
+ */
+@Entity
+@Table(name = "timeline_entries")
+@IdClass(TimelineEntryId.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimelineEntry {
+
+    @Id
+    @Column(name = "recipient_id")
+    private Long recipientId;
+
+    @Id
+    @Column(name = "post_id")
+    private Long postId;
+
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+
+    @Column(name = "post_date", nullable = false)
+    private LocalDateTime postDate;
+}
@@ -0,0 +1,13 @@
+package api.socialmedia.event;
+
+import lombok.Value;
+
+/**
+ * Запрос в друзья подтвержден: ленты обоих пользователей нужно дополнить постами друг друга.
+ */
+@Value
+public class FriendshipCreatedEvent {
+
+    Long userOneId;
+    Long userTwoId;
+}
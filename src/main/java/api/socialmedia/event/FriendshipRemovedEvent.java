@@ -0,0 +1,13 @@
+package api.socialmedia.event;
+
+import lombok.Value;
+
+/**
+ * Дружба удалена: посты бывших друзей нужно убрать из лент друг друга.
+ */
+@Value
+public class FriendshipRemovedEvent {
+
+    Long userOneId;
+    Long userTwoId;
+}
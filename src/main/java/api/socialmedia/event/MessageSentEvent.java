@@ -0,0 +1,18 @@
+package api.socialmedia.event;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сообщение сохранено: после коммита его нужно доставить подключенным получателю и отправителю.
+ */
+@Value
+public class MessageSentEvent {
+
+    Long messageId;
+    Long senderId;
+    Long receiverId;
+    String text;
+    LocalDateTime date;
+}
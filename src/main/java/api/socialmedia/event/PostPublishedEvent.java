@@ -0,0 +1,13 @@
+package api.socialmedia.event;
+
+import lombok.Value;
+
+/**
+ * Пост создан и должен появиться в лентах друзей автора.
+ */
+@Value
+public class PostPublishedEvent {
+
+    Long postId;
+    Long authorId;
+}
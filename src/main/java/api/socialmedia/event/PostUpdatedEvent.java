@@ -0,0 +1,13 @@
+package api.socialmedia.event;
+
+import lombok.Value;
+
+/**
+ * Пост отредактирован: его новая дата должна подняться в лентах друзей автора.
+ */
+@Value
+public class PostUpdatedEvent {
+
+    Long postId;
+    Long authorId;
+}
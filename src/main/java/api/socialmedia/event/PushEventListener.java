@@ -0,0 +1,88 @@
+package api.socialmedia.event;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+import api.socialmedia.dto.responce.PostNotificationDto;
+import api.socialmedia.graph.FriendGraphIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+
+/**
+ * Доставляет новые сообщения и посты пользователям, подключенным по WebSocket, после коммита транзакции.
+ * Получатели ищутся в реестре STOMP-сессий этого узла ({@link SimpUserRegistry}): пользователи без открытой сессии
+ * пропускаются без сериализации и без обращения к брокеру. Для поста перебирается меньшее из двух множеств -
+ * друзья автора из {@link FriendGraphIndex} или подключенные пользователи.
+ * О посте уведомляется только при создании ({@link PostNotificationDto}), правки поста не рассылаются.
+ * Доставка best-effort: клиент после переподключения догоняет пропущенное по курсору.
+ */
+@Slf4j
+@Component
+public class PushEventListener {
+
+    static final String MESSAGES_QUEUE = "/queue/messages";
+    static final String FEED_QUEUE = "/queue/feed";
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final FriendGraphIndex friendGraphIndex;
+
+    public PushEventListener(SimpMessageSendingOperations messagingTemplate,
+                             SimpUserRegistry userRegistry,
+                             FriendGraphIndex friendGraphIndex,
+                             MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.friendGraphIndex = friendGraphIndex;
+        meterRegistry.gauge("push.connected.users", userRegistry, SimpUserRegistry::getUserCount);
+    }
+
+    @Async("pushExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageSent(MessageSentEvent event) {
+        MessageResponseDto message = new MessageResponseDto(event.getMessageId(), event.getSenderId(),
+                event.getReceiverId(), event.getText(), event.getDate());
+        sendIfConnected(event.getReceiverId(), MESSAGES_QUEUE, message);
+        sendIfConnected(event.getSenderId(), MESSAGES_QUEUE, message);
+    }
+
+    @Async("pushExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostPublished(PostPublishedEvent event) {
+        PostNotificationDto notification = new PostNotificationDto(event.getPostId(), event.getAuthorId());
+        long[] friendIds = friendGraphIndex.friendIds(event.getAuthorId());
+        if (friendIds.length <= userRegistry.getUserCount()) {
+            for (long friendId : friendIds) {
+                sendIfConnected(friendId, FEED_QUEUE, notification);
+            }
+            return;
+        }
+        for (SimpUser user : userRegistry.getUsers()) {
+            if (Arrays.binarySearch(friendIds, Long.parseLong(user.getName())) >= 0) {
+                send(user.getName(), FEED_QUEUE, notification);
+            }
+        }
+    }
+
+    private void sendIfConnected(long userId, String destination, Object payload) {
+        String user = String.valueOf(userId);
+        if (userRegistry.getUser(user) != null) {
+            send(user, destination, payload);
+        }
+    }
+
+    private void send(String user, String destination, Object payload) {
+        try {
+            messagingTemplate.convertAndSendToUser(user, destination, payload);
+        } catch (MessagingException e) {
+            log.warn("Failed to push {} to user {}", destination, user, e);
+        }
+    }
+}
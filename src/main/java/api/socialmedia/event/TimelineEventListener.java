@@ -0,0 +1,62 @@
+package api.socialmedia.event;
+
+import api.socialmedia.service.TimelineService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Обновляет материализованные ленты после коммита транзакции, в которой произошло событие.
+ * Работа выполняется в отдельном пуле, поэтому запрос пользователя не ждет рассылки поста всем друзьям.
+ * Если транзакции нет (например, createPost сохраняет пост в собственной транзакции репозитория),
+ * событие обрабатывается сразу после публикации.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimelineEventListener {
+
+    private final TimelineService timelineService;
+
+    @Async("timelineExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostPublished(PostPublishedEvent event) {
+        try {
+            timelineService.fanOut(event.getPostId(), event.getAuthorId());
+        } catch (RuntimeException e) {
+            log.error("Failed to fan out post {}", event.getPostId(), e);
+        }
+    }
+
+    @Async("timelineExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostUpdated(PostUpdatedEvent event) {
+        try {
+            timelineService.fanOut(event.getPostId(), event.getAuthorId());
+        } catch (RuntimeException e) {
+            log.error("Failed to fan out updated post {}", event.getPostId(), e);
+        }
+    }
+
+    @Async("timelineExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipCreated(FriendshipCreatedEvent event) {
+        try {
+            timelineService.backfill(event.getUserOneId(), event.getUserTwoId());
+        } catch (RuntimeException e) {
+            log.error("Failed to backfill timelines for {}", event, e);
+        }
+    }
+
+    @Async("timelineExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipRemoved(FriendshipRemovedEvent event) {
+        try {
+            timelineService.evict(event.getUserOneId(), event.getUserTwoId());
+        } catch (RuntimeException e) {
+            log.error("Failed to evict timelines for {}", event, e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package api.socialmedia.filter;
+
+import api.socialmedia.util.AccessTokenManager;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничения на загрузку файлов при создании поста.
+ * Фильтр срабатывает до того, как DispatcherServlet начнет разбирать multipart-тело, поэтому
+ * слишком большой запрос (по Content-Length) и запрос сверх лимита одновременных загрузок пользователя
+ * отклоняются без чтения тела.
+ * Запрос без Content-Length (chunked) отклоняется с 411: его размер нельзя проверить до чтения тела.
+ */
+@Slf4j
+@Component
+public class UploadLimitFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PATH = "/posts/create";
+
+    private final AccessTokenManager tokenManager;
+    private final long maxRequestSize;
+    private final int maxConcurrentUploadsPerUser;
+    private final Map<Long, Integer> activeUploads = new ConcurrentHashMap<>();
+
+    public UploadLimitFilter(AccessTokenManager tokenManager,
+                             @Value("${app.upload.max-request-size}") DataSize maxRequestSize,
+                             @Value("${app.upload.max-concurrent-per-user}") int maxConcurrentUploadsPerUser) {
+        this.tokenManager = tokenManager;
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.maxConcurrentUploadsPerUser = maxConcurrentUploadsPerUser;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !(HttpMethod.POST.matches(request.getMethod()) && UPLOAD_PATH.equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(@NotNull HttpServletRequest request,
+                                    @NotNull HttpServletResponse response,
+                                    @NotNull FilterChain filterChain) throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            log.warn("Upload without Content-Length rejected");
+            response.sendError(HttpStatus.LENGTH_REQUIRED.value(), "Content-Length is required");
+            return;
+        }
+        if (contentLength > maxRequestSize) {
+            log.warn("Upload of {} bytes rejected, limit is {} bytes", contentLength, maxRequestSize);
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "File is too large");
+            return;
+        }
+
+        Long userId = tokenManager.getUserId();
+        if (userId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!tryAcquire(userId)) {
+            log.warn("Too many concurrent uploads for user {}", userId);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many concurrent uploads");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            release(userId);
+        }
+    }
+
+    private boolean tryAcquire(Long userId) {
+        boolean[] acquired = new boolean[1];
+        activeUploads.compute(userId, (id, uploads) -> {
+            int current = uploads == null ? 0 : uploads;
+            if (current >= maxConcurrentUploadsPerUser) {
+                return uploads;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(Long userId) {
+        activeUploads.computeIfPresent(userId, (id, uploads) -> uploads > 1 ? uploads - 1 : null);
+    }
+}
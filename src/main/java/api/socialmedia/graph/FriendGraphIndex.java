@@ -0,0 +1,114 @@
+package api.socialmedia.graph;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.event.FriendshipCreatedEvent;
+import api.socialmedia.event.FriendshipRemovedEvent;
+import api.socialmedia.repository.FriendshipRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Индекс графа дружбы в памяти процесса.
+ * Для каждого пользователя хранится отсортированный массив id друзей ({@code long[]}, без упаковки в Long),
+ * поэтому проверка дружбы - бинарный поиск, а список друзей не требует запроса в базу.
+ * Массивы загружаются лениво при первом обращении, общий объем ограничен бюджетом памяти
+ * (вытеснение по W-TinyLFU), а после коммита дружбы/удаления дружбы массивы обновляются на месте.
+ * Массив живет долго, поэтому читается с primary, а не с отстающей реплики.
+ */
+@Slf4j
+@Component
+public class FriendGraphIndex {
+
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final FriendshipRepository friendshipRepository;
+    private final PrimaryReads primaryReads;
+    private final LoadingCache<Long, long[]> friends;
+
+    public FriendGraphIndex(FriendshipRepository friendshipRepository,
+                            PrimaryReads primaryReads,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.friend-graph.max-size}") DataSize maxSize,
+                            @Value("${app.friend-graph.expire-after-write}") Duration expireAfterWrite) {
+        this.friendshipRepository = friendshipRepository;
+        this.primaryReads = primaryReads;
+        this.friends = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long userId, long[] friendIds) -> ARRAY_HEADER_BYTES + friendIds.length * Long.BYTES)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, friends, "friendGraph");
+    }
+
+    /**
+     * Отсортированные id друзей пользователя. Массив общий для всех вызывающих и не должен изменяться.
+     */
+    public long[] friendIds(Long userId) {
+        return friends.get(userId);
+    }
+
+    public boolean areFriends(Long userOneId, Long userTwoId) {
+        return Arrays.binarySearch(friendIds(userOneId), userTwoId) >= 0;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipCreated(FriendshipCreatedEvent event) {
+        link(event.getUserOneId(), event.getUserTwoId());
+        link(event.getUserTwoId(), event.getUserOneId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipRemoved(FriendshipRemovedEvent event) {
+        unlink(event.getUserOneId(), event.getUserTwoId());
+        unlink(event.getUserTwoId(), event.getUserOneId());
+    }
+
+    /**
+     * Массив меняется только если он уже загружен: иначе следующая загрузка прочитает закоммиченные данные.
+     * Если в этот момент массив загружается, обновление дождется загрузки и применится поверх нее.
+     */
+    private void link(Long userId, Long friendId) {
+        friends.asMap().computeIfPresent(userId, (id, friendIds) -> {
+            int position = Arrays.binarySearch(friendIds, friendId);
+            if (position >= 0) {
+                return friendIds;
+            }
+            int insertAt = -position - 1;
+            long[] updated = new long[friendIds.length + 1];
+            System.arraycopy(friendIds, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(friendIds, insertAt, updated, insertAt + 1, friendIds.length - insertAt);
+            return updated;
+        });
+    }
+
+    private void unlink(Long userId, Long friendId) {
+        friends.asMap().computeIfPresent(userId, (id, friendIds) -> {
+            int position = Arrays.binarySearch(friendIds, friendId);
+            if (position < 0) {
+                return friendIds;
+            }
+            long[] updated = new long[friendIds.length - 1];
+            System.arraycopy(friendIds, 0, updated, 0, position);
+            System.arraycopy(friendIds, position + 1, updated, position, friendIds.length - position - 1);
+            return updated;
+        });
+    }
+
+    private long[] load(Long userId) {
+        long[] friendIds = primaryReads.read(() -> friendshipRepository.findFriendIdArray(userId));
+        log.debug("Friend graph of user {} loaded: {} friends", userId, friendIds.length);
+        return friendIds;
+    }
+}
@@ -0,0 +1,89 @@
+package api.socialmedia.graph;
+
+import api.socialmedia.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Пользователи, у которых друзей больше app.feed.high-degree-threshold: их посты не рассылаются по лентам,
+ * а подтягиваются при чтении ленты.
+ * Отсортированный массив id держится в памяти и перечитывается раз в app.feed.high-degree-refresh-interval,
+ * поэтому ни рассылка, ни чтение ленты не обращаются к таблице users.
+ * Рассылка и чтение решают по одному и тому же снимку, так что пост автора, перешедшего порог,
+ * либо попадает в ленты, либо подтягивается при чтении; новый статус автора вступает в силу с задержкой
+ * не больше интервала обновления.
+ */
+@Slf4j
+@Component
+public class HighDegreeUsers {
+
+    private final UserRepository userRepository;
+    private final int threshold;
+    private volatile long[] userIds;
+
+    public HighDegreeUsers(UserRepository userRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.feed.high-degree-threshold}") int threshold) {
+        this.userRepository = userRepository;
+        this.threshold = threshold;
+        Gauge.builder("feed.hybrid.degree.threshold", () -> threshold)
+                .description("Friend count above which an author's posts are pulled at read time instead of pushed")
+                .register(meterRegistry);
+        Gauge.builder("feed.hybrid.high-degree.users", this, users -> users.userIds == null ? 0 : users.userIds.length)
+                .description("Authors whose posts are currently pulled at read time")
+                .register(meterRegistry);
+    }
+
+    public boolean contains(Long userId) {
+        return Arrays.binarySearch(userIds(), userId) >= 0;
+    }
+
+    /**
+     * Пересечение отсортированного массива id (например, друзей пользователя) с пользователями выше порога.
+     * Бинарный поиск идет по большему из массивов, поэтому стоимость - O(min * log max).
+     */
+    public long[] intersect(long[] sortedIds) {
+        long[] highDegree = userIds();
+        long[] smaller = sortedIds.length <= highDegree.length ? sortedIds : highDegree;
+        long[] larger = smaller == sortedIds ? highDegree : sortedIds;
+        long[] common = new long[smaller.length];
+        int size = 0;
+        for (long id : smaller) {
+            if (Arrays.binarySearch(larger, id) >= 0) {
+                common[size++] = id;
+            }
+        }
+        return size == common.length ? common : Arrays.copyOf(common, size);
+    }
+
+    @Scheduled(fixedDelayString = "${app.feed.high-degree-refresh-interval}")
+    public void refresh() {
+        long[] loaded = userRepository.findIdsByFriendCountGreaterThan(threshold).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        userIds = loaded;
+        log.debug("High degree users reloaded: {} users above {} friends", loaded.length, threshold);
+    }
+
+    /**
+     * До первого планового обновления снимок загружается при первом обращении.
+     */
+    private long[] userIds() {
+        long[] current = userIds;
+        if (current == null) {
+            synchronized (this) {
+                if (userIds == null) {
+                    refresh();
+                }
+                current = userIds;
+            }
+        }
+        return current;
+    }
+}
@@ -6,10 +6,12 @@ import api.socialmedia.dto.responce.ExceptionWebResponse;
 import api.socialmedia.exception.*;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 
 @Slf4j
@@ -66,4 +68,24 @@ public class ControllerExceptionHandler {
         log.error(exc.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionWebResponse(exc.getMessage(), 404));
     }
+
+    @ExceptionHandler(FileStorageException.class)
+    public ResponseEntity<ExceptionWebResponse> handleFileStorageException(@NonNull final FileStorageException exc) {
+        log.error(exc.getMessage(), exc);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ExceptionWebResponse(exc.getMessage(), 500));
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ExceptionWebResponse> handleMaxUploadSizeExceededException(@NonNull final MaxUploadSizeExceededException exc) {
+        log.error(exc.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new ExceptionWebResponse("File is too large", 413));
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ExceptionWebResponse> handleTooManyRequestsException(@NonNull final TooManyRequestsException exc) {
+        log.error(exc.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exc.getRetryAfterSeconds()))
+                .body(new ExceptionWebResponse(exc.getMessage(), 429));
+    }
 }
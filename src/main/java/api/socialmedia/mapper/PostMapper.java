@@ -5,14 +5,22 @@ import api.socialmedia.dto.request.PostRequestDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.entity.Post;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 
 
 @Mapper(componentModel = "spring")
 public interface PostMapper {
 
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "blobKey", ignore = true)
+    @Mapping(target = "fileSize", ignore = true)
+    @Mapping(target = "contentType", ignore = true)
+    @Mapping(target = "userId", ignore = true)
+    @Mapping(target = "date", ignore = true)
     Post postRequestDtoToPostEntity(PostRequestDto postRequestDto);
 
+    @Mapping(target = "fileUrl", ignore = true)
     PostResponseDto postEntityToPostResponseDto(Post post);
 
 
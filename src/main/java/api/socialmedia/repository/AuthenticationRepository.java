@@ -1,46 +1,26 @@
 package api.socialmedia.repository;
 
-import org.springframework.stereotype.Repository;
-
-import java.util.Map;
+import java.time.Instant;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * token storage
+ * Хранилище выданных токенов: токен -> пользователь и обратный индекс пользователь -> его токены
+ * (у пользователя может быть несколько сессий). Токен перестает существовать по истечении срока.
+ * Реализация в памяти подходит для одного узла; при нескольких узлах ее заменяет общее хранилище.
  */
+public interface AuthenticationRepository {
 
+    void putTokenAndUsername(String token, String username, Instant expiresAt);
 
-@Repository
-public class AuthenticationRepository {
-
-    private final Map<String, String> tokens = new ConcurrentHashMap<>();
-
-
-    public void putTokenAndUsername(String token, String username) {
-        tokens.put(token, username);
-    }
-
-    public String getUserNameByToken(String token) {
-        return tokens.get(token);
-    }
+    String getUserNameByToken(String token);
 
-    public void removeTokenAndUsernameByToken(String token) {
-        tokens.remove(token);
-    }
+    void removeTokenAndUsernameByToken(String token);
 
-    public String getTokenByUsername(String username) {
-        Set<Map.Entry<String, String>> entrySet = tokens.entrySet();
+    Set<String> getTokensByUsername(String username);
 
-        String token = "";
-        for (Map.Entry<String, String> pair : entrySet) {
-            if (username.equals(pair.getValue())) {
-                token = pair.getKey();
-            }
-        }
-        if (token.equals("")) {
-            return null;
-        }
-        return token;
-    }
+    /**
+     * Удаляет все истекшие токены, возвращает их количество.
+     */
+    int removeExpiredTokens();
 }
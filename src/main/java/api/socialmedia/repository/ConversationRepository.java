@@ -0,0 +1,65 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.entity.Conversation;
+import api.socialmedia.entity.ConversationId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * Нативные запросы объявляют таблицу conversations своим пространством,
+ * иначе Hibernate после каждого из них сбрасывал бы все регионы второго уровня кеша.
+ * Переписка задается в каноническом виде: userOneId меньше userTwoId.
+ */
+public interface ConversationRepository extends JpaRepository<Conversation, ConversationId>, InboxRepository {
+
+    /**
+     * Создает переписку или добавляет к ней сообщения одним запросом: строка блокируется на время транзакции,
+     * поэтому одновременные сообщения в одну переписку не теряют счетчики непрочитанных.
+     * Последнее сообщение заменяется, только если новое позже по (date, id): сообщения с разных узлов
+     * могут закоммититься не в порядке своих дат.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "conversations"))
+    @Query(value = """
+            INSERT INTO conversations AS c (user_one_id, user_two_id, last_message_id, last_sender_id,
+                                            last_message_preview, last_message_date, user_one_unread, user_two_unread)
+            VALUES (:userOneId, :userTwoId, :messageId, :senderId, :preview, :date, :userOneUnread, :userTwoUnread)
+            ON CONFLICT (user_one_id, user_two_id) DO UPDATE SET
+                last_message_id = CASE WHEN (excluded.last_message_date, excluded.last_message_id)
+                                            > (c.last_message_date, c.last_message_id)
+                                       THEN excluded.last_message_id ELSE c.last_message_id END,
+                last_sender_id = CASE WHEN (excluded.last_message_date, excluded.last_message_id)
+                                           > (c.last_message_date, c.last_message_id)
+                                      THEN excluded.last_sender_id ELSE c.last_sender_id END,
+                last_message_preview = CASE WHEN (excluded.last_message_date, excluded.last_message_id)
+                                                 > (c.last_message_date, c.last_message_id)
+                                            THEN excluded.last_message_preview ELSE c.last_message_preview END,
+                last_message_date = greatest(excluded.last_message_date, c.last_message_date),
+                user_one_unread = c.user_one_unread + excluded.user_one_unread,
+                user_two_unread = c.user_two_unread + excluded.user_two_unread
+            """, nativeQuery = true)
+    void recordMessages(@Param("userOneId") Long userOneId, @Param("userTwoId") Long userTwoId,
+                        @Param("messageId") Long messageId, @Param("senderId") Long senderId,
+                        @Param("preview") String preview, @Param("date") LocalDateTime date,
+                        @Param("userOneUnread") int userOneUnread, @Param("userTwoUnread") int userTwoUnread);
+
+    /**
+     * Обнуляет счетчик непрочитанных той стороны переписки, которой является userId.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "conversations"))
+    @Query(value = """
+            UPDATE conversations
+            SET user_one_unread = CASE WHEN user_one_id = :userId THEN 0 ELSE user_one_unread END,
+                user_two_unread = CASE WHEN user_two_id = :userId THEN 0 ELSE user_two_unread END
+            WHERE user_one_id = :userOneId AND user_two_id = :userTwoId
+            """, nativeQuery = true)
+    int markRead(@Param("userOneId") Long userOneId, @Param("userTwoId") Long userTwoId, @Param("userId") Long userId);
+}
@@ -1,16 +1,24 @@
 package api.socialmedia.repository;
 
 import api.socialmedia.entity.Follower;
-import api.socialmedia.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
-
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 
 public interface FollowerRepository extends JpaRepository<Follower, Long> {
 
-    boolean existsBySenderIdAndReceiverId(Long senderId, Long receiverId);
-
-    void deleteBySenderAndReceiver(User one, User one1);
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "followers"))
+    @Query(value = "INSERT INTO followers (sender_id, receiver_id, date) VALUES (:senderId, :receiverId, now()) " +
+            "ON CONFLICT (sender_id, receiver_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId);
 
-    boolean existsByReceiverIdAndSenderId(Long receiverId, Long senderId);
+    @Modifying
+    @Query("delete from Follower f where f.sender.id = :senderId and f.receiver.id = :receiverId")
+    int deleteBySenderIdAndReceiverId(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId);
 }
@@ -0,0 +1,18 @@
+package api.socialmedia.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Чтение id друзей без сущностей Friendship и User.
+ */
+public interface FriendIdRepository {
+
+    /**
+     * Отсортированные id друзей пользователя.
+     * Граф дружбы кешируется надолго, поэтому {@link api.socialmedia.graph.FriendGraphIndex} загружает его
+     * через {@link api.socialmedia.datasource.PrimaryReads}, а не с отстающей реплики.
+     * Строки читаются курсором, поэтому запросу нужна транзакция.
+     */
+    @Transactional(readOnly = true)
+    long[] findFriendIdArray(Long userId);
+}
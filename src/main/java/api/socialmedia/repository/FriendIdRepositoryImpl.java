@@ -0,0 +1,42 @@
+package api.socialmedia.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Дружба хранится в каноническом виде (user_one_id меньше user_two_id), поэтому ветки UNION ALL не пересекаются
+ * и каждая читается index-only сканом своего индекса без сортировки и устранения дублей в базе.
+ * Строки читаются курсором порциями по FETCH_SIZE и сразу раскладываются в {@code long[]}:
+ * ни List, ни упакованные Long для всего результата не создаются.
+ */
+public class FriendIdRepositoryImpl implements FriendIdRepository {
+
+    private static final String FRIEND_IDS = """
+            SELECT user_two_id FROM friendships WHERE user_one_id = :userId
+            UNION ALL
+            SELECT user_one_id FROM friendships WHERE user_two_id = :userId
+            """;
+
+    private static final int FETCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public long[] findFriendIdArray(Long userId) {
+        try (Stream<Long> rows = entityManager.unwrap(Session.class)
+                .createNativeQuery(FRIEND_IDS, Long.class)
+                .setParameter("userId", userId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream()) {
+            long[] friendIds = rows.mapToLong(Long::longValue).toArray();
+            Arrays.sort(friendIds);
+            return friendIds;
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package api.socialmedia.repository;
 
+import api.socialmedia.dto.responce.FriendshipResponseDto;
 import api.socialmedia.entity.Friendship;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
-import java.util.Optional;
 
-public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
+public interface FriendshipRepository extends JpaRepository<Friendship, Long>, FriendIdRepository {
 
 
-    boolean existsByUserOneIdAndUserTwoId(Long senderId, Long receiverId);
-
-    Optional<Friendship> findByUserOneIdAndUserTwoId(Long removerId, Long deletedId);
-
-    Optional<Friendship> findByUserTwoIdAndUserOneId(Long deletedId, Long removerId);
-
-    List<Friendship> findByUserOneIdOrUserTwoId(Long userOneId, Long userTwoId);
-
+    /**
+     * Дружба хранится в каноническом виде: userOneId меньше userTwoId.
+     */
+    @Modifying
+    @Query("delete from Friendship f where f.userOne.id = :userOneId and f.userTwo.id = :userTwoId")
+    int deleteByUserIds(@Param("userOneId") Long userOneId, @Param("userTwoId") Long userTwoId);
 
+    /**
+     * Записи о дружбе пользователя сразу в виде DTO (именованный запрос, см. {@link Friendship}): берутся только
+     * внешние ключи, без загрузки сущностей User (и их ролей) для обеих сторон.
+     */
+    List<FriendshipResponseDto> findAllByUserId(@Param("userId") Long userId);
 
 }
\ No newline at end of file
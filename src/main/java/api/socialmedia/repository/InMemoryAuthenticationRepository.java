@@ -0,0 +1,106 @@
+package api.socialmedia.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Хранилище токенов в памяти процесса.
+ * Поиск в обе стороны - O(1) по двум ConcurrentHashMap. Истекающие токены лежат в очереди, упорядоченной по сроку:
+ * периодическая очистка снимает с головы очереди только истекшие записи и не перебирает активные сессии.
+ * Выход из системы не удаляет запись из очереди (это O(n)): очистка пропускает токены, которых уже нет в индексе.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "app.auth.token-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryAuthenticationRepository implements AuthenticationRepository {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tokensByUsername = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<Session> expiryQueue =
+            new PriorityBlockingQueue<>(64, Comparator.comparing(Session::expiresAt));
+    private final Clock clock;
+
+    @Autowired
+    public InMemoryAuthenticationRepository() {
+        this(Clock.systemUTC());
+    }
+
+    InMemoryAuthenticationRepository(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void putTokenAndUsername(String token, String username, Instant expiresAt) {
+        Session session = new Session(token, username, expiresAt);
+        tokensByUsername.compute(username, (name, tokens) -> {
+            Set<String> userTokens = tokens == null ? ConcurrentHashMap.newKeySet() : tokens;
+            userTokens.add(token);
+            return userTokens;
+        });
+        sessions.put(token, session);
+        expiryQueue.offer(session);
+    }
+
+    @Override
+    public String getUserNameByToken(String token) {
+        Session session = sessions.get(token);
+        if (session == null || !session.expiresAt().isAfter(clock.instant())) {
+            return null;
+        }
+        return session.username();
+    }
+
+    @Override
+    public void removeTokenAndUsernameByToken(String token) {
+        Session session = sessions.remove(token);
+        if (session != null) {
+            unindex(session);
+        }
+    }
+
+    @Override
+    public Set<String> getTokensByUsername(String username) {
+        Set<String> tokens = tokensByUsername.get(username);
+        return tokens == null ? Set.of() : Set.copyOf(tokens);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.auth.token-sweep-interval}")
+    public synchronized int removeExpiredTokens() {
+        Instant now = clock.instant();
+        int removed = 0;
+        Session head;
+        while ((head = expiryQueue.peek()) != null && !head.expiresAt().isAfter(now)) {
+            Session expired = expiryQueue.poll();
+            if (sessions.remove(expired.token(), expired)) {
+                unindex(expired);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.debug("Removed {} expired tokens", removed);
+        }
+        return removed;
+    }
+
+    private void unindex(Session session) {
+        tokensByUsername.computeIfPresent(session.username(), (name, tokens) -> {
+            tokens.remove(session.token());
+            return tokens.isEmpty() ? null : tokens;
+        });
+    }
+
+    private record Session(String token, String username, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,16 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.ConversationResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Инбокс пользователя: его переписки от последней активности к более ранней.
+ */
+public interface InboxRepository {
+
+    List<ConversationResponseDto> findInbox(Long userId, int limit);
+
+    List<ConversationResponseDto> findInboxBefore(Long userId, LocalDateTime date, Long messageId, int limit);
+}
@@ -0,0 +1,70 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.entity.Conversation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Пользователь бывает любой из сторон канонической пары, поэтому каждая сторона читается своим индексом
+ * последней активности не больше чем на limit строк, а Postgres сливает два упорядоченных прохода (Merge Append).
+ * Сообщения при этом не читаются, стоимость страницы не зависит ни от числа переписок, ни от их длины.
+ */
+public class InboxRepositoryImpl implements InboxRepository {
+
+    private static final String SIDE_ONE = """
+            (SELECT user_two_id AS user_id, last_message_id, last_sender_id, last_message_preview, last_message_date,
+                    user_one_unread AS unread_count
+             FROM conversations
+             WHERE user_one_id = :userId""";
+
+    private static final String SIDE_TWO = """
+            (SELECT user_one_id AS user_id, last_message_id, last_sender_id, last_message_preview, last_message_date,
+                    user_two_unread AS unread_count
+             FROM conversations
+             WHERE user_two_id = :userId""";
+
+    private static final String BEFORE = " AND (last_message_date, last_message_id) < (:date, :messageId)";
+
+    private static final String ORDER_AND_LIMIT = """
+
+             ORDER BY last_message_date DESC, last_message_id DESC
+             LIMIT :limit)""";
+
+    private static final String UNION = "\nUNION ALL\n";
+
+    private static final String MERGE = "\nORDER BY last_message_date DESC, last_message_id DESC LIMIT :limit";
+
+    private static final String INBOX = SIDE_ONE + ORDER_AND_LIMIT + UNION + SIDE_TWO + ORDER_AND_LIMIT + MERGE;
+
+    private static final String INBOX_BEFORE =
+            SIDE_ONE + BEFORE + ORDER_AND_LIMIT + UNION + SIDE_TWO + BEFORE + ORDER_AND_LIMIT + MERGE;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ConversationResponseDto> findInbox(Long userId, int limit) {
+        return inbox(INBOX, userId, limit).getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ConversationResponseDto> findInboxBefore(Long userId, LocalDateTime date, Long messageId, int limit) {
+        return inbox(INBOX_BEFORE, userId, limit)
+                .setParameter("date", date)
+                .setParameter("messageId", messageId)
+                .getResultList();
+    }
+
+    private Query inbox(String sql, Long userId, int limit) {
+        return entityManager.createNativeQuery(sql, Conversation.INBOX_ENTRY)
+                .setParameter("userId", userId)
+                .setParameter("limit", limit);
+    }
+}
@@ -0,0 +1,18 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страницы переписки двух пользователей. Переписка задается в каноническом виде: userOneId меньше userTwoId.
+ */
+public interface MessageHistoryRepository {
+
+    List<MessageResponseDto> findConversation(Long userOneId, Long userTwoId, int limit);
+
+    List<MessageResponseDto> findConversationBefore(Long userOneId, Long userTwoId, LocalDateTime date, Long id, int limit);
+
+    List<MessageResponseDto> findConversationAfter(Long userOneId, Long userTwoId, LocalDateTime date, Long id, int limit);
+}
@@ -0,0 +1,53 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Выполняет именованные запросы переписки (см. {@link api.socialmedia.entity.Message}) с явным типом результата.
+ * Spring Data определяет, что именованный запрос строит DTO, по тексту запроса, который ей отдает Hibernate,
+ * а Hibernate 6.2 восстанавливает этот текст без первого аргумента функций (least, greatest):
+ * конструктор в таком тексте не распознается, и результат читался бы как Tuple.
+ * Граница :until - начало следующего месяца по часам JVM, в которых пишется дата сообщения.
+ */
+public class MessageHistoryRepositoryImpl implements MessageHistoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<MessageResponseDto> findConversation(Long userOneId, Long userTwoId, int limit) {
+        return conversation("Message.findConversation", userOneId, userTwoId, limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<MessageResponseDto> findConversationBefore(Long userOneId, Long userTwoId, LocalDateTime date, Long id, int limit) {
+        return conversation("Message.findConversationBefore", userOneId, userTwoId, limit)
+                .setParameter("date", date)
+                .setParameter("id", id)
+                .getResultList();
+    }
+
+    @Override
+    public List<MessageResponseDto> findConversationAfter(Long userOneId, Long userTwoId, LocalDateTime date, Long id, int limit) {
+        return conversation("Message.findConversationAfter", userOneId, userTwoId, limit)
+                .setParameter("date", date)
+                .setParameter("id", id)
+                .getResultList();
+    }
+
+    private TypedQuery<MessageResponseDto> conversation(String queryName, Long userOneId, Long userTwoId, int limit) {
+        return entityManager.createNamedQuery(queryName, MessageResponseDto.class)
+                .setParameter("userOneId", userOneId)
+                .setParameter("userTwoId", userTwoId)
+                .setParameter("until", YearMonth.now().plusMonths(1).atDay(1).atStartOfDay())
+                .setMaxResults(limit);
+    }
+}
@@ -0,0 +1,98 @@
+package api.socialmedia.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Обслуживание месячных секций messages по расписанию, первый запуск - сразу после старта.
+ * Секции создаются заранее на app.messages.partitions.months-ahead месяцев вперед: для даты без секции вставка
+ * откажет. Если задан retention-months, секции, целиком старше срока хранения, отсоединяются от messages:
+ * они остаются отдельными таблицами для выгрузки в архив и удаления, а запросы и вакуум messages их больше не видят.
+ * Создание и отсоединение идут в отдельных транзакциях, создание первым: если отсоединение не дождется блокировки,
+ * уже созданные секции не откатятся. Узлы не мешают друг другу: каждая транзакция берет advisory-блокировку,
+ * и узел, не получивший ее, пропускает шаг. DDL ждет блокировку messages не дольше lock-timeout,
+ * чтобы не выстраивать за собой очередь запросов, и при неудаче повторяется в следующий запуск. Месяцы считаются в часовом поясе JVM, в нем же пишется дата сообщения.
+ */
+@Slf4j
+@Component
+public class MessagePartitionMaintenance {
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transaction;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Duration lockTimeout;
+    private final Clock clock;
+
+    @Autowired
+    public MessagePartitionMaintenance(MessageRepository messageRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.messages.partitions.months-ahead}") int monthsAhead,
+                                       @Value("${app.messages.partitions.retention-months}") int retentionMonths,
+                                       @Value("${app.messages.partitions.lock-timeout}") Duration lockTimeout) {
+        this(messageRepository, transactionManager, monthsAhead, retentionMonths, lockTimeout, Clock.systemDefaultZone());
+    }
+
+    MessagePartitionMaintenance(MessageRepository messageRepository, PlatformTransactionManager transactionManager,
+                                int monthsAhead, int retentionMonths, Duration lockTimeout, Clock clock) {
+        this.messageRepository = messageRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.lockTimeout = lockTimeout;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${app.messages.partitions.maintenance-interval}")
+    public void maintain() {
+        YearMonth current = YearMonth.now(clock);
+        transaction.executeWithoutResult(status -> createAhead(current));
+        if (retentionMonths > 0) {
+            transaction.executeWithoutResult(status -> detachExpired(current));
+        }
+    }
+
+    private void createAhead(YearMonth current) {
+        if (!lockPartitions()) {
+            return;
+        }
+        List<YearMonth> partitions = messageRepository.findPartitions();
+        for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            if (!partitions.contains(month)) {
+                messageRepository.createPartition(month);
+                log.info("Message partition for {} created", month);
+            }
+        }
+    }
+
+    private void detachExpired(YearMonth current) {
+        if (!lockPartitions()) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (YearMonth month : messageRepository.findPartitions()) {
+            if (month.isBefore(oldestKept)) {
+                messageRepository.detachPartition(month);
+                log.info("Message partition for {} detached after {} months of retention", month, retentionMonths);
+            }
+        }
+    }
+
+    private boolean lockPartitions() {
+        if (!messageRepository.tryLockPartitions(lockTimeout)) {
+            log.debug("Message partitions are maintained by another node");
+            return false;
+        }
+        return true;
+    }
+}
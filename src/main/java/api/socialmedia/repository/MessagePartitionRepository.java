@@ -0,0 +1,26 @@
+package api.socialmedia.repository;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Месячные секции таблицы messages: секция messages_pYYYYMM хранит сообщения с датой внутри месяца.
+ */
+public interface MessagePartitionRepository {
+
+    /**
+     * Берет блокировку обслуживания секций до конца транзакции, не дожидаясь ее, и ограничивает
+     * ожидание блокировок таблиц в этой транзакции. false - секции сейчас обслуживает другой узел.
+     */
+    boolean tryLockPartitions(Duration lockTimeout);
+
+    List<YearMonth> findPartitions();
+
+    void createPartition(YearMonth month);
+
+    /**
+     * Отсоединяет секцию от messages. Секция остается отдельной таблицей с тем же именем.
+     */
+    void detachPartition(YearMonth month);
+}
@@ -0,0 +1,75 @@
+package api.socialmedia.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * DDL секций собирается из YearMonth: имя и границы не приходят извне, а параметры в DDL не передаются.
+ * Изменяющие запросы помечены пространством messages, чтобы Hibernate не сбрасывал из-за них весь кеш второго уровня.
+ */
+public class MessagePartitionRepositoryImpl implements MessagePartitionRepository {
+
+    private static final String PARTITION_PREFIX = "messages_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public boolean tryLockPartitions(Duration lockTimeout) {
+        entityManager.createNativeQuery("SELECT set_config('lock_timeout', :lockTimeout, true)")
+                .setParameter("lockTimeout", lockTimeout.toMillis() + "ms")
+                .getSingleResult();
+        return (Boolean) entityManager.createNativeQuery("SELECT pg_try_advisory_xact_lock(hashtext('messages_partitions'))")
+                .getSingleResult();
+    }
+
+    @Override
+    public List<YearMonth> findPartitions() {
+        List<?> names = entityManager.createNativeQuery("""
+                        SELECT c.relname
+                        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass('messages')""")
+                .getResultList();
+        return names.stream()
+                .map(name -> parse((String) name))
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    public void createPartition(YearMonth month) {
+        ddl("CREATE TABLE IF NOT EXISTS " + name(month) + " PARTITION OF messages FOR VALUES FROM ('"
+                + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    @Override
+    public void detachPartition(YearMonth month) {
+        ddl("ALTER TABLE messages DETACH PARTITION " + name(month));
+    }
+
+    private void ddl(String sql) {
+        entityManager.createNativeQuery(sql)
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, "messages")
+                .executeUpdate();
+    }
+
+    static String name(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private static YearMonth parse(String name) {
+        if (!name.matches(PARTITION_PREFIX + "\\d{6}")) {
+            return null;
+        }
+        return YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+    }
+}
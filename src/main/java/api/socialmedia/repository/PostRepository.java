@@ -1,20 +1,51 @@
 package api.socialmedia.repository;
 
+import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.entity.Post;
+import api.socialmedia.repository.projection.PostFileView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
-
+import java.util.Optional;
+
+/**
+ * Списочные запросы сразу строят PostResponseDto (select new): читаются только нужные колонки,
+ * сущности не попадают в контекст персистентности и не проверяются на изменения при flush.
+ * Запросы с фиксированным порядком - именованные, см. {@link Post}; через @Query объявлены только
+ * постраничные запросы, к которым Spring Data добавляет сортировку из запроса клиента.
+ */
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    @Query(value = Post.SELECT_RESPONSE_DTO + "from Post p",
+            countQuery = "select count(p) from Post p")
+    Page<PostResponseDto> findAllResponses(Pageable pageable);
+
+    @Query(value = Post.SELECT_RESPONSE_DTO + "from Post p where p.userId = :userId",
+            countQuery = "select count(p) from Post p where p.userId = :userId")
+    Page<PostResponseDto> findAllByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    List<PostResponseDto> findLatest(Pageable pageable);
+
+    List<PostResponseDto> findLatestBefore(@Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
+    List<PostResponseDto> findLatestByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    List<PostResponseDto> findLatestByUserIdBefore(@Param("userId") Long userId, @Param("date") LocalDateTime date,
+                                                   @Param("id") Long id, Pageable pageable);
+
+    List<PostResponseDto> findTimeline(@Param("recipientId") Long recipientId, Pageable pageable);
 
-    Post getPostById(Long userId);
+    List<PostResponseDto> findTimelineBefore(@Param("recipientId") Long recipientId, @Param("date") LocalDateTime date,
+                                             @Param("id") Long id, Pageable pageable);
 
-    Page<Post> findAllByUserId(Long userId, Pageable pageable);
+    Optional<PostFileView> findFileViewById(Long id);
 
-    Page<Post> findByUserIdIn(List<Long> friendsIds, Pageable pageable);
+    boolean existsByBlobKey(String blobKey);
 }
 
 
@@ -0,0 +1,79 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.entity.TimelineEntry;
+import api.socialmedia.entity.TimelineEntryId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Нативные запросы объявляют таблицу timeline_entries своим пространством,
+ * иначе Hibernate после каждого из них сбрасывал бы все регионы второго уровня кеша.
+ */
+public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "timeline_entries"))
+    @Query(value = """
+            INSERT INTO timeline_entries (recipient_id, post_id, author_id, post_date)
+            SELECT f.friend_id, p.id, p.user_id, p.date
+            FROM posts p,
+                 (SELECT user_two_id AS friend_id FROM friendships WHERE user_one_id = :authorId
+                  UNION
+                  SELECT user_one_id FROM friendships WHERE user_two_id = :authorId) f
+            WHERE p.id = :postId AND p.date IS NOT NULL AND f.friend_id <> p.user_id
+            ON CONFLICT (recipient_id, post_id) DO UPDATE SET post_date = excluded.post_date
+            """, nativeQuery = true)
+    int fanOut(@Param("postId") Long postId, @Param("authorId") Long authorId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "timeline_entries"))
+    @Query(value = """
+            INSERT INTO timeline_entries (recipient_id, post_id, author_id, post_date)
+            SELECT :recipientId, p.id, p.user_id, p.date
+            FROM posts p
+            WHERE p.user_id = :authorId AND p.date IS NOT NULL
+            ORDER BY p.date DESC, p.id DESC
+            LIMIT :depth
+            ON CONFLICT (recipient_id, post_id) DO NOTHING
+            """, nativeQuery = true)
+    int backfill(@Param("recipientId") Long recipientId, @Param("authorId") Long authorId, @Param("depth") int depth);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "timeline_entries"))
+    @Query(value = """
+            DELETE FROM timeline_entries t
+            USING (SELECT recipient_id, post_id,
+                          row_number() OVER (PARTITION BY recipient_id ORDER BY post_date DESC, post_id DESC) AS position
+                   FROM timeline_entries
+                   WHERE recipient_id IN (SELECT user_two_id FROM friendships WHERE user_one_id = :authorId
+                                          UNION
+                                          SELECT user_one_id FROM friendships WHERE user_two_id = :authorId)) ranked
+            WHERE t.recipient_id = ranked.recipient_id AND t.post_id = ranked.post_id AND ranked.position > :depth
+            """, nativeQuery = true)
+    int trimFriendsTimelines(@Param("authorId") Long authorId, @Param("depth") int depth);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "timeline_entries"))
+    @Query(value = """
+            DELETE FROM timeline_entries t
+            USING (SELECT post_id,
+                          row_number() OVER (ORDER BY post_date DESC, post_id DESC) AS position
+                   FROM timeline_entries
+                   WHERE recipient_id = :recipientId) ranked
+            WHERE t.recipient_id = :recipientId AND t.post_id = ranked.post_id AND ranked.position > :depth
+            """, nativeQuery = true)
+    int trimTimeline(@Param("recipientId") Long recipientId, @Param("depth") int depth);
+
+    @Modifying
+    @Query("delete from TimelineEntry t where t.recipientId = :recipientId and t.authorId = :authorId")
+    int deleteByRecipientIdAndAuthorId(@Param("recipientId") Long recipientId, @Param("authorId") Long authorId);
+
+    @Modifying
+    @Query("delete from TimelineEntry t where t.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+}
@@ -1,15 +1,44 @@
 package api.socialmedia.repository;
 
 import api.socialmedia.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    /**
+     * Вход сразу после регистрации и загрузка принципала читают с primary, а не с отстающей реплики:
+     * вызывающие оборачивают запрос в {@link api.socialmedia.datasource.PrimaryReads}.
+     * Результат лежит в кеше запросов и сбрасывается при любой записи в users через Hibernate.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUsername(String username);
 
+    /**
+     * friend_count не отображается в сущности User, поэтому запрос объявляет свое пространство
+     * и не сбрасывает регион users второго уровня кеша (без объявления Hibernate сбросил бы все регионы).
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users.friend_count"))
+    @Query(value = "UPDATE users SET friend_count = friend_count + :delta WHERE id IN (:userIds)", nativeQuery = true)
+    void changeFriendCount(@Param("userIds") Collection<Long> userIds, @Param("delta") int delta);
+
+    /**
+     * Читается по индексу users_friend_count_idx, отсортировано для бинарного поиска.
+     */
+    @Query(value = "SELECT id FROM users WHERE friend_count > :threshold ORDER BY id", nativeQuery = true)
+    List<Long> findIdsByFriendCountGreaterThan(@Param("threshold") int threshold);
+
 }
@@ -0,0 +1,20 @@
+package api.socialmedia.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Проекция поста для отдачи вложения: только ссылка на блоб и поля, нужные для заголовков ответа.
+ * Заголовок и текст поста при этом не читаются.
+ */
+public interface PostFileView {
+
+    Long getId();
+
+    String getBlobKey();
+
+    Long getFileSize();
+
+    String getContentType();
+
+    LocalDateTime getDate();
+}
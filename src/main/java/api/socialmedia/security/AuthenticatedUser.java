@@ -0,0 +1,52 @@
+package api.socialmedia.security;
+
+import api.socialmedia.entity.User;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+/**
+ * Неизменяемый принципал аутентифицированного запроса: id, логин и роли пользователя без пароля и связей сущности,
+ * поэтому его можно кешировать и разделять между потоками.
+ */
+@Value
+public class AuthenticatedUser implements UserDetails {
+    Long id;
+    String username;
+    List<GrantedAuthority> authorities;
+
+    public static AuthenticatedUser of(User user) {
+        List<GrantedAuthority> authorities = user.getRoles().stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.getAuthority()))
+                .toList();
+        return new AuthenticatedUser(user.getId(), user.getUsername(), authorities);
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -1,8 +1,8 @@
 package api.socialmedia.security;
 
-import api.socialmedia.service.UserService;
 import api.socialmedia.util.AccessTokenManager;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -24,39 +25,57 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final UserService userService;
+    private final PrincipalCache principalCache;
     private final JwtTokenUtil jwtTokenUtil;
 
     @Autowired
-    public JwtAuthenticationFilter(UserService userService, JwtTokenUtil jwtTokenUtil) {
-        this.userService = userService;
+    public JwtAuthenticationFilter(PrincipalCache principalCache, JwtTokenUtil jwtTokenUtil) {
+        this.principalCache = principalCache;
         this.jwtTokenUtil = jwtTokenUtil;
     }
 
 
 
+    /**
+     * WebSocket handshake не несет JWT: токен проверяется в кадре CONNECT ({@link StompAuthenticationInterceptor}).
+     */
+    @Override
+    protected boolean shouldNotFilter(@NotNull HttpServletRequest request) {
+        return "/ws".equals(request.getServletPath());
+    }
+
+    /**
+     * Ответ контроллера, вернувшего CompletableFuture, пишется в повторном ASYNC-диспатче, который снова проходит
+     * авторизацию. Контекст безопасности в запросе не сохраняется, поэтому токен проверяется и в этом диспатче
+     * (повторная проверка берется из кеша проверенных токенов).
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
     @Override
     protected void doFilterInternal(@NotNull HttpServletRequest request,
                                     @NotNull HttpServletResponse response,
                                     @NotNull FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("auth-token");
-        String username = null;
-        String jwtToken = null;
+        VerifiedToken verifiedToken = null;
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwtToken = authHeader.substring(7);
             try {
-                username = jwtTokenUtil.extractUsername(jwtToken);
+                verifiedToken = jwtTokenUtil.verify(authHeader.substring(7));
             } catch (IllegalArgumentException e) {
                 log.error("Unable to get JWT Token");
             } catch (ExpiredJwtException e) {
                 log.error("JWT Token has expired");
+            } catch (JwtException e) {
+                log.error("JWT Token is invalid");
             }
         } else {
               log.warn("JWT Token does not begin with Bearer String");
         }
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userService.loadUserByUsername(username);
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+        if (verifiedToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            try {
+                UserDetails userDetails = principalCache.get(verifiedToken.getUsername());
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -64,6 +83,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+            } catch (UsernameNotFoundException e) {
+                log.error("JWT Token user no longer exists");
             }
         }
         filterChain.doFilter(request, response);
@@ -1,33 +1,59 @@
 package api.socialmedia.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
-import java.util.function.Function;
 
+/**
+ * Выпуск и проверка JWT.
+ * Ключ и парсер создаются один раз (оба неизменяемые и потокобезопасные), токен разбирается и проверяется
+ * одним проходом в {@link VerifiedToken}. Проверенные токены кешируются по SHA-256 от токена до истечения их срока,
+ * поэтому повторные запросы с тем же токеном не пересчитывают HMAC.
+ */
 @Component
 public class JwtTokenUtil {
 
-    @Value("${app.jwt.secret}")
-    private String secret;
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final int expiration;
+    private final Cache<String, VerifiedToken> verifiedTokens;
 
-    @Value("${app.jwt.expiration}")
-    private int expiration;
-
-    public String extractUsername(String token ) {
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public JwtTokenUtil(@Value("${app.jwt.secret}") String secret,
+                        @Value("${app.jwt.expiration}") int expiration,
+                        @Value("${app.jwt.verified-cache.max-size}") long verifiedCacheMaxSize,
+                        MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.expiration = expiration;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwtVerifiedTokens");
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -41,30 +67,64 @@ public class JwtTokenUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration + 1000 * 60 * 24))
-                .signWith(SignatureAlgorithm.HS256, secret).compact();
+                .signWith(signingKey, SignatureAlgorithm.HS256).compact();
     }
 
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+    /**
+     * Проверяет подпись и срок токена и возвращает его утверждения.
+     * Невалидный токен бросает {@link io.jsonwebtoken.JwtException} (истекший - {@link ExpiredJwtException})
+     * или {@link IllegalArgumentException} для пустой строки.
+     */
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            return cached;
+        }
+        VerifiedToken verified = parse(token);
+        verifiedTokens.put(digest, verified);
+        return verified;
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private VerifiedToken parse(String token) {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Date issuedAt = claims.getIssuedAt();
+        Date expiresAt = claims.getExpiration();
+        if (expiresAt == null) {
+            throw new ExpiredJwtException(null, claims, "JWT Token has no expiration");
+        }
+        return new VerifiedToken(claims.getSubject(),
+                issuedAt == null ? null : issuedAt.toInstant(),
+                expiresAt.toInstant());
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
+    /**
+     * Запись живет ровно до истечения срока токена.
+     */
+    private static class UntilTokenExpires implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), value.getExpiresAt()).toNanos());
+        }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(secret)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
 
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,78 @@
+package api.socialmedia.security;
+
+import api.socialmedia.exception.TooManyRequestsException;
+import api.socialmedia.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение частоты входа и регистрации корзинами токенов по логину и по IP.
+ * Срабатывает до хеширования пароля, поэтому перебор паролей одного аккаунта или шторм с одного адреса
+ * отклоняется с 429 без нагрузки на пул хеширования. Неактивные корзины вытесняются из памяти.
+ */
+@Slf4j
+@Component
+public class LoginRateLimiter {
+
+    private static final Duration IDLE_BUCKET_TTL = Duration.ofMinutes(10);
+
+    private final Cache<String, TokenBucket> usernameBuckets;
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final int usernameCapacity;
+    private final int usernameRefillPerMinute;
+    private final int ipCapacity;
+    private final int ipRefillPerMinute;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public LoginRateLimiter(@Value("${app.auth.rate-limit.username-capacity}") int usernameCapacity,
+                            @Value("${app.auth.rate-limit.username-refill-per-minute}") int usernameRefillPerMinute,
+                            @Value("${app.auth.rate-limit.ip-capacity}") int ipCapacity,
+                            @Value("${app.auth.rate-limit.ip-refill-per-minute}") int ipRefillPerMinute,
+                            @Value("${app.auth.rate-limit.max-buckets}") long maxBuckets,
+                            MeterRegistry meterRegistry) {
+        this(usernameCapacity, usernameRefillPerMinute, ipCapacity, ipRefillPerMinute, maxBuckets, meterRegistry, System::nanoTime);
+    }
+
+    LoginRateLimiter(int usernameCapacity, int usernameRefillPerMinute, int ipCapacity, int ipRefillPerMinute,
+                     long maxBuckets, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefillPerMinute = usernameRefillPerMinute;
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPerMinute = ipRefillPerMinute;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.usernameBuckets = Caffeine.newBuilder().maximumSize(maxBuckets).expireAfterAccess(IDLE_BUCKET_TTL).build();
+        this.ipBuckets = Caffeine.newBuilder().maximumSize(maxBuckets).expireAfterAccess(IDLE_BUCKET_TTL).build();
+    }
+
+    public void checkLogin(String username, String clientIp) {
+        checkIp(clientIp);
+        acquire(usernameBuckets, username, usernameCapacity, usernameRefillPerMinute, "username");
+    }
+
+    public void checkIp(String clientIp) {
+        acquire(ipBuckets, clientIp, ipCapacity, ipRefillPerMinute, "ip");
+    }
+
+    private void acquire(Cache<String, TokenBucket> buckets, String key, int capacity, int refillPerMinute, String scope) {
+        long now = nanoClock.getAsLong();
+        long waitNanos = buckets.get(key, k -> new TokenBucket(capacity, refillPerMinute, now)).tryConsume(now);
+        if (waitNanos > 0) {
+            meterRegistry.counter("auth.rate-limited", "scope", scope).increment();
+            log.warn("Too many authentication attempts for {} {}", scope, key);
+            throw new TooManyRequestsException("Too many authentication attempts",
+                    TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        }
+    }
+}
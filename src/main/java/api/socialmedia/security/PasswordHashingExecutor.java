@@ -0,0 +1,53 @@
+package api.socialmedia.security;
+
+import api.socialmedia.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение операций с BCrypt (вход и регистрация) в отдельном ограниченном пуле.
+ * Потоки Tomcat не ждут хеширования, поэтому шторм логинов не забирает их у чтения ленты и постов.
+ * Если очередь пула заполнена, задача не ставится и клиент получает 429 с Retry-After.
+ * Время в очереди и время выполнения пишутся в метрики auth.hashing.queue и auth.hashing.
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+
+    private final AsyncTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueTimer;
+
+    public PasswordHashingExecutor(@Qualifier("passwordHashingTaskExecutor") AsyncTaskExecutor executor,
+                                   MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.queueTimer = Timer.builder("auth.hashing.queue")
+                .description("Time an authentication task waited for a password hashing thread")
+                .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        Timer taskTimer = meterRegistry.timer("auth.hashing", "operation", operation);
+        long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return taskTimer.record(task);
+            }, executor);
+        } catch (TaskRejectedException e) {
+            meterRegistry.counter("auth.hashing.rejected", "operation", operation).increment();
+            log.warn("Password hashing queue is full, {} rejected", operation);
+            return CompletableFuture.failedFuture(new TooManyRequestsException("Server is busy, try again later", 1));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package api.socialmedia.security;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static java.lang.String.format;
+
+/**
+ * Кеш принципалов для JwtAuthenticationFilter.
+ * Без него каждый запрос читает пользователя и его роли из базы до начала бизнес-логики.
+ * Записи ограничены по количеству и живут не дольше app.principal-cache.expire-after-write,
+ * а при изменении или удалении пользователя сбрасываются {@link PrincipalCacheInvalidator}.
+ */
+@Slf4j
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final PrimaryReads primaryReads;
+    private final LoadingCache<String, AuthenticatedUser> principals;
+
+    public PrincipalCache(UserRepository userRepository,
+                          PrimaryReads primaryReads,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.principal-cache.max-size}") long maxSize,
+                          @Value("${app.principal-cache.expire-after-write}") Duration expireAfterWrite) {
+        this.userRepository = userRepository;
+        this.primaryReads = primaryReads;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+    }
+
+    public AuthenticatedUser get(String username) throws UsernameNotFoundException {
+        return principals.get(username);
+    }
+
+    public void evict(String username) {
+        principals.invalidate(username);
+        log.debug("Principal {} evicted", username);
+    }
+
+    private AuthenticatedUser load(String username) {
+        return primaryReads.read(() -> userRepository.findByUsername(username))
+                .map(AuthenticatedUser::of)
+                .orElseThrow(() -> new UsernameNotFoundException(
+                        format("User with username - %s, not found", username)));
+    }
+}
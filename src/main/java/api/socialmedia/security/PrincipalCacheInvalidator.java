@@ -0,0 +1,85 @@
+package api.socialmedia.security;
+
+import api.socialmedia.entity.User;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * JPA-слушатель сущности User: любое изменение пользователя или его ролей сбрасывает закешированный принципал.
+ * Запись сбрасывается сразу и еще раз после коммита, чтобы параллельный запрос не закешировал
+ * незакоммиченное старое состояние. Кеш берется лениво, так как слушатель создается вместе с EntityManagerFactory.
+ * Принципал кешируется по имени пользователя, поэтому при переименовании сбрасываются и прежнее, и новое имя:
+ * иначе токен со старым именем еще час находил бы в кеше принципала с прежними ролями.
+ * Изменение только ролей пишет в user_roles и не вызывает @PostUpdate у User, поэтому тот же слушатель
+ * подписан на события коллекций Hibernate (см. HibernateListenerConfig).
+ */
+public class PrincipalCacheInvalidator implements PostCollectionUpdateEventListener, PostCollectionRecreateEventListener {
+
+    private final ObjectProvider<PrincipalCache> principalCache;
+
+    public PrincipalCacheInvalidator(ObjectProvider<PrincipalCache> principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostLoad
+    @PostPersist
+    public void onUserLoaded(User user) {
+        user.setLoadedUsername(user.getUsername());
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        Set<String> usernames = Stream.of(user.getLoadedUsername(), user.getUsername())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        user.setLoadedUsername(user.getUsername());
+        evict(usernames);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(usernames);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        onCollectionChanged(event);
+    }
+
+    /**
+     * Коллекция пересоздается, когда ролям присваивают новое множество.
+     */
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        onCollectionChanged(event);
+    }
+
+    private void onCollectionChanged(AbstractCollectionEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof User user) {
+            onUserChanged(user);
+        }
+    }
+
+    private void evict(Set<String> usernames) {
+        principalCache.ifAvailable(cache -> usernames.forEach(cache::evict));
+    }
+}
@@ -0,0 +1,72 @@
+package api.socialmedia.security;
+
+import api.socialmedia.exception.AccessDeniedException;
+import api.socialmedia.exception.UnauthorizedException;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Аутентификация и права STOMP-сессий.
+ * Браузер не может передать свой заголовок при WebSocket handshake, поэтому /ws открыт,
+ * а JWT передается в заголовке auth-token кадра CONNECT и проверяется так же, как в {@link JwtAuthenticationFilter}.
+ * Канал только для доставки с сервера: подписка разрешена лишь на свои очереди /user/queue/..., кадры SEND отклоняются.
+ * Исключение отправляет клиенту кадр ERROR и закрывает сессию.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StompAuthenticationInterceptor implements ChannelInterceptor {
+
+    private static final String AUTH_HEADER = "auth-token";
+    private static final String BEARER = "Bearer ";
+    private static final String USER_QUEUE_PREFIX = "/user/queue/";
+
+    private final JwtTokenUtil jwtTokenUtil;
+    private final PrincipalCache principalCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECT -> accessor.setUser(authenticate(accessor.getFirstNativeHeader(AUTH_HEADER)));
+            case SUBSCRIBE -> checkSubscription(accessor.getDestination());
+            case SEND -> throw new AccessDeniedException("Sending messages over WebSocket is not allowed");
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private StompPrincipal authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith(BEARER)) {
+            throw new UnauthorizedException("JWT Token does not begin with Bearer String");
+        }
+        try {
+            VerifiedToken verifiedToken = jwtTokenUtil.verify(authHeader.substring(BEARER.length()));
+            return new StompPrincipal(principalCache.get(verifiedToken.getUsername()).getId());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("WebSocket JWT Token is invalid");
+            throw new UnauthorizedException("JWT Token is invalid");
+        } catch (UsernameNotFoundException e) {
+            log.error("WebSocket JWT Token user no longer exists");
+            throw new UnauthorizedException("JWT Token user no longer exists");
+        }
+    }
+
+    private static void checkSubscription(String destination) {
+        if (destination == null || !destination.startsWith(USER_QUEUE_PREFIX)) {
+            throw new AccessDeniedException("Subscription to " + destination + " is not allowed");
+        }
+    }
+}
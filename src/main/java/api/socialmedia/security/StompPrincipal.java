@@ -0,0 +1,19 @@
+package api.socialmedia.security;
+
+import lombok.Value;
+
+import java.security.Principal;
+
+/**
+ * Принципал STOMP-сессии. Имя - id пользователя: события адресуются по id,
+ * поэтому доставка не требует поиска логина пользователя.
+ */
+@Value
+public class StompPrincipal implements Principal {
+    Long userId;
+
+    @Override
+    public String getName() {
+        return String.valueOf(userId);
+    }
+}
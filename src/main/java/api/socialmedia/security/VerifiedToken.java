@@ -0,0 +1,19 @@
+package api.socialmedia.security;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Проверенные утверждения JWT: подпись и срок уже проверены, объект неизменяемый и безопасен для кеширования.
+ */
+@Value
+public class VerifiedToken {
+    String username;
+    Instant issuedAt;
+    Instant expiresAt;
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
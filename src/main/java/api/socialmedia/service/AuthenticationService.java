@@ -1,5 +1,6 @@
 package api.socialmedia.service;
 
+import api.socialmedia.datasource.PrimaryReads;
 import api.socialmedia.dto.request.AuthRequest;
 import api.socialmedia.dto.request.RegRequest;
 import api.socialmedia.dto.responce.AuthResponse;
@@ -10,12 +11,15 @@ import api.socialmedia.model.EnumRoles;
 import api.socialmedia.repository.AuthenticationRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.security.JwtTokenUtil;
+import api.socialmedia.security.LoginRateLimiter;
+import api.socialmedia.security.PasswordHashingExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -23,6 +27,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 
 @Slf4j
@@ -31,41 +36,58 @@ import java.util.Optional;
 public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
-    private final UserService userService;
     private final JwtTokenUtil jwtTokenUtil;
     private final AuthenticationRepository authenticationRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final LoginRateLimiter loginRateLimiter;
+    private final PrimaryReads primaryReads;
 
 
 
-    public ResponseEntity<?> register(RegRequest request) {
-        Optional<User> userFromBD = userRepository.findByUsername(request.getLogin());
+    /**
+     * Регистрация пользователя.
+     * Частота регистраций ограничена по IP, хеширование пароля и сохранение выполняются в пуле хеширования,
+     * поток запроса освобождается сразу.
+     */
+    public CompletableFuture<ResponseEntity<?>> register(RegRequest request, String clientIp) {
+        loginRateLimiter.checkIp(clientIp);
+        Optional<User> userFromBD = primaryReads.read(() -> userRepository.findByUsername(request.getLogin()));
         if (userFromBD.isPresent()) {
             throw new InputDataException("User with the same username already exists");
         }
 
-        User newUser = User.builder()
-                .username(request.getLogin())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .email(request.getEmail())
-                .roles(Collections.singleton(new Role(EnumRoles.ROLE_USER)))
-                .build();
-        userRepository.save(newUser);
-        return ResponseEntity.ok(HttpStatus.OK);
+        return passwordHashingExecutor.submit("register", () -> {
+            User newUser = User.builder()
+                    .username(request.getLogin())
+                    .password(passwordEncoder.encode(request.getPassword()))
+                    .email(request.getEmail())
+                    .roles(Collections.singleton(new Role(EnumRoles.ROLE_USER)))
+                    .build();
+            userRepository.save(newUser);
+            return ResponseEntity.ok(HttpStatus.OK);
+        });
     }
 
 
-    public AuthResponse login(AuthRequest request) {
+    /**
+     * Вход в систему.
+     * Частота попыток ограничена по логину и по IP, проверка пароля (BCrypt) выполняется в пуле хеширования.
+     */
+    public CompletableFuture<AuthResponse> login(AuthRequest request, String clientIp) {
         final String username = request.getLogin();
         final String password = request.getPassword();
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
-        final UserDetails userDetails = userService.loadUserByUsername(username);
-        String token = jwtTokenUtil.generateToken(userDetails);
-        authenticationRepository.putTokenAndUsername(token, username);
-        log.info("User {} is authorized", username);
-        return AuthResponse.builder()
-                .authToken(token)
-                .build();
+        loginRateLimiter.checkLogin(username, clientIp);
+        return passwordHashingExecutor.submit("login", () -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(username, password));
+            String token = jwtTokenUtil.generateToken((UserDetails) authentication.getPrincipal());
+            authenticationRepository.putTokenAndUsername(token, username, jwtTokenUtil.verify(token).getExpiresAt());
+            log.info("User {} is authorized", username);
+            return AuthResponse.builder()
+                    .authToken(token)
+                    .build();
+        });
     }
 }
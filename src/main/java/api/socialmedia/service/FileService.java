@@ -1,8 +1,16 @@
 package api.socialmedia.service;
 
-import org.springframework.web.bind.annotation.PathVariable;
+import api.socialmedia.dto.responce.FileMetadataDto;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
 
 public interface FileService {
 
-    byte[] downloadFile( Long id);
+    FileMetadataDto storeFile(MultipartFile file);
+
+    void discardFile(FileMetadataDto storedFile);
+
+    FileMetadataDto getFileMetadata(Long id);
+
+    Resource downloadFile(String blobKey);
 }
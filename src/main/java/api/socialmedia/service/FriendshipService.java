@@ -1,5 +1,6 @@
 package api.socialmedia.service;
 
+import api.socialmedia.dto.request.FriendshipBatchRequestDto;
 import api.socialmedia.dto.request.FriendshipRequestDto;
 import api.socialmedia.dto.responce.FollowersResponseDto;
 import api.socialmedia.dto.responce.FriendshipResponseDto;
@@ -10,6 +11,8 @@ import java.util.List;
 public interface FriendshipService {
     FollowersResponseDto sendFriendshipRequest(FriendshipRequestDto request);
 
+    List<FollowersResponseDto> sendFriendshipRequests(FriendshipBatchRequestDto request);
+
     FriendshipResponseDto acceptFriendshipRequest(Long friendshipId);
 
     void removeFriendship(Long removerId, Long deletedId);
@@ -2,13 +2,22 @@ package api.socialmedia.service;
 
 
 import api.socialmedia.dto.request.MessageRequestDto;
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.MessageResponseDto;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface MessageService {
 
-    void sendMessage(MessageRequestDto messageRequestDto);
+    CompletableFuture<Void> sendMessage(MessageRequestDto messageRequestDto);
 
-    List<MessageResponseDto> getMessages(Long userOneId, Long userTwoId);
+    void sendMessages(List<MessageRequestDto> messageRequestDtos);
+
+    CursorPageDto<MessageResponseDto> getMessages(Long userOneId, Long userTwoId, String before, String after, int size);
+
+    CursorPageDto<ConversationResponseDto> getInbox(String cursor, int size);
+
+    void markConversationRead(Long otherUserId);
 }
@@ -1,5 +1,6 @@
 package api.socialmedia.service;
 
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import org.springframework.data.domain.Pageable;
 
@@ -7,4 +8,6 @@ import java.util.List;
 
 public interface PostFeedService {
     List<PostResponseDto> getUserActivityFeed(Long userId, Pageable pageable);
+
+    CursorPageDto<PostResponseDto> getUserActivityFeed(Long userId, String cursor, int size);
 }
@@ -1,6 +1,7 @@
 package api.socialmedia.service;
 
 import api.socialmedia.dto.request.PostRequestDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -17,6 +18,10 @@ public interface PostService {
 
     Page<PostResponseDto> getAllUsersPosts(Pageable pageable, Long id);
 
+    CursorPageDto<PostResponseDto> getPosts(String cursor, int size);
+
+    CursorPageDto<PostResponseDto> getUsersPosts(Long userId, String cursor, int size);
+
     PostResponseDto updatePost(Long id, PostRequestDto editRequest);
 
     void deletePost(Long id);
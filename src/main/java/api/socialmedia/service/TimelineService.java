@@ -0,0 +1,10 @@
+package api.socialmedia.service;
+
+public interface TimelineService {
+
+    void fanOut(Long postId, Long authorId);
+
+    void backfill(Long userOneId, Long userTwoId);
+
+    void evict(Long userOneId, Long userTwoId);
+}
@@ -1,5 +1,6 @@
 package api.socialmedia.service;
 
+import api.socialmedia.datasource.PrimaryReads;
 import api.socialmedia.entity.User;
 import api.socialmedia.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
@@ -17,15 +18,17 @@ import static java.lang.String.format;
 public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final PrimaryReads primaryReads;
 
     @Autowired
-    public UserService(UserRepository repository) {
+    public UserService(UserRepository repository, PrimaryReads primaryReads) {
         this.userRepository = repository;
+        this.primaryReads = primaryReads;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username)  throws UsernameNotFoundException {
-        User userDetails = userRepository.findByUsername(username).orElseThrow(
+        User userDetails = primaryReads.read(() -> userRepository.findByUsername(username)).orElseThrow(
                 () ->
                         new UsernameNotFoundException(
                                 format("User with username - %s, not found", username)));;
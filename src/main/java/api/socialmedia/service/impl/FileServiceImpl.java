@@ -1,12 +1,24 @@
 package api.socialmedia.service.impl;
 
-import api.socialmedia.entity.Post;
+import api.socialmedia.dto.responce.FileMetadataDto;
+import api.socialmedia.exception.FileStorageException;
 import api.socialmedia.exception.PostNotFoundException;
 import api.socialmedia.repository.PostRepository;
+import api.socialmedia.repository.projection.PostFileView;
 import api.socialmedia.service.FileService;
+import api.socialmedia.storage.BlobStore;
+import api.socialmedia.storage.StoredBlob;
+import api.socialmedia.util.ContentTypeDetector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 
 @Slf4j
@@ -15,20 +27,84 @@ import org.springframework.stereotype.Service;
 public class FileServiceImpl implements FileService {
 
     private final PostRepository postRepository;
+    private final BlobStore blobStore;
 
     /**
-     * Загрузить файл по Id
-     * @param id
+     * Сохранить файл в блоб-хранилище.
+     * Файл читается потоком, в базу попадает только ссылка на блоб.
+     * Тип содержимого определяется по первым байтам файла, а не берется на веру из запроса.
      */
+    @Override
+    public FileMetadataDto storeFile(MultipartFile file) {
+        try (InputStream in = new BufferedInputStream(file.getInputStream())) {
+            String contentType = ContentTypeDetector.detect(in, file.getOriginalFilename(), file.getContentType());
+            StoredBlob blob = blobStore.put(in);
+            log.info("File stored: {}, content type: {}", blob, contentType);
+            return FileMetadataDto.builder()
+                    .blobKey(blob.getKey())
+                    .size(blob.getSize())
+                    .contentType(contentType)
+                    .newBlob(blob.isCreated())
+                    .build();
+        } catch (IOException e) {
+            throw new FileStorageException("Unable to store file", e);
+        }
+    }
 
+    /**
+     * Удалить блоб, сохраненный для поста, который так и не был записан в базу.
+     * Блобы адресуются по содержимому и общие для одинаковых файлов, поэтому удаляется только блоб,
+     * записанный этой загрузкой, и только если на него не ссылается ни один пост.
+     * Ошибка удаления не пробрасывается: исходная ошибка сохранения поста важнее, а лишний блоб только занимает место.
+     */
     @Override
-    public byte[] downloadFile(Long id) {
-        Post post = postRepository.getPostById(id);
-        if (post == null) {
+    public void discardFile(FileMetadataDto storedFile) {
+        String blobKey = storedFile.getBlobKey();
+        if (!storedFile.isNewBlob() || postRepository.existsByBlobKey(blobKey)) {
+            return;
+        }
+        try {
+            blobStore.delete(blobKey);
+            log.info("Orphaned blob {} deleted", blobKey);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to delete orphaned blob {}", blobKey, e);
+        }
+    }
+
+    /**
+     * Получить метаданные файла поста по Id поста.
+     * Сам блоб при этом не читается, а из строки поста выбираются только поля вложения.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public FileMetadataDto getFileMetadata(Long id) {
+        PostFileView post = postRepository.findFileViewById(id).orElseThrow(() -> {
             log.info("Post not found");
-            throw new PostNotFoundException("Post not found");
+            return new PostNotFoundException("Post not found");
+        });
+        if (post.getBlobKey() == null) {
+            log.info("Post {} has no file", id);
+            throw new PostNotFoundException("File not found");
+        }
+        return FileMetadataDto.builder()
+                .postId(post.getId())
+                .blobKey(post.getBlobKey())
+                .size(post.getFileSize())
+                .contentType(post.getContentType())
+                .lastModified(post.getDate())
+                .build();
+    }
+
+    /**
+     * Загрузить файл по ключу блоба.
+     * Файл не читается в память целиком: возвращается ресурс, который отдается клиенту потоком.
+     */
+    @Override
+    public Resource downloadFile(String blobKey) {
+        Resource file = blobStore.load(blobKey);
+        if (!file.exists()) {
+            throw new FileStorageException("Blob " + blobKey + " is missing in storage");
         }
-        log.info("Post loaded successfully : {}", post);
-        return post.getFileData();
+        return file;
     }
 }
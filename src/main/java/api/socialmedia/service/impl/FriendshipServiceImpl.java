@@ -1,27 +1,42 @@
 package api.socialmedia.service.impl;
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
+import api.socialmedia.dto.request.FriendshipBatchRequestDto;
 import api.socialmedia.dto.request.FriendshipRequestDto;
 import api.socialmedia.dto.responce.FollowersResponseDto;
 import api.socialmedia.dto.responce.FriendshipResponseDto;
 import api.socialmedia.entity.Follower;
 import api.socialmedia.entity.Friendship;
+import api.socialmedia.entity.User;
+import api.socialmedia.event.FriendshipCreatedEvent;
+import api.socialmedia.event.FriendshipRemovedEvent;
 import api.socialmedia.exception.AccessDeniedException;
 import api.socialmedia.exception.DuplicateFriendshipRequestException;
 import api.socialmedia.exception.FriendshipNotFoundException;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.RequestNotFoundException;
+import api.socialmedia.exception.UserNotFoundException;
 import api.socialmedia.repository.FollowerRepository;
 import api.socialmedia.repository.FriendshipRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.service.FriendshipService;
+import api.socialmedia.util.AccessTokenManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -34,13 +49,20 @@ public class FriendshipServiceImpl implements FriendshipService {
     private final FriendshipRepository friendshipRepository;
     private final FollowerRepository followerRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AccessTokenManager tokenManager;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final int MAX_BATCH_SIZE = 1000;
 
     /**
      * Отправка запроса на добавление в друзья.
      * Реализация:
      * Из запроса получаем id отправителя и получателя и проверяем не равны ли они.
-     * Проверяем не было ли такого уже запроса отправлено(чтобы избежать дублей в базе)
-     * Сохраняем наш запрос в таблицу followers
+     * Сохраняем наш запрос в таблицу followers.
+     * Дубли отсекает уникальный индекс (sender_id, receiver_id): проверка и вставка не разнесены по запросам,
+     * поэтому два одновременных запроса не могут создать две записи
      */
 
     @Transactional
@@ -51,24 +73,82 @@ public class FriendshipServiceImpl implements FriendshipService {
             throw new AccessDeniedException("You can't send a friend request to yourself");
         }
 
-        if (followerRepository.existsBySenderIdAndReceiverId(senderId, receiverId)) {
-            throw new DuplicateFriendshipRequestException("Duplicate friendship request");
+        Follower followerRequest;
+        try {
+            followerRequest = saveFollower(senderId, receiverId);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateOrRethrow(e);
         }
-
-        Follower followerRequest = saveFollower(senderId, receiverId);
         log.info("FollowerRequest successfully created: {}", followerRequest);
+        readYourWritesTracker.recordWrite(tokenManager.getUserId());
         return mapToFollowersResponseDto(followerRequest);
     }
 
 
+    /**
+     * Пакетная отправка запросов в друзья от одного пользователя.
+     * Реализация:
+     * Отправлять запросы можно только от своего имени: отправитель должен совпадать с текущим пользователем.
+     * Повторяющиеся id получателей схлопываются, запрос самому себе запрещен,
+     * отправитель и получатели проверяются одним запросом.
+     * Id записей берутся блоками из последовательности, поэтому вставки уходят в базу пачками.
+     * Если хотя бы один запрос уже существует, уникальный индекс откатывает весь пакет.
+     */
+    @Transactional
+    public List<FollowersResponseDto> sendFriendshipRequests(FriendshipBatchRequestDto request) {
+        Long senderId = request.getSenderId();
+        if (!Objects.equals(senderId, tokenManager.getUserId())) {
+            throw new AccessDeniedException("Sending friend requests on behalf of another user is not allowed");
+        }
+        if (request.getReceiverIds() == null || request.getReceiverIds().stream().anyMatch(Objects::isNull)) {
+            throw new InputDataException("Receiver ids must not be empty");
+        }
+        Set<Long> receiverIds = new LinkedHashSet<>(request.getReceiverIds());
+        if (receiverIds.isEmpty() || receiverIds.size() > MAX_BATCH_SIZE) {
+            throw new InputDataException("Batch must contain from 1 to " + MAX_BATCH_SIZE + " receivers");
+        }
+        if (receiverIds.contains(senderId)) {
+            throw new AccessDeniedException("You can't send a friend request to yourself");
+        }
+        Set<Long> userIds = new LinkedHashSet<>(receiverIds);
+        userIds.add(senderId);
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        User sender = users.get(senderId);
+        if (sender == null) {
+            throw new UserNotFoundException("Sender user not found");
+        }
+        if (users.size() != userIds.size()) {
+            throw new UserNotFoundException("Receiver user not found");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Follower> followers = receiverIds.stream()
+                .map(receiverId -> newFollower(sender, users.get(receiverId), now))
+                .collect(Collectors.toList());
+        List<Follower> savedFollowers;
+        try {
+            savedFollowers = followerRepository.saveAllAndFlush(followers);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateOrRethrow(e);
+        }
+        log.info("{} follower requests created by user {}", savedFollowers.size(), senderId);
+        readYourWritesTracker.recordWrite(senderId);
+        return savedFollowers.stream()
+                .map(this::mapToFollowersResponseDto)
+                .collect(Collectors.toList());
+    }
+
+
     /**
      * Подтверждение запроса на добавление в друзья по id запроса.
      * Реализация:
      * Получаем запрос из базы, чтобы проверить, существует ли он.
-     * Проверяем не было ли такого уже запроса отправлено(чтобы избежать дублей в базе)
-     * Делаем проверку не существует ли уже такой дружбы(чтобы не было дублей дружб в базе)
-     * Сохраняем новую запись о дружбе в базу и
-     * делаем запись о втором подписчике(если он еще не существует, возможно такое что они оба сделали запросы друг другу)
+     * Сохраняем новую запись о дружбе в базу. Дружба хранится в каноническом виде (меньший id, больший id),
+     * поэтому повторную дружбу (в том числе при одновременных подтверждениях) отсекает уникальный индекс.
+     * Делаем запись о втором подписчике, если ее еще нет (возможно такое что они оба сделали запросы друг другу)
+     * Увеличиваем счетчики друзей обоих пользователей (по ним лента решает, рассылать ли посты автора).
+     * После коммита ленты новых друзей асинхронно дополняются постами друг друга.
      */
 
     @Transactional
@@ -78,18 +158,20 @@ public class FriendshipServiceImpl implements FriendshipService {
         Long senderId = followerFromDB.getSender().getId();
         Long receiverId = followerFromDB.getReceiver().getId();
 
-        if (friendshipRepository.existsByUserOneIdAndUserTwoId(senderId, receiverId) ||
-                friendshipRepository.existsByUserOneIdAndUserTwoId(receiverId, senderId)) {
-            throw new DuplicateFriendshipRequestException("Duplicate friendship request");
+        Friendship newFriendship;
+        try {
+            newFriendship = saveFriendship(followerFromDB);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateOrRethrow(e);
         }
-
-        Friendship newFriendship = saveFriendship(followerFromDB);
         log.info("Friendship successfully created: {}", newFriendship);
+        userRepository.changeFriendCount(List.of(senderId, receiverId), 1);
+        eventPublisher.publishEvent(new FriendshipCreatedEvent(senderId, receiverId));
 
-        if (!(followerRepository.existsByReceiverIdAndSenderId(senderId, receiverId))) {
-            Follower followerRequest = saveFollowerTwo(senderId, receiverId);
-            log.info("FollowerRequest successfully created: {}", followerRequest);
+        if (followerRepository.insertIfAbsent(receiverId, senderId) > 0) {
+            log.info("FollowerRequest successfully created: sender {}, receiver {}", receiverId, senderId);
         }
+        readYourWritesTracker.recordWrite(tokenManager.getUserId());
         return mapToFriendshipResponseDto(newFriendship);
     }
 
@@ -97,28 +179,23 @@ public class FriendshipServiceImpl implements FriendshipService {
     /**
      * Удаление дружбы по id удаляющего и удаляемого.
      * Реализация:
-     * Получаем дружбу из базы по ID юзеров. Так как запросы друг другу могли отправить как первый так и второй юзер,
-     * выполняется двойная проверка.
-     * Удаляем дружбу.
+     * Дружба хранится в каноническом виде (меньший id, больший id), поэтому удаляется одним запросом по уникальному индексу.
      * Удаляем подписку удаляющего пользователя на того кого он удалил
      * Удаленный остается подписанным на удаляющего
+     * После коммита посты бывших друзей асинхронно убираются из их лент.
      */
     @Transactional
     public void removeFriendship(Long removerId, Long deletedId) {
-        Optional<Friendship> friendshipFromDB = friendshipRepository.findByUserOneIdAndUserTwoId(removerId, deletedId);
-        if (friendshipFromDB.isEmpty()) {
-            friendshipFromDB = friendshipRepository.findByUserTwoIdAndUserOneId(removerId, deletedId);
-            if (friendshipFromDB.isEmpty()) {
-                throw new FriendshipNotFoundException("Friendship not found");
-            }
+        int removed = friendshipRepository.deleteByUserIds(Math.min(removerId, deletedId), Math.max(removerId, deletedId));
+        if (removed == 0) {
+            throw new FriendshipNotFoundException("Friendship not found");
         }
-        Friendship friendship = friendshipFromDB.get();
-        friendshipRepository.delete(friendship);
         log.info("User with id: {} removed user with id: {}", removerId, deletedId);
+        userRepository.changeFriendCount(List.of(removerId, deletedId), -1);
+        eventPublisher.publishEvent(new FriendshipRemovedEvent(removerId, deletedId));
 
-        followerRepository.deleteBySenderAndReceiver(
-                userRepository.getById(removerId),
-                userRepository.getById(deletedId));
+        followerRepository.deleteBySenderIdAndReceiverId(removerId, deletedId);
+        readYourWritesTracker.recordWrite(tokenManager.getUserId());
     }
 
     /**
@@ -129,48 +206,56 @@ public class FriendshipServiceImpl implements FriendshipService {
         Follower followerFromDB = followerRepository.findById(followerId)
                 .orElseThrow(() -> new RequestNotFoundException("Request for friendship not found"));
         followerRepository.delete(followerFromDB);
+        readYourWritesTracker.recordWrite(tokenManager.getUserId());
     }
 
     /**
      * Получение списка всех записей о дружбах пользователя по Id.
+     * Записи читаются сразу в DTO, сущности пользователей не загружаются.
      */
     @Transactional(readOnly = true)
     public List<FriendshipResponseDto> getFriendshipsForUser(Long userId) {
-        List<Friendship> friendships = friendshipRepository.findByUserOneIdOrUserTwoId(userId, userId);
-        return friendships.stream()
-                .map(this::mapToFriendshipResponseDto)
-                .collect(Collectors.toList());
+        return friendshipRepository.findAllByUserId(userId);
     }
 
 
     private Friendship saveFriendship(Follower followerFromDB) {
+        User sender = followerFromDB.getSender();
+        User receiver = followerFromDB.getReceiver();
+        boolean senderFirst = sender.getId() < receiver.getId();
         Friendship friendshipRequest = new Friendship();
-        friendshipRequest.setUserOne(followerFromDB.getSender());
-        friendshipRequest.setUserTwo(followerFromDB.getReceiver());
+        friendshipRequest.setUserOne(senderFirst ? sender : receiver);
+        friendshipRequest.setUserTwo(senderFirst ? receiver : sender);
         friendshipRequest.setDate(LocalDateTime.now());
-        Friendship newFriendship = friendshipRepository.save(friendshipRequest);
+        Friendship newFriendship = friendshipRepository.saveAndFlush(friendshipRequest);
         log.info("Friendship saved: {}", newFriendship);
         return newFriendship;
     }
 
     private Follower saveFollower(Long senderId, Long receiverId) {
-        Follower follower = new Follower();
-        follower.setSender(userRepository.getById(senderId));
-        follower.setReceiver(userRepository.getById(receiverId));
-        follower.setDate(LocalDateTime.now());
-        Follower savedFollower = followerRepository.save(follower);
+        Follower follower = newFollower(userRepository.getById(senderId), userRepository.getById(receiverId), LocalDateTime.now());
+        Follower savedFollower = followerRepository.saveAndFlush(follower);
         log.info("Follower saved: {}", savedFollower);
         return savedFollower;
     }
 
-    private Follower saveFollowerTwo(Long senderId, Long receiverId) {
-        Follower followerTwo = new Follower();
-        followerTwo.setSender(userRepository.getById(receiverId));
-        followerTwo.setReceiver(userRepository.getById(senderId));
-        followerTwo.setDate(LocalDateTime.now());
-        Follower savedFollower = followerRepository.save(followerTwo);
-        log.info("Follower saved: {}", savedFollower);
-        return savedFollower;
+    private static Follower newFollower(User sender, User receiver, LocalDateTime date) {
+        Follower follower = new Follower();
+        follower.setSender(sender);
+        follower.setReceiver(receiver);
+        follower.setDate(date);
+        return follower;
+    }
+
+    /**
+     * Нарушение уникального индекса означает дубль запроса или дружбы, остальные ошибки целостности пробрасываются как есть.
+     */
+    private static RuntimeException duplicateOrRethrow(DataIntegrityViolationException e) {
+        if (NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException sqlException
+                && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+            return new DuplicateFriendshipRequestException("Duplicate friendship request");
+        }
+        return e;
     }
 
 
@@ -0,0 +1,272 @@
+package api.socialmedia.service.impl;
+
+import api.socialmedia.entity.Message;
+import api.socialmedia.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Групповая запись отправленных сообщений (app.messages.group-commit.enabled).
+ * Проверенное сообщение ставится в ограниченную очередь, а единственный поток записи забирает из нее пачку
+ * до max-batch-size сообщений или до истечения batch-window с момента прихода первого сообщения пачки
+ * и сохраняет ее одной транзакцией через {@link MessageWriter}: один коммит (и один fsync WAL) на пачку вместо
+ * коммита на сообщение. Future вызывающего завершается только после коммита его пачки, поэтому подтверждение
+ * означает, что сообщение сохранено, а запрос не держит ни поток Tomcat, ни соединение с базой, пока ждет.
+ * Если пачка не записалась, ее сообщения пишутся по одному, и ошибка достается только сообщению, которое ее вызвало.
+ * Когда очередь заполнена, сообщение не принимается и клиент получает 429 с Retry-After.
+ * При остановке приложения прием прекращается, а оставшиеся в очереди сообщения дописываются.
+ * Прием закрывается под блокировкой, поэтому сообщение либо успевает встать в очередь и будет дописано,
+ * либо сразу отклоняется: future не остается незавершенным.
+ * Метрики: messages.group-commit.queue (глубина очереди), messages.group-commit.batch (размер пачки),
+ * messages.group-commit.flush (время записи пачки), messages.group-commit.ack (от постановки в очередь
+ * до подтверждения), messages.group-commit.rejected, а также настроенные окно и емкость очереди.
+ */
+@Slf4j
+@Component
+public class MessageGroupCommitter implements SmartLifecycle {
+
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MessageWriter messageWriter;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingMessage> queue;
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+    private final Timer ackTimer;
+    private final Counter rejected;
+    private final ReadWriteLock intake = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public MessageGroupCommitter(MessageWriter messageWriter,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.messages.group-commit.enabled}") boolean enabled,
+                                 @Value("${app.messages.group-commit.batch-window}") Duration batchWindow,
+                                 @Value("${app.messages.group-commit.max-batch-size}") int maxBatchSize,
+                                 @Value("${app.messages.group-commit.queue-capacity}") int queueCapacity) {
+        this.messageWriter = messageWriter;
+        this.enabled = enabled;
+        this.windowNanos = batchWindow.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = DistributionSummary.builder("messages.group-commit.batch")
+                .description("Messages written by one group commit")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("messages.group-commit.flush")
+                .description("Time to write and commit one batch of messages")
+                .register(meterRegistry);
+        this.ackTimer = Timer.builder("messages.group-commit.ack")
+                .description("Time from queueing a message to acknowledging it as committed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("messages.group-commit.rejected")
+                .description("Messages rejected because the group commit queue was full")
+                .register(meterRegistry);
+        Gauge.builder("messages.group-commit.queue", queue, BlockingQueue::size)
+                .description("Messages waiting for a group commit")
+                .register(meterRegistry);
+        Gauge.builder("messages.group-commit.queue.capacity", () -> queueCapacity)
+                .register(meterRegistry);
+        Gauge.builder("messages.group-commit.window", () -> batchWindow.toNanos() / 1e9)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("messages.group-commit.max-batch-size", () -> maxBatchSize)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит проверенное сообщение в очередь записи.
+     * Future завершается после коммита пачки с этим сообщением или с ошибкой записи.
+     */
+    public CompletableFuture<Void> submit(Message message) {
+        PendingMessage pending = new PendingMessage(message, System.nanoTime(), new CompletableFuture<>());
+        intake.readLock().lock();
+        try {
+            if (running && queue.offer(pending)) {
+                return pending.acknowledgement();
+            }
+        } finally {
+            intake.readLock().unlock();
+        }
+        rejected.increment();
+        log.warn("Message group commit queue is full or stopped, message rejected");
+        return CompletableFuture.failedFuture(new TooManyRequestsException("Server is busy, try again later", 1));
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "message-group-commit");
+        writerThread.start();
+        log.info("Message group commit started: window {} ms, batch up to {} messages",
+                TimeUnit.NANOSECONDS.toMillis(windowNanos), maxBatchSize);
+    }
+
+    /**
+     * Сначала закрывается прием: после этого ни одно сообщение в очередь не встанет.
+     * Затем поток записи дописывает очередь и останавливается, а если его прервали, остаток дописывается здесь.
+     */
+    @Override
+    public void stop() {
+        intake.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            intake.writeLock().unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingMessage> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Останавливается после веб-сервера (его фаза DEFAULT_PHASE - 2048, фазы останавливаются от большей к меньшей):
+     * новые запросы уже не приходят, а принятые успевают получить подтверждение.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Поток записи один, поэтому никакая ошибка пачки его не останавливает: пачка завершается с ошибкой,
+     * а поток берет следующую. Иначе очередь перестала бы разбираться, а future в ней - завершаться.
+     */
+    private void writeLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(batch);
+                return;
+            } catch (Throwable e) {
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flush(batch);
+        } catch (Throwable e) {
+            fail(batch, e);
+        }
+    }
+
+    private void fail(List<PendingMessage> batch, Throwable e) {
+        log.error("Failed to write batch of {} messages", batch.size(), e);
+        batch.forEach(pending -> pending.acknowledgement().completeExceptionally(e));
+    }
+
+    /**
+     * Собирает пачку: первое сообщение ждется не дольше IDLE_POLL, остальные - до конца окна первого.
+     * Если поток был занят записью предыдущей пачки, окно уже истекло и пачка забирает все накопившееся сразу.
+     * При остановке пачка закрывается, не дожидаясь конца окна.
+     */
+    private void collect(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage first = queue.poll(IDLE_POLL_NANOS, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = first.queuedAt() + windowNanos;
+        while (running) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            PendingMessage next = queue.poll(Math.min(remaining, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+        queue.drainTo(batch, maxBatchSize - batch.size());
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        List<Message> messages = batch.stream().map(PendingMessage::message).toList();
+        try {
+            flushTimer.record(() -> messageWriter.write(messages));
+            batchSize.record(batch.size());
+            acknowledge(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.warn("Failed to write message", e);
+                batch.get(0).acknowledgement().completeExceptionally(e);
+                return;
+            }
+            log.warn("Failed to write batch of {} messages, writing them one by one", batch.size(), e);
+            batch.forEach(pending -> write(List.of(pending.withoutId())));
+        }
+    }
+
+    private void acknowledge(List<PendingMessage> batch) {
+        long now = System.nanoTime();
+        for (PendingMessage pending : batch) {
+            ackTimer.record(now - pending.queuedAt(), TimeUnit.NANOSECONDS);
+            pending.acknowledgement().complete(null);
+        }
+    }
+
+    /**
+     * Сообщение в очереди и future, которое завершится после его коммита.
+     */
+    private record PendingMessage(Message message, long queuedAt, CompletableFuture<Void> acknowledgement) {
+
+        /**
+         * Id, выданный в откаченной транзакции, сбрасывается, чтобы при повторной записи сообщение вставилось заново.
+         */
+        PendingMessage withoutId() {
+            message.setId(null);
+            return this;
+        }
+    }
+}
@@ -1,22 +1,38 @@
 package api.socialmedia.service.impl;
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
 import api.socialmedia.dto.request.MessageRequestDto;
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.MessageResponseDto;
 import api.socialmedia.entity.Message;
 import api.socialmedia.entity.User;
+import api.socialmedia.exception.AccessDeniedException;
 import api.socialmedia.exception.FriendshipNotFoundException;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.UserNotFoundException;
-import api.socialmedia.repository.FriendshipRepository;
+import api.socialmedia.graph.FriendGraphIndex;
+import api.socialmedia.repository.ConversationRepository;
 import api.socialmedia.repository.MessageRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.service.MessageService;
+import api.socialmedia.util.AccessTokenManager;
+import api.socialmedia.util.MessageCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,18 +41,31 @@ import java.util.stream.Collectors;
 public class MessageServiceImpl implements MessageService {
 
     private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
     private final UserRepository userRepository;
-    private final FriendshipRepository friendshipRepository;
+    private final FriendGraphIndex friendGraphIndex;
+    private final AccessTokenManager tokenManager;
+    private final MessageWriter messageWriter;
+    private final MessageGroupCommitter groupCommitter;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private static final int MAX_BATCH_SIZE = 1000;
 
     /**
      * Отправка сообщения пользователю
      * Метод проверяет наличие обоих юзеров, являются ли они друзьями
      * и формирует сущность сообщения для сохранения в базу.
      * В сущности указаны отправитель, получатель, текст и дата сообщения.
+     * В той же транзакции обновляется переписка: последнее сообщение и счетчик непрочитанных получателя.
+     * После коммита сообщение доставляется подключенным по WebSocket получателю и отправителю.
+     * Дата усекается до микросекунд (точность timestamp в Postgres), поэтому дата в событии совпадает с сохраненной
+     * и годится клиенту как курсор переписки.
+     * При включенной групповой записи проверенное сообщение уходит в очередь {@link MessageGroupCommitter},
+     * а future завершается после коммита пачки, в которую оно попало.
      */
 
     @Transactional
-    public void sendMessage(MessageRequestDto messageRequestDto) {
+    public CompletableFuture<Void> sendMessage(MessageRequestDto messageRequestDto) {
         User sender = userRepository.findById(messageRequestDto.getSenderId())
                 .orElseThrow(() -> new UserNotFoundException("Sender user not found"));
 
@@ -51,50 +80,138 @@ public class MessageServiceImpl implements MessageService {
         message.setSender(sender);
         message.setReceiver(receiver);
         message.setText(messageRequestDto.getText());
-        message.setDate(LocalDateTime.now());
+        message.setDate(now());
+
+        readYourWritesTracker.recordWrite(tokenManager.getUserId());
+        if (groupCommitter.isEnabled()) {
+            return groupCommitter.submit(message);
+        }
+        messageWriter.write(List.of(message));
+        return CompletableFuture.completedFuture(null);
+    }
 
-        messageRepository.save(message);
+
+    /**
+     * Пакетная отправка сообщений.
+     * Отправлять сообщения можно только от своего имени: отправитель каждого сообщения должен совпадать
+     * с текущим пользователем, а пустые элементы и сообщения без получателя отклоняются до обращения к базе.
+     * Все отправители и получатели читаются одним запросом, дружба проверяется по индексу графа в памяти.
+     * Id сообщений берутся блоками из последовательности, поэтому вставки уходят в базу пачками (hibernate.jdbc.batch_size).
+     * Если хотя бы одно сообщение не проходит проверку, не сохраняется ни одно.
+     * Каждая затронутая переписка обновляется одним запросом, сколько бы сообщений в нее ни пришло.
+     */
+    @Transactional
+    public void sendMessages(List<MessageRequestDto> messageRequestDtos) {
+        if (messageRequestDtos == null || messageRequestDtos.isEmpty() || messageRequestDtos.size() > MAX_BATCH_SIZE) {
+            throw new InputDataException("Batch must contain from 1 to " + MAX_BATCH_SIZE + " messages");
+        }
+        Long senderId = tokenManager.getUserId();
+        Set<Long> userIds = new HashSet<>();
+        userIds.add(senderId);
+        for (MessageRequestDto dto : messageRequestDtos) {
+            if (dto == null || dto.getReceiverId() == null) {
+                throw new InputDataException("Every message must have a receiver");
+            }
+            if (!Objects.equals(dto.getSenderId(), senderId)) {
+                throw new AccessDeniedException("Sending messages on behalf of another user is not allowed");
+            }
+            userIds.add(dto.getReceiverId());
+        }
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        User sender = users.get(senderId);
+        if (sender == null) {
+            throw new UserNotFoundException("Sender user not found");
+        }
+
+        LocalDateTime now = now();
+        List<Message> messages = new ArrayList<>(messageRequestDtos.size());
+        for (MessageRequestDto dto : messageRequestDtos) {
+            User receiver = users.get(dto.getReceiverId());
+            if (receiver == null) {
+                throw new UserNotFoundException("Receiver user not found");
+            }
+            if (!areFriends(sender.getId(), receiver.getId())) {
+                throw new FriendshipNotFoundException("Users are not friends");
+            }
+            messages.add(new Message(null, sender, receiver, dto.getText(), now));
+        }
+        messageWriter.write(messages);
+        readYourWritesTracker.recordWrite(sender.getId());
+        log.info("{} messages sent", messages.size());
     }
 
 
     /**
-     * Запрос переписки между двумя пользователями.
+     * Запрос переписки между двумя пользователями по курсору.
      * Проверяет являются ли пользователи друзьями.
-     * Сообщения выводятся списком, по времени отправки
-     * @param userOneId
-     * @param userTwoId
+     * Без курсора отдаются последние сообщения, before листает к более старым, after - к более новым.
+     * Страница читается по индексу переписки (least, greatest, date, id) не больше size + 1 строк,
+     * поэтому время ответа и память не зависят от длины переписки.
+     * Сообщения выводятся от новых к старым
      */
     @Transactional(readOnly = true)
-    public List<MessageResponseDto> getMessages(Long userOneId, Long userTwoId) {
+    public CursorPageDto<MessageResponseDto> getMessages(Long userOneId, Long userTwoId, String before, String after, int size) {
+        MessageCursor olderThan = MessageCursor.decode(before);
+        MessageCursor newerThan = MessageCursor.decode(after);
+        if (olderThan != null && newerThan != null) {
+            throw new InputDataException("Only one of before and after can be set");
+        }
+        int limit = MessageCursor.checkSize(size) + 1;
         if (!areFriends(userOneId, userTwoId)) {
             throw new FriendshipNotFoundException("Users are not friends");
         }
-        List<Message> messages = messageRepository.findBySenderIdAndReceiverIdOrSenderIdAndReceiverIdOrderByDateAsc(
-                userOneId, userTwoId, userTwoId, userOneId
-        );
-        return messages.stream()
-                .map(this::mapToMessageResponseDto)
-                .collect(Collectors.toList());
+        Long lowId = Math.min(userOneId, userTwoId);
+        Long highId = Math.max(userOneId, userTwoId);
+        if (newerThan != null) {
+            return MessageCursor.newerPage(messageRepository.findConversationAfter(
+                    lowId, highId, newerThan.getDate(), newerThan.getId(), limit), size);
+        }
+        List<MessageResponseDto> messages = olderThan == null
+                ? messageRepository.findConversation(lowId, highId, limit)
+                : messageRepository.findConversationBefore(lowId, highId, olderThan.getDate(), olderThan.getId(), limit);
+        return MessageCursor.olderPage(messages, size);
     }
 
 
     /**
-     * Проверяет, являются ли пользователи друзьями
+     * Инбокс текущего пользователя по курсору.
+     * Переписки отдаются от последней активности к более ранней, с превью последнего сообщения
+     * и числом непрочитанных. Страница читается из conversations по индексам активности, сообщения не читаются.
      */
     @Transactional(readOnly = true)
-    private boolean areFriends(Long UserOneId, Long UserTwoId) {
-        return friendshipRepository.existsByUserOneIdAndUserTwoId(UserOneId, UserTwoId) ||
-                friendshipRepository.existsByUserOneIdAndUserTwoId(UserTwoId, UserOneId);
+    public CursorPageDto<ConversationResponseDto> getInbox(String cursor, int size) {
+        MessageCursor before = MessageCursor.decode(cursor);
+        int limit = MessageCursor.checkSize(size) + 1;
+        Long userId = tokenManager.getUserId();
+        List<ConversationResponseDto> conversations = before == null
+                ? conversationRepository.findInbox(userId, limit)
+                : conversationRepository.findInboxBefore(userId, before.getDate(), before.getId(), limit);
+        return MessageCursor.inboxPage(conversations, size);
+    }
+
+
+    /**
+     * Отметить переписку текущего пользователя с другим пользователем прочитанной.
+     * Обнуляется только счетчик текущего пользователя, у собеседника счетчик не меняется.
+     */
+    @Transactional
+    public void markConversationRead(Long otherUserId) {
+        Long userId = tokenManager.getUserId();
+        conversationRepository.markRead(Math.min(userId, otherUserId), Math.max(userId, otherUserId), userId);
+        readYourWritesTracker.recordWrite(userId);
     }
 
 
-    private MessageResponseDto mapToMessageResponseDto(Message message) {
-        MessageResponseDto dto = new MessageResponseDto();
-        dto.setId(message.getId());
-        dto.setSenderId(message.getSender().getId());
-        dto.setReceiverId(message.getReceiver().getId());
-        dto.setText(message.getText());
-        dto.setDate(message.getDate());
-        return dto;
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Проверяет, являются ли пользователи друзьями.
+     * Проверка идет по индексу графа дружбы в памяти, без запроса в базу.
+     */
+    private boolean areFriends(Long userOneId, Long userTwoId) {
+        return friendGraphIndex.areFriends(userOneId, userTwoId);
     }
 }
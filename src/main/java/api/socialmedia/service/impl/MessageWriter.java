@@ -0,0 +1,92 @@
+package api.socialmedia.service.impl;
+
+import api.socialmedia.entity.Conversation;
+import api.socialmedia.entity.ConversationId;
+import api.socialmedia.entity.Message;
+import api.socialmedia.event.MessageSentEvent;
+import api.socialmedia.repository.ConversationRepository;
+import api.socialmedia.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Запись проверенных сообщений: сами сообщения, переписки и события для доставки по WebSocket.
+ * Общая для синхронной отправки (в транзакции вызывающего) и для групповой записи {@link MessageGroupCommitter}
+ * (своя транзакция на пачку).
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageWriter {
+
+    private static final Comparator<ConversationId> CONVERSATION_ORDER =
+            Comparator.comparing(ConversationId::getUserOneId).thenComparing(ConversationId::getUserTwoId);
+
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Сохраняет сообщения одним saveAll: id берутся блоками из последовательности,
+     * поэтому вставки уходят в базу многострочными пачками (hibernate.jdbc.batch_size).
+     * Каждая затронутая переписка обновляется одним запросом, сколько бы сообщений в нее ни пришло.
+     * События публикуются в транзакции и доставляются после коммита.
+     */
+    @Transactional
+    public void write(List<Message> messages) {
+        messageRepository.saveAll(messages);
+        recordConversations(messages);
+        messages.forEach(this::publishSent);
+    }
+
+    /**
+     * Сообщения сворачиваются по переписке: последнее сообщение и число новых сообщений для каждой стороны.
+     * Переписки обновляются в порядке (user_one_id, user_two_id): две пачки с общими переписками блокируют
+     * их строки в одном порядке и не могут взаимно заблокироваться.
+     */
+    private void recordConversations(List<Message> messages) {
+        Map<ConversationId, ConversationDelta> deltas = new TreeMap<>(CONVERSATION_ORDER);
+        for (Message message : messages) {
+            Long senderId = message.getSender().getId();
+            Long receiverId = message.getReceiver().getId();
+            ConversationId conversationId = new ConversationId(Math.min(senderId, receiverId), Math.max(senderId, receiverId));
+            boolean toUserOne = receiverId.equals(conversationId.getUserOneId());
+            deltas.merge(conversationId, new ConversationDelta(message, toUserOne ? 1 : 0, toUserOne ? 0 : 1),
+                    ConversationDelta::then);
+        }
+        deltas.forEach((conversationId, delta) -> {
+            Message last = delta.last();
+            conversationRepository.recordMessages(conversationId.getUserOneId(), conversationId.getUserTwoId(),
+                    last.getId(), last.getSender().getId(), preview(last.getText()), last.getDate(),
+                    delta.userOneUnread(), delta.userTwoUnread());
+        });
+    }
+
+    private void publishSent(Message message) {
+        eventPublisher.publishEvent(new MessageSentEvent(message.getId(), message.getSender().getId(),
+                message.getReceiver().getId(), message.getText(), message.getDate()));
+    }
+
+    /**
+     * Превью обрезается по символам (code points), как считает длину varchar в Postgres.
+     */
+    private static String preview(String text) {
+        if (text.codePointCount(0, text.length()) <= Conversation.PREVIEW_LENGTH) {
+            return text;
+        }
+        return text.substring(0, text.offsetByCodePoints(0, Conversation.PREVIEW_LENGTH));
+    }
+
+    private record ConversationDelta(Message last, int userOneUnread, int userTwoUnread) {
+
+        ConversationDelta then(ConversationDelta next) {
+            return new ConversationDelta(next.last, userOneUnread + next.userOneUnread, userTwoUnread + next.userTwoUnread);
+        }
+    }
+}
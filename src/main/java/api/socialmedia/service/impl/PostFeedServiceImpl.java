@@ -1,73 +1,154 @@
 package api.socialmedia.service.impl;
 
 
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
-import api.socialmedia.entity.Friendship;
-import api.socialmedia.entity.Post;
-import api.socialmedia.entity.User;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.UserNotFoundException;
-import api.socialmedia.mapper.PostMapper;
-import api.socialmedia.repository.FriendshipRepository;
+import api.socialmedia.graph.FriendGraphIndex;
+import api.socialmedia.graph.HighDegreeUsers;
 import api.socialmedia.repository.PostRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.service.PostFeedService;
-import lombok.RequiredArgsConstructor;
+import api.socialmedia.util.FeedMerger;
+import api.socialmedia.util.PostCursor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class PostFeedServiceImpl implements PostFeedService {
 
     private final PostRepository postRepository;
     private final UserRepository userRepository;
-    private final FriendshipRepository friendshipRepository;
-    private final PostMapper postMapper;
+    private final FriendGraphIndex friendGraphIndex;
+    private final HighDegreeUsers highDegreeUsers;
+    private final MeterRegistry meterRegistry;
+    private final int timelineDepth;
     private final String FILE_URL = "http://localhost:8080/file/download/";
 
+    public PostFeedServiceImpl(PostRepository postRepository,
+                               UserRepository userRepository,
+                               FriendGraphIndex friendGraphIndex,
+                               HighDegreeUsers highDegreeUsers,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.feed.timeline-depth}") int timelineDepth) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.friendGraphIndex = friendGraphIndex;
+        this.highDegreeUsers = highDegreeUsers;
+        this.meterRegistry = meterRegistry;
+        this.timelineDepth = timelineDepth;
+    }
+
     /**
      * Получение ленты постов
      * Реализация:
-     * Настраивает пагинацию по умолчанию и находим юзера по id
-     * Получает id всех друзей пользователя
-     * Получает ленту активности в соответствии с условием - поддерживать пагинацию и сортировку по времени создания
-     * Сортировка по времени создания задается также в объекте Pageable
+     * Настраивает пагинацию
+     * Посты обычных друзей заранее материализованы в timeline_entries (рассылаются друзьям при публикации),
+     * поэтому страница читается одним проходом по индексу ленты пользователя без перебора списка друзей.
+     * Посты друзей, у которых друзей больше app.feed.high-degree-threshold, не рассылаются:
+     * их последние посты читаются при запросе и сливаются с материализованной лентой (k-way merge по дате).
+     * Таких друзей дает пересечение индекса графа дружбы и снимка {@link HighDegreeUsers} в памяти, без запроса в users.
+     * Существование пользователя проверяется только если страница пуста: непустая лента бывает лишь у существующего.
+     * Сортировка всегда по времени создания поста, в ленте хранятся только последние app.feed.timeline-depth постов
+     * Посты читаются сразу в PostResponseDto (проекция в запросе), сущности Post не создаются
+     * Страницы глубже app.feed.timeline-depth отклоняются: материализованная лента таких постов не хранит,
+     * а гибридное слияние читало бы offset + size строк из каждого источника. Глубже листают по курсору.
      */
 
     @Transactional(readOnly = true)
     public List<PostResponseDto> getUserActivityFeed(Long userId, Pageable pageable) {
-        pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "date"));
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
-
-        List<Long> friendsIds = getFriendIds(userId);
-        Page<Post> activityFeed = postRepository.findByUserIdIn(friendsIds, pageable);
+        pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        checkDepth(pageable);
+        long[] pulledAuthors = pulledAuthors(userId);
+        List<PostResponseDto> activityFeed = pulledAuthors.length == 0
+                ? postRepository.findTimeline(userId, pageable)
+                : mergeWithPulledAuthors(userId, pulledAuthors, pageable);
+        if (activityFeed.isEmpty()) {
+            checkUserExists(userId);
+        }
         return activityFeed.stream()
-                .map(postMapper::postEntityToPostResponseDto)
-                .peek(responseDto -> responseDto.setFileUrl(FILE_URL + responseDto.getId()))
+                .map(this::withFileUrl)
                 .collect(Collectors.toList());
     }
 
-    private List<Long> getFriendIds(Long userId) {
-        List<Friendship> friendships = friendshipRepository.findByUserOneIdOrUserTwoId(userId, userId);
-        return friendships.stream()
-                .flatMap(friendship -> Stream.of(friendship.getUserOne().getId(), friendship.getUserTwo().getId()))
-                .filter(id -> id != null && !id.equals(userId))
-                .collect(Collectors.toList());
+    /**
+     * Получение ленты постов по курсору
+     * Реализация:
+     * Вместо номера страницы клиент передает курсор - дату и id последнего полученного поста.
+     * Каждый источник (материализованная лента и посты «знаменитостей») читается условием (date, id) < курсора
+     * по индексу, поэтому глубокие страницы читаются так же быстро, как первая, а count-запроса нет.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<PostResponseDto> getUserActivityFeed(Long userId, String cursor, int size) {
+        PostCursor after = PostCursor.decode(cursor);
+        Pageable head = PageRequest.of(0, PostCursor.checkSize(size) + 1);
+        long[] pulledAuthors = pulledAuthors(userId);
+        List<List<PostResponseDto>> sources = new ArrayList<>(pulledAuthors.length + 1);
+        sources.add(after == null
+                ? postRepository.findTimeline(userId, head)
+                : postRepository.findTimelineBefore(userId, after.getDate(), after.getId(), head));
+        for (long authorId : pulledAuthors) {
+            sources.add(after == null
+                    ? postRepository.findLatestByUserId(authorId, head)
+                    : postRepository.findLatestByUserIdBefore(authorId, after.getDate(), after.getId(), head));
+        }
+        List<PostResponseDto> activityFeed = pulledAuthors.length == 0 ? sources.get(0) : merge(sources, 0, head.getPageSize());
+        if (activityFeed.isEmpty()) {
+            checkUserExists(userId);
+        }
+        return PostCursor.page(activityFeed, size, this::withFileUrl);
     }
-}
 
+    /**
+     * Чтобы собрать страницу N, из каждого источника достаточно взять первые (N + 1) * size постов.
+     */
+    private List<PostResponseDto> mergeWithPulledAuthors(Long userId, long[] pulledAuthors, Pageable pageable) {
+        Pageable head = PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize());
+        List<List<PostResponseDto>> sources = new ArrayList<>(pulledAuthors.length + 1);
+        sources.add(postRepository.findTimeline(userId, head));
+        for (long authorId : pulledAuthors) {
+            sources.add(postRepository.findLatestByUserId(authorId, head));
+        }
+        return merge(sources, (int) pageable.getOffset(), pageable.getPageSize());
+    }
 
+    private void checkDepth(Pageable pageable) {
+        if (pageable.getOffset() + pageable.getPageSize() > timelineDepth) {
+            throw new InputDataException("Feed pages are limited to the latest " + timelineDepth
+                    + " posts, use /posts/feed/{userId}/cursor to read further");
+        }
+    }
 
+    private long[] pulledAuthors(Long userId) {
+        return highDegreeUsers.intersect(friendGraphIndex.friendIds(userId));
+    }
 
+    private void checkUserExists(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("User not found");
+        }
+    }
 
+    private List<PostResponseDto> merge(List<List<PostResponseDto>> sources, int skip, int limit) {
+        int candidates = sources.stream().mapToInt(List::size).sum();
+        meterRegistry.summary("feed.hybrid.merge.sources").record(sources.size());
+        meterRegistry.summary("feed.hybrid.merge.candidates").record(candidates);
+        return meterRegistry.timer("feed.hybrid.merge").record(() -> FeedMerger.merge(sources, skip, limit));
+    }
+
+    private PostResponseDto withFileUrl(PostResponseDto responseDto) {
+        responseDto.setFileUrl(FILE_URL + responseDto.getId());
+        return responseDto;
+    }
+}
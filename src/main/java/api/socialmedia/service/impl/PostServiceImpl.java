@@ -1,16 +1,24 @@
 package api.socialmedia.service.impl;
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
 import api.socialmedia.dto.request.PostRequestDto;
+import api.socialmedia.dto.responce.CursorPageDto;
+import api.socialmedia.dto.responce.FileMetadataDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.entity.Post;
+import api.socialmedia.event.PostPublishedEvent;
+import api.socialmedia.event.PostUpdatedEvent;
 import api.socialmedia.exception.AccessDeniedException;
 import api.socialmedia.exception.PostNotFoundException;
 import api.socialmedia.mapper.PostMapper;
 import api.socialmedia.repository.PostRepository;
+import api.socialmedia.service.FileService;
 import api.socialmedia.service.PostService;
 import api.socialmedia.util.AccessTokenManager;
+import api.socialmedia.util.PostCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -19,8 +27,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 
@@ -33,6 +41,9 @@ public class PostServiceImpl implements PostService {
     private final PostRepository postRepository;
     private final PostMapper postMapper;
     private final AccessTokenManager tokenManager;
+    private final FileService fileService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReadYourWritesTracker readYourWritesTracker;
     private final String FILE_URL = "http://localhost:8080/file/download/";
 
 
@@ -40,23 +51,33 @@ public class PostServiceImpl implements PostService {
      * Создание поста.
      * Мы создаем сущность для сохранения в базу,
      * добавляем недостающие данные такие как дата и время, id пользователя.
-     * Также добавляем в сущность файловые данные.
+     * Сам файл сохраняется в блоб-хранилище, в сущность попадает только ссылка на блоб, размер и тип.
+     * Файл записывается потоком до открытия транзакции: соединение с базой берется только
+     * для вставки метаданных, когда байты файла уже надежно сохранены.
+     * Если пост сохранить не удалось, записанный для него блоб удаляется, чтобы не оставлять файлы без поста.
      * В response будем возвращать готовый пост, но без файловых данных,
      * вместо них прикрепим ссылку на запрос к файлу.
+     * После сохранения пост асинхронно рассылается в ленты друзей автора.
      */
 
-    @Transactional
     public PostResponseDto createPost(PostRequestDto request, MultipartFile file) {
         Long userId = tokenManager.getUserId();
         Post post = postMapper.postRequestDtoToPostEntity(request);
         post.setUserId(userId);
         post.setDate(LocalDateTime.now());
+        FileMetadataDto storedFile = fileService.storeFile(file);
+        post.setBlobKey(storedFile.getBlobKey());
+        post.setFileSize(storedFile.getSize());
+        post.setContentType(storedFile.getContentType());
+        Post savePost;
         try {
-            post.setFileData(file.getBytes());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            savePost = postRepository.save(post);
+        } catch (RuntimeException e) {
+            fileService.discardFile(storedFile);
+            throw e;
         }
-        Post savePost = postRepository.save(post);
+        readYourWritesTracker.recordWrite(userId);
+        eventPublisher.publishEvent(new PostPublishedEvent(savePost.getId(), userId));
         String fileUrl = FILE_URL + savePost.getId();
         PostResponseDto responseDto = postMapper.postEntityToPostResponseDto(savePost);
         responseDto.setFileUrl(fileUrl);
@@ -69,14 +90,14 @@ public class PostServiceImpl implements PostService {
      * Получение поста по ID
      * Реализация состоит в том, что мы получаем сущность из БД с файлом по Id поста,
      * но в response будем отдавать не сам файл, а ссылку на запрос к нему.
+     * Пост читается по первичному ключу, поэтому повторные запросы берут метаданные из второго уровня кеша.
      */
     @Transactional(readOnly = true)
     public PostResponseDto findById(Long id) {
-        Post post = postRepository.getPostById(id);
-        if (post == null) {
+        Post post = postRepository.findById(id).orElseThrow(() -> {
             log.info("There's no post with id={}", id);
-            throw new PostNotFoundException("There's no post with id=" + id);
-        }
+            return new PostNotFoundException("There's no post with id=" + id);
+        });
         PostResponseDto responseDto = postMapper.postEntityToPostResponseDto(post);
         String fileUrl = FILE_URL + post.getId();
         responseDto.setFileUrl(fileUrl);
@@ -88,22 +109,20 @@ public class PostServiceImpl implements PostService {
     /**
      * Получение всех постов всех пользователей
      * Если сортировка не задана пользователем, то выводим сортировку по умолчанию, по дате в порядке убывания.
+     * Посты читаются сразу в PostResponseDto (проекция в запросе), сущности Post не создаются.
      */
     @Transactional(readOnly = true)
     public Page<PostResponseDto> getAllPosts(Pageable pageable) {
         if (!pageable.getSort().isSorted()) {
             pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "date"));
         }
-        Page<Post> posts = postRepository.findAll(pageable);
+        Page<PostResponseDto> posts = postRepository.findAllResponses(pageable);
         if (posts.getSize() == 0) {
             log.info("No posts in Database");
             throw new PostNotFoundException("No posts in Database");
         }
         log.info("All posts received: {}", posts);
-        Page<PostResponseDto> listDto = posts.map(postMapper::postEntityToPostResponseDto);
-        listDto.forEach(responseDto -> responseDto.setFileUrl(FILE_URL + responseDto.getId()));
-
-        return listDto;
+        return posts.map(this::withFileUrl);
     }
 
     /**
@@ -115,21 +134,49 @@ public class PostServiceImpl implements PostService {
         if (!pageable.getSort().isSorted()) {
             pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "date"));
         }
-        Page<Post> posts = postRepository.findAllByUserId(userId, pageable);
+        Page<PostResponseDto> posts = postRepository.findAllByUserId(userId, pageable);
         if (posts.getSize() == 0) {
             log.info("No posts in Database");
             throw new PostNotFoundException("No posts in Database");
         }
         log.info("List all user's posts with id : {} , {}", userId, posts);
-        Page<PostResponseDto> listDto = posts.map(postMapper::postEntityToPostResponseDto);
-        listDto.forEach(responseDto -> responseDto.setFileUrl(FILE_URL + responseDto.getId()));
-        return listDto;
+        return posts.map(this::withFileUrl);
+    }
+
+    /**
+     * Получение постов всех пользователей по курсору.
+     * Посты отдаются от новых к старым, следующая страница читается по индексу (date, id) условием
+     * (date, id) < курсора, без OFFSET и без count-запроса.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<PostResponseDto> getPosts(String cursor, int size) {
+        PostCursor after = PostCursor.decode(cursor);
+        Pageable head = PageRequest.of(0, PostCursor.checkSize(size) + 1);
+        List<PostResponseDto> posts = after == null
+                ? postRepository.findLatest(head)
+                : postRepository.findLatestBefore(after.getDate(), after.getId(), head);
+        return PostCursor.page(posts, size, this::withFileUrl);
+    }
+
+    /**
+     * Получение постов пользователя по курсору.
+     * Страница читается по индексу (user_id, date, id) так же, как getPosts.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<PostResponseDto> getUsersPosts(Long userId, String cursor, int size) {
+        PostCursor after = PostCursor.decode(cursor);
+        Pageable head = PageRequest.of(0, PostCursor.checkSize(size) + 1);
+        List<PostResponseDto> posts = after == null
+                ? postRepository.findLatestByUserId(userId, head)
+                : postRepository.findLatestByUserIdBefore(userId, after.getDate(), after.getId(), head);
+        return PostCursor.page(posts, size, this::withFileUrl);
     }
 
     /**
      * Изменение своего поста по Id.
      * Редактировать пост может только пользователь, кому он принадлежит.
      * Редактировать можно только название и текст поста.
+     * Дата поста обновляется, поэтому после коммита он заново поднимается в лентах друзей.
      */
     @Transactional
     public PostResponseDto updatePost(Long id, PostRequestDto editRequest) {
@@ -142,6 +189,8 @@ public class PostServiceImpl implements PostService {
             postForUpdate.setText(editRequest.getText());
             postForUpdate.setDate(LocalDateTime.now());
             Post updatedPost = postRepository.save(postForUpdate);
+            readYourWritesTracker.recordWrite(userId);
+            eventPublisher.publishEvent(new PostUpdatedEvent(updatedPost.getId(), userId));
             String fileUrl = FILE_URL + updatedPost.getId();
             PostResponseDto responseDto = postMapper.postEntityToPostResponseDto(updatedPost);
             responseDto.setFileUrl(fileUrl);
@@ -166,9 +215,15 @@ public class PostServiceImpl implements PostService {
                 new PostNotFoundException(String.format("Post with id  %s not found in database", id)));
         if (Objects.equals(userId, postForDelete.getUserId())) {
             postRepository.deleteById(id);
+            readYourWritesTracker.recordWrite(userId);
         } else {
             log.error("Deleting someone else's post is not allowed");
             throw new AccessDeniedException("Deleting someone else's post is not allowed");
         }
     }
+
+    private PostResponseDto withFileUrl(PostResponseDto responseDto) {
+        responseDto.setFileUrl(FILE_URL + responseDto.getId());
+        return responseDto;
+    }
 }
@@ -0,0 +1,81 @@
+package api.socialmedia.service.impl;
+
+import api.socialmedia.graph.HighDegreeUsers;
+import api.socialmedia.repository.TimelineEntryRepository;
+import api.socialmedia.service.TimelineService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+
+@Slf4j
+@Service
+public class TimelineServiceImpl implements TimelineService {
+
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final HighDegreeUsers highDegreeUsers;
+    private final int timelineDepth;
+
+    public TimelineServiceImpl(TimelineEntryRepository timelineEntryRepository,
+                               HighDegreeUsers highDegreeUsers,
+                               @Value("${app.feed.timeline-depth}") int timelineDepth) {
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.highDegreeUsers = highDegreeUsers;
+        this.timelineDepth = timelineDepth;
+    }
+
+    /**
+     * Рассылка поста в ленты всех друзей автора.
+     * Реализация:
+     * Посты авторов с числом друзей выше порога не рассылаются: их читатели подтягивают при чтении ленты
+     * (порог проверяется по снимку {@link HighDegreeUsers}, тому же, что использует чтение ленты).
+     * Если автор перешел порог уже после рассылки поста, разосланные записи удаляются: иначе после редактирования
+     * пост остался бы в лентах со старой датой и одновременно пришел бы при чтении с новой.
+     * Одним запросом добавляем пост в ленту каждого друга (повторная рассылка после редактирования
+     * только обновляет дату записи).
+     * Обрезаем ленты получателей до заданной глубины, чтобы таблица не росла бесконечно.
+     */
+    @Transactional
+    public void fanOut(Long postId, Long authorId) {
+        if (highDegreeUsers.contains(authorId)) {
+            int removed = timelineEntryRepository.deleteByPostId(postId);
+            log.info("Post {} is not fanned out, author {} is pulled at read time, {} pushed entries removed",
+                    postId, authorId, removed);
+            return;
+        }
+        int inserted = timelineEntryRepository.fanOut(postId, authorId);
+        int trimmed = timelineEntryRepository.trimFriendsTimelines(authorId, timelineDepth);
+        log.info("Post {} fanned out to {} timelines, {} old entries trimmed", postId, inserted, trimmed);
+    }
+
+    /**
+     * Дополнение лент новых друзей.
+     * Каждый получает последние посты другого (не больше глубины ленты), после чего лента обрезается.
+     * Посты автора с числом друзей выше порога в ленту не копируются, они подтягиваются при чтении.
+     */
+    @Transactional
+    public void backfill(Long userOneId, Long userTwoId) {
+        backfillTimeline(userOneId, userTwoId);
+        backfillTimeline(userTwoId, userOneId);
+    }
+
+    /**
+     * Удаление постов бывших друзей из лент друг друга.
+     */
+    @Transactional
+    public void evict(Long userOneId, Long userTwoId) {
+        int evicted = timelineEntryRepository.deleteByRecipientIdAndAuthorId(userOneId, userTwoId)
+                + timelineEntryRepository.deleteByRecipientIdAndAuthorId(userTwoId, userOneId);
+        log.info("{} timeline entries evicted after users {} and {} stopped being friends", evicted, userOneId, userTwoId);
+    }
+
+    private void backfillTimeline(Long recipientId, Long authorId) {
+        if (highDegreeUsers.contains(authorId)) {
+            return;
+        }
+        int inserted = timelineEntryRepository.backfill(recipientId, authorId, timelineDepth);
+        timelineEntryRepository.trimTimeline(recipientId, timelineDepth);
+        log.info("{} posts of user {} added to timeline of user {}", inserted, authorId, recipientId);
+    }
+}
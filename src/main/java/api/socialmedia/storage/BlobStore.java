@@ -0,0 +1,33 @@
+package api.socialmedia.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Хранилище бинарных данных (вложений постов).
+ * Данные адресуются по содержимому: ключ блоба - SHA-256 его байтов,
+ * поэтому одинаковые файлы хранятся один раз.
+ */
+public interface BlobStore {
+
+    /**
+     * Сохраняет поток целиком и возвращает ссылку на блоб.
+     * Блоб становится видимым только после полной записи.
+     */
+    StoredBlob put(InputStream content) throws IOException;
+
+    /**
+     * Возвращает блоб как ресурс для потокового чтения.
+     * Содержимое не загружается в память, поток открывается только при чтении.
+     */
+    Resource load(String key);
+
+    boolean exists(String key);
+
+    /**
+     * Удаляет блоб, если он есть.
+     */
+    void delete(String key) throws IOException;
+}
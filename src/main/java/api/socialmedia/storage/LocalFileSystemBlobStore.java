@@ -0,0 +1,135 @@
+package api.socialmedia.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Локальное файловое хранилище блобов.
+ * Файл блоба лежит в root/ab/cd/abcd..., где abcd... - SHA-256 содержимого.
+ * Запись идет во временный файл в root/tmp, который после fsync атомарно переименовывается в итоговый путь,
+ * поэтому читатели никогда не видят частично записанный блоб.
+ * После переименования fsync делается и для каталога шарда (и для родителей только что созданных каталогов):
+ * без этого запись о файле в каталоге может не пережить сбой питания, хотя сами байты уже на диске.
+ */
+@Slf4j
+@Component
+public class LocalFileSystemBlobStore implements BlobStore {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Path tmpDir;
+
+    @Autowired
+    public LocalFileSystemBlobStore(@Value("${app.storage.local.root}") String root) {
+        this(Paths.get(root));
+    }
+
+    public LocalFileSystemBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve("tmp");
+        try {
+            Files.createDirectories(tmpDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create blob store directory " + this.root, e);
+        }
+    }
+
+    @Override
+    public StoredBlob put(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(tmpDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest);
+                 FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                size = in.transferTo(out);
+                channel.force(true);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = resolve(key);
+            if (Files.exists(target)) {
+                log.debug("Blob {} already stored", key);
+                return new StoredBlob(key, size, false);
+            }
+            List<Path> createdDirs = createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+            for (Path dir : createdDirs) {
+                syncDirectory(dir.getParent());
+            }
+            return new StoredBlob(key, size, true);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Resource load(String key) {
+        return new FileSystemResource(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    /**
+     * Создает недостающие каталоги и возвращает их от самого глубокого к верхнему.
+     */
+    private static List<Path> createDirectories(Path dir) throws IOException {
+        List<Path> missing = new ArrayList<>();
+        for (Path current = dir; current != null && Files.notExists(current); current = current.getParent()) {
+            missing.add(current);
+        }
+        Files.createDirectories(dir);
+        return missing;
+    }
+
+    private static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
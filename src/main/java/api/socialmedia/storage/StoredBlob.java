@@ -0,0 +1,15 @@
+package api.socialmedia.storage;
+
+import lombok.Value;
+
+/**
+ * Ссылка на сохраненный блоб: ключ (SHA-256 в hex) и размер в байтах.
+ * created - блоб записан этим вызовом, а не найден среди уже сохраненных.
+ */
+@Value
+public class StoredBlob {
+
+    String key;
+    long size;
+    boolean created;
+}
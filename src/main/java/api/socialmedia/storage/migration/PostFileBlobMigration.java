@@ -0,0 +1,98 @@
+package api.socialmedia.storage.migration;
+
+import api.socialmedia.storage.BlobStore;
+import api.socialmedia.storage.LocalFileSystemBlobStore;
+import api.socialmedia.storage.StoredBlob;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Liquibase-миграция, переносящая содержимое колонки posts.file в блоб-хранилище.
+ * Строки обрабатываются пачками по batchSize, каждая пачка фиксируется отдельно,
+ * поэтому прерванную миграцию можно безопасно перезапустить - уже перенесенные строки
+ * (с заполненным blob_key) повторно не выбираются.
+ */
+@Slf4j
+@Setter
+public class PostFileBlobMigration implements CustomTaskChange {
+
+    private static final String SELECT_BATCH =
+            "SELECT id, file FROM posts WHERE file IS NOT NULL AND blob_key IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_POST =
+            "UPDATE posts SET blob_key = ?, file_size = ?, content_type = ?, file = NULL WHERE id = ?";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private String root;
+    private Integer batchSize = 100;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        BlobStore blobStore = new LocalFileSystemBlobStore(Paths.get(root));
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        long moved = 0;
+        try (PreparedStatement select = connection.prepareStatement(SELECT_BATCH);
+             PreparedStatement update = connection.prepareStatement(UPDATE_POST)) {
+            select.setInt(1, batchSize);
+            int batch;
+            do {
+                batch = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        StoredBlob blob;
+                        try (InputStream file = rs.getBinaryStream("file")) {
+                            blob = blobStore.put(file);
+                        }
+                        update.setString(1, blob.getKey());
+                        update.setLong(2, blob.getSize());
+                        update.setString(3, DEFAULT_CONTENT_TYPE);
+                        update.setLong(4, rs.getLong("id"));
+                        update.addBatch();
+                        batch++;
+                    }
+                }
+                if (batch > 0) {
+                    update.executeBatch();
+                    connection.commit();
+                    moved += batch;
+                    log.info("Moved {} post files to blob store", moved);
+                }
+            } while (batch == batchSize);
+        } catch (Exception e) {
+            throw new CustomChangeException("Unable to move post files to blob store", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Post files moved to blob store " + root;
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        errors.checkRequiredField("root", root);
+        if (batchSize == null || batchSize <= 0) {
+            errors.addError("batchSize must be positive");
+        }
+        return errors;
+    }
+}
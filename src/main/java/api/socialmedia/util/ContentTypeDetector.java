@@ -0,0 +1,146 @@
+package api.socialmedia.util;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Определение типа содержимого загружаемого файла.
+ * Сначала проверяются сигнатуры (magic numbers) первых байтов файла,
+ * затем расширение имени файла, и только потом тип, заявленный клиентом.
+ * Тип по имени файла или из запроса принимается, только если он есть в {@link #ALLOWED_TYPES},
+ * иначе файл сохраняется как application/octet-stream: text/html или image/svg+xml из запроса
+ * не должны отдаваться браузеру как страница.
+ */
+public final class ContentTypeDetector {
+
+    /**
+     * Сколько первых байтов потока нужно для распознавания сигнатуры.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * Типы, которые можно сохранить без распознанной сигнатуры.
+     */
+    static final Set<MediaType> ALLOWED_TYPES = Set.of(
+            MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG, MediaType.IMAGE_GIF, MediaType.valueOf("image/webp"),
+            MediaType.APPLICATION_PDF, MediaType.TEXT_PLAIN,
+            MediaType.valueOf("video/mp4"), MediaType.valueOf("video/quicktime"), MediaType.valueOf("video/webm"),
+            MediaType.valueOf("audio/mpeg"), MediaType.valueOf("application/zip"));
+
+    /**
+     * Типы, которые браузер может показать прямо на странице: остальные файлы отдаются как вложение.
+     */
+    private static final Set<MediaType> INLINE_TYPES = Set.of(
+            MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG, MediaType.IMAGE_GIF, MediaType.valueOf("image/webp"));
+
+    private ContentTypeDetector() {
+    }
+
+    /**
+     * Поток должен поддерживать mark/reset, позиция потока после вызова не меняется.
+     */
+    public static String detect(InputStream in, String filename, String declaredType) throws IOException {
+        in.mark(HEADER_SIZE);
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        in.reset();
+
+        String sniffed = sniff(header);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        if (filename != null) {
+            MediaType byName = MediaTypeFactory.getMediaType(filename).orElse(null);
+            if (byName != null) {
+                return allowedOrDefault(byName);
+            }
+        }
+        return allowedOrDefault(parse(declaredType));
+    }
+
+    /**
+     * Тип, сохраненный с файлом, для ответа на скачивание. Пустое или неразбираемое значение,
+     * оставшееся от старых загрузок, отдается как application/octet-stream.
+     */
+    public static MediaType storedType(String contentType) {
+        MediaType type = parse(contentType);
+        return type == null ? MediaType.APPLICATION_OCTET_STREAM : type;
+    }
+
+    /**
+     * Можно ли показать файл этого типа прямо в браузере, а не только скачать.
+     */
+    public static boolean isInline(MediaType type) {
+        return INLINE_TYPES.contains(new MediaType(type.getType(), type.getSubtype()));
+    }
+
+    static String sniff(byte[] header) {
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        if (startsWith(header, 0, '%', 'P', 'D', 'F', '-')) {
+            return MediaType.APPLICATION_PDF_VALUE;
+        }
+        if (startsWith(header, 4, 'f', 't', 'y', 'p')) {
+            String brand = new String(Arrays.copyOfRange(header, 8, 12), StandardCharsets.US_ASCII);
+            return brand.startsWith("qt") ? "video/quicktime" : "video/mp4";
+        }
+        if (startsWith(header, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return "video/webm";
+        }
+        if (startsWith(header, 0, 'I', 'D', '3') || startsWith(header, 0, 0xFF, 0xFB)) {
+            return "audio/mpeg";
+        }
+        if (startsWith(header, 0, 'P', 'K', 0x03, 0x04)) {
+            return "application/zip";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int offset, int... signature) {
+        if (header.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String allowedOrDefault(MediaType type) {
+        if (type == null) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        MediaType withoutParameters = new MediaType(type.getType(), type.getSubtype());
+        return ALLOWED_TYPES.contains(withoutParameters) ? withoutParameters.toString()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static MediaType parse(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return null;
+        }
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
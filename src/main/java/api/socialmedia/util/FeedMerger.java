@@ -0,0 +1,72 @@
+package api.socialmedia.util;
+
+import api.socialmedia.dto.responce.PostResponseDto;
+
+import java.util.*;
+
+/**
+ * K-way слияние лент, каждая из которых уже отсортирована по дате поста (и id) по убыванию.
+ * Используется гибридной лентой: материализованная лента пользователя сливается
+ * с последними постами друзей-«знаменитостей», которые не рассылаются при записи.
+ */
+public final class FeedMerger {
+
+    public static final Comparator<PostResponseDto> NEWEST_FIRST = Comparator
+            .comparing(PostResponseDto::getDate, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(PostResponseDto::getId, Comparator.reverseOrder());
+
+    private FeedMerger() {
+    }
+
+    /**
+     * Слить источники, пропустить первые {@code skip} постов и вернуть не больше {@code limit}.
+     * Пост, попавший в несколько источников (например, автор недавно перешел порог и его посты
+     * еще лежат в ленте), возвращается один раз.
+     */
+    public static List<PostResponseDto> merge(List<List<PostResponseDto>> sources, int skip, int limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> NEWEST_FIRST.compare(a.current(), b.current()));
+        for (List<PostResponseDto> source : sources) {
+            if (!source.isEmpty()) {
+                heads.add(new Cursor(source));
+            }
+        }
+
+        List<PostResponseDto> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        int skipped = 0;
+        while (!heads.isEmpty() && result.size() < limit) {
+            Cursor head = heads.poll();
+            PostResponseDto post = head.current();
+            if (seen.add(post.getId())) {
+                if (skipped < skip) {
+                    skipped++;
+                } else {
+                    result.add(post);
+                }
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static final class Cursor {
+
+        private final List<PostResponseDto> posts;
+        private int position;
+
+        private Cursor(List<PostResponseDto> posts) {
+            this.posts = posts;
+        }
+
+        private PostResponseDto current() {
+            return posts.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < posts.size();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package api.socialmedia.util;
+
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.CursorPageDto;
+import api.socialmedia.dto.responce.MessageResponseDto;
+import api.socialmedia.exception.InputDataException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Позиция в переписке, отсортированной по (date desc, id desc): дата и id сообщения на границе страницы.
+ * Курсор before читает более старые сообщения условием {@code (date, id) < (:date, :id)},
+ * курсор after - более новые условием {@code (date, id) > (:date, :id)}; оба идут по индексу переписки, без OFFSET.
+ * Страница в обоих случаях отдается от новых к старым.
+ * Инбокс упорядочен по последнему сообщению переписки, поэтому его позиция - курсор того же вида.
+ */
+@Value
+public class MessageCursor {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 200;
+
+    private static final String SEPARATOR = "|";
+
+    LocalDateTime date;
+    Long id;
+
+    public static MessageCursor of(MessageResponseDto message) {
+        return new MessageCursor(message.getDate(), message.getId());
+    }
+
+    public static MessageCursor of(ConversationResponseDto conversation) {
+        return new MessageCursor(conversation.getLastMessageDate(), conversation.getLastMessageId());
+    }
+
+    /**
+     * Разобрать курсор из запроса. Пустой курсор означает, что граница не задана.
+     */
+    public static MessageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new MessageCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InputDataException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String value = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Проверить размер страницы из запроса.
+     */
+    public static int checkSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new InputDataException("Page size must be between 1 and " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    /**
+     * Страница более старых сообщений из прочитанных от новых к старым с запасом в один элемент.
+     * nextCursor - самое старое сообщение страницы, его передают в before.
+     */
+    public static CursorPageDto<MessageResponseDto> olderPage(List<MessageResponseDto> fetched, int size) {
+        boolean hasNext = fetched.size() > size;
+        List<MessageResponseDto> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? of(content.get(content.size() - 1)).encode() : null;
+        return new CursorPageDto<>(content, nextCursor, hasNext);
+    }
+
+    /**
+     * Страница более новых сообщений из прочитанных от старых к новым с запасом в один элемент.
+     * Порядок разворачивается, nextCursor - самое новое сообщение страницы, его передают в after.
+     */
+    public static CursorPageDto<MessageResponseDto> newerPage(List<MessageResponseDto> fetched, int size) {
+        boolean hasNext = fetched.size() > size;
+        List<MessageResponseDto> content = new ArrayList<>(hasNext ? fetched.subList(0, size) : fetched);
+        Collections.reverse(content);
+        String nextCursor = hasNext ? of(content.get(0)).encode() : null;
+        return new CursorPageDto<>(content, nextCursor, hasNext);
+    }
+
+    /**
+     * Страница инбокса из прочитанных от последней активности к более ранней с запасом в один элемент.
+     */
+    public static CursorPageDto<ConversationResponseDto> inboxPage(List<ConversationResponseDto> fetched, int size) {
+        boolean hasNext = fetched.size() > size;
+        List<ConversationResponseDto> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? of(content.get(content.size() - 1)).encode() : null;
+        return new CursorPageDto<>(content, nextCursor, hasNext);
+    }
+}
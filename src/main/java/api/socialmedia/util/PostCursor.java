@@ -0,0 +1,79 @@
+package api.socialmedia.util;
+
+import api.socialmedia.dto.responce.CursorPageDto;
+import api.socialmedia.dto.responce.PostResponseDto;
+import api.socialmedia.exception.InputDataException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Позиция в ленте, отсортированной по (date desc, id desc): дата и id последнего отданного поста.
+ * Клиенту курсор отдается непрозрачной base64-строкой, следующая страница читается условием
+ * {@code (date, id) < (:date, :id)} по индексу, без OFFSET.
+ * Дата в курсоре - значение той колонки, по которой отсортирован запрос (для ленты - дата записи ленты),
+ * поэтому запросы отдают только посты с датой.
+ */
+@Value
+public class PostCursor {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private static final String SEPARATOR = "|";
+
+    LocalDateTime date;
+    Long id;
+
+    public static PostCursor of(PostResponseDto post) {
+        return new PostCursor(post.getDate(), post.getId());
+    }
+
+    /**
+     * Разобрать курсор из запроса. Пустой курсор означает первую страницу.
+     */
+    public static PostCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new PostCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InputDataException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String value = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Проверить размер страницы из запроса.
+     */
+    public static int checkSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new InputDataException("Page size must be between 1 and " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    /**
+     * Собрать страницу из постов, прочитанных с запасом в один элемент:
+     * лишний пост означает, что есть следующая страница, и в ответ не попадает.
+     */
+    public static <T> CursorPageDto<T> page(List<PostResponseDto> fetched, int size, Function<PostResponseDto, T> mapper) {
+        boolean hasNext = fetched.size() > size;
+        List<PostResponseDto> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? of(content.get(content.size() - 1)).encode() : null;
+        return new CursorPageDto<>(content.stream().map(mapper).toList(), nextCursor, hasNext);
+    }
+}
@@ -0,0 +1,35 @@
+package api.socialmedia.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Корзина токенов: вмещает capacity токенов и пополняется равномерно со скоростью refillPerMinute.
+ * Время передается явно (System.nanoTime()), поэтому корзину легко проверять в тестах.
+ */
+public class TokenBucket {
+
+    private final int capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(int capacity, int refillPerMinute, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Забирает один токен. Возвращает 0, если токен был, иначе - сколько наносекунд ждать до следующего токена.
+     */
+    public synchronized long tryConsume(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = nowNanos;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,4 @@
+ALTER TABLE posts
+    ADD COLUMN blob_key     varchar(64),
+    ADD COLUMN file_size    bigint,
+    ADD COLUMN content_type varchar(255);
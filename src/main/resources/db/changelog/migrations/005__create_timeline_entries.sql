@@ -0,0 +1,23 @@
+CREATE TABLE timeline_entries (
+    recipient_id bigint not null references users (id) on delete cascade,
+    post_id bigint not null references posts (id) on delete cascade,
+    author_id bigint not null,
+    post_date timestamp not null,
+    primary key (recipient_id, post_id)
+);
+
+CREATE INDEX timeline_entries_recipient_date_idx ON timeline_entries (recipient_id, post_date desc, post_id desc);
+
+CREATE INDEX timeline_entries_post_idx ON timeline_entries (post_id);
+
+-- 800 matches the default app.feed.timeline-depth
+INSERT INTO timeline_entries (recipient_id, post_id, author_id, post_date)
+SELECT recipient_id, post_id, author_id, post_date
+FROM (SELECT f.recipient_id, p.id AS post_id, p.user_id AS author_id, p.date AS post_date,
+             row_number() OVER (PARTITION BY f.recipient_id ORDER BY p.date DESC, p.id DESC) AS position
+      FROM (SELECT user_one_id AS recipient_id, user_two_id AS author_id FROM friendships
+            UNION
+            SELECT user_two_id, user_one_id FROM friendships) f
+               JOIN posts p ON p.user_id = f.author_id
+      WHERE p.date IS NOT NULL AND f.recipient_id <> f.author_id) ranked
+WHERE position <= 800;
@@ -0,0 +1,11 @@
+ALTER TABLE users ADD COLUMN friend_count integer not null default 0;
+
+UPDATE users u
+SET friend_count = f.friends
+FROM (SELECT user_id, count(*) AS friends
+      FROM (SELECT user_one_id AS user_id, user_two_id AS friend_id FROM friendships
+            UNION
+            SELECT user_two_id, user_one_id FROM friendships) pairs
+      WHERE user_id <> friend_id
+      GROUP BY user_id) f
+WHERE u.id = f.user_id;
@@ -0,0 +1,3 @@
+CREATE INDEX posts_user_date_id_idx ON posts (user_id, date desc, id desc);
+
+CREATE INDEX posts_date_id_idx ON posts (date desc, id desc);
@@ -0,0 +1,22 @@
+-- friendships are stored as (smaller id, bigger id)
+UPDATE friendships SET user_one_id = user_two_id, user_two_id = user_one_id WHERE user_one_id > user_two_id;
+
+DELETE FROM friendships WHERE user_one_id = user_two_id;
+
+DELETE FROM friendships f USING friendships d
+WHERE f.user_one_id = d.user_one_id AND f.user_two_id = d.user_two_id AND f.id > d.id;
+
+ALTER TABLE friendships ADD CONSTRAINT friendships_canonical_order_chk CHECK (user_one_id < user_two_id);
+
+CREATE UNIQUE INDEX friendships_user_one_user_two_uidx ON friendships (user_one_id, user_two_id);
+
+DELETE FROM followers f USING followers d
+WHERE f.sender_id = d.sender_id AND f.receiver_id = d.receiver_id AND f.id > d.id;
+
+CREATE UNIQUE INDEX followers_sender_receiver_uidx ON followers (sender_id, receiver_id);
+
+CREATE INDEX followers_receiver_idx ON followers (receiver_id);
+
+-- friend_count was incremented once per inserted row, including the duplicate rows removed above
+UPDATE users u
+SET friend_count = (SELECT count(*) FROM friendships f WHERE f.user_one_id = u.id OR f.user_two_id = u.id);
@@ -0,0 +1,29 @@
+-- identity columns become sequences incremented by 50 (the entities' allocationSize):
+-- Hibernate reserves a block of 50 ids per nextval and can batch inserts.
+-- The column default stays for inserts outside Hibernate: nextval returns the top of its own block, so ids never clash.
+-- The first block starts right after the current max id.
+
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE users_id_seq INCREMENT BY 50 OWNED BY users.id;
+SELECT setval('users_id_seq', (SELECT coalesce(max(id), 0) + 50 FROM users), false);
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_id_seq');
+
+ALTER TABLE posts ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE posts_id_seq INCREMENT BY 50 OWNED BY posts.id;
+SELECT setval('posts_id_seq', (SELECT coalesce(max(id), 0) + 50 FROM posts), false);
+ALTER TABLE posts ALTER COLUMN id SET DEFAULT nextval('posts_id_seq');
+
+ALTER TABLE followers ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE followers_id_seq INCREMENT BY 50 OWNED BY followers.id;
+SELECT setval('followers_id_seq', (SELECT coalesce(max(id), 0) + 50 FROM followers), false);
+ALTER TABLE followers ALTER COLUMN id SET DEFAULT nextval('followers_id_seq');
+
+ALTER TABLE friendships ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE friendships_id_seq INCREMENT BY 50 OWNED BY friendships.id;
+SELECT setval('friendships_id_seq', (SELECT coalesce(max(id), 0) + 50 FROM friendships), false);
+ALTER TABLE friendships ALTER COLUMN id SET DEFAULT nextval('friendships_id_seq');
+
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE messages_id_seq INCREMENT BY 50 OWNED BY messages.id;
+SELECT setval('messages_id_seq', (SELECT coalesce(max(id), 0) + 50 FROM messages), false);
+ALTER TABLE messages ALTER COLUMN id SET DEFAULT nextval('messages_id_seq');
@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+-- indexes are built CONCURRENTLY (no write lock on the table), which cannot run inside a transaction.
+-- if a build fails it leaves an INVALID index: drop it by hand and clear the changeset from databasechangelog.
+
+--changeset socialmedia:010-users-username-idx runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_username_idx ON users (username);
+
+--changeset socialmedia:010-friendships-user-two-covering-idx runInTransaction:false
+--comment: covering index, the reverse half of the friend list query is answered from the index alone
+CREATE INDEX CONCURRENTLY IF NOT EXISTS friendships_user_two_user_one_idx ON friendships (user_two_id) INCLUDE (user_one_id);
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+-- the set of high-degree users is re-read periodically; without this index every refresh scans the whole users table.
+-- friend_count changes only when a friendship is accepted or removed, so losing HOT updates on it is cheap.
+
+--changeset socialmedia:011-users-friend-count-idx runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_friend_count_idx ON users (friend_count) INCLUDE (id);
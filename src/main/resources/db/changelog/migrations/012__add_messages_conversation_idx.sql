@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+-- a conversation is keyed by the unordered user pair, so both directions share one ordered index range
+-- and any page of history is a bounded index scan regardless of the conversation length.
+
+--changeset socialmedia:012-messages-conversation-date-idx runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS messages_conversation_date_idx
+    ON messages (least(sender_id, receiver_id), greatest(sender_id, receiver_id), date, id);
@@ -0,0 +1,32 @@
+--liquibase formatted sql
+
+--changeset socialmedia:013-create-conversations
+-- one row per pair of users in canonical order (user_one_id < user_two_id), updated with every message
+-- so that the inbox is read from this table instead of aggregating messages.
+-- last_message_id has no foreign key: the row is written in the same transaction as the message,
+-- before the message insert is flushed.
+CREATE TABLE conversations (
+    user_one_id bigint not null references users (id) on delete cascade,
+    user_two_id bigint not null references users (id) on delete cascade,
+    last_message_id bigint not null,
+    last_sender_id bigint not null,
+    last_message_preview varchar(100) not null,
+    last_message_date timestamp not null,
+    user_one_unread int not null default 0,
+    user_two_unread int not null default 0,
+    primary key (user_one_id, user_two_id),
+    check (user_one_id < user_two_id)
+);
+
+-- a user appears on either side of the pair, each side is paged by last activity with its own index
+CREATE INDEX conversations_user_one_activity_idx ON conversations (user_one_id, last_message_date, last_message_id);
+CREATE INDEX conversations_user_two_activity_idx ON conversations (user_two_id, last_message_date, last_message_id);
+
+--changeset socialmedia:013-backfill-conversations
+-- existing history is treated as read
+INSERT INTO conversations (user_one_id, user_two_id, last_message_id, last_sender_id, last_message_preview, last_message_date)
+SELECT DISTINCT ON (least(sender_id, receiver_id), greatest(sender_id, receiver_id))
+       least(sender_id, receiver_id), greatest(sender_id, receiver_id), id, sender_id, left(text, 100), date
+FROM messages
+WHERE sender_id <> receiver_id
+ORDER BY least(sender_id, receiver_id), greatest(sender_id, receiver_id), date DESC, id DESC;
@@ -0,0 +1,45 @@
+--liquibase formatted sql
+
+--changeset socialmedia:014-partition-messages splitStatements:false
+-- messages becomes a table partitioned by month of date, one partition per month named messages_pYYYYMM.
+-- Vacuum, index maintenance and backups work per month, and old months are detached instead of deleted row by row.
+-- The primary key of a partitioned table must include the partition key, so it becomes (id, date):
+-- ids still come from messages_id_seq and stay unique.
+-- Partitions cover the existing history and the next three months; the application keeps creating them ahead
+-- (app.messages.partitions). There is no default partition: it would block ordered scans across partitions.
+-- The existing rows are copied under an exclusive lock, so on a large table run it in a maintenance window.
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER INDEX messages_pkey RENAME TO messages_unpartitioned_pkey;
+ALTER INDEX messages_conversation_date_idx RENAME TO messages_unpartitioned_conversation_date_idx;
+
+CREATE TABLE messages (
+    id bigint not null default nextval('messages_id_seq'),
+    sender_id bigint not null references users (id),
+    receiver_id bigint not null references users (id),
+    text varchar(1000) not null,
+    date timestamp not null,
+    primary key (id, date)
+) PARTITION BY RANGE (date);
+
+CREATE INDEX messages_conversation_date_idx
+    ON messages (least(sender_id, receiver_id), greatest(sender_id, receiver_id), date, id);
+
+DO $$
+DECLARE
+    partition_month timestamp := date_trunc('month', coalesce((SELECT min(date) FROM messages_unpartitioned), localtimestamp));
+    last_month timestamp := date_trunc('month', localtimestamp) + interval '3 months';
+BEGIN
+    WHILE partition_month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+                       'messages_p' || to_char(partition_month, 'YYYYMM'),
+                       partition_month, partition_month + interval '1 month');
+        partition_month := partition_month + interval '1 month';
+    END LOOP;
+END
+$$;
+
+INSERT INTO messages (id, sender_id, receiver_id, text, date)
+SELECT id, sender_id, receiver_id, text, date FROM messages_unpartitioned;
+
+ALTER SEQUENCE messages_id_seq OWNED BY messages.id;
+DROP TABLE messages_unpartitioned;
@@ -0,0 +1,215 @@
+package api.socialmedia.benchmark;
+
+import api.socialmedia.dto.responce.PostResponseDto;
+import api.socialmedia.util.FeedMerger;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение трех стратегий ленты на синтетическом графе со степенным распределением числа друзей.
+ * pull - лента собирается при чтении слиянием последних постов всех друзей;
+ * push - каждый пост при публикации рассылается в материализованные ленты всех друзей;
+ * hybrid - как push, но посты друзей с числом друзей выше порога подтягиваются при чтении (как в PostFeedServiceImpl).
+ * Базы здесь нет: чтение измеряет слияние источников, запись - вставку в ленты друзей,
+ * то есть работу, пропорциональную числу строк, которое каждая стратегия читает или пишет.
+ * Запуск: mvn test-compile, затем org.openjdk.jmh.Main FeedStrategyBenchmark с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedStrategyBenchmark {
+
+    private static final int POSTS_PER_USER = 20;
+    private static final int MIN_DEGREE = 5;
+    private static final double POWER_LAW_EXPONENT = 1.5;
+
+    @Param("20000")
+    public int users;
+
+    @Param("500")
+    public int highDegreeThreshold;
+
+    @Param("800")
+    public int timelineDepth;
+
+    @Param({"0", "780"})
+    public int offset;
+
+    @Param("20")
+    public int size;
+
+    private int[][] friends;
+    private boolean[] highDegree;
+    private List<PostResponseDto>[] posts;
+    private List<PostResponseDto>[] pushTimelines;
+    private List<PostResponseDto>[] hybridTimelines;
+    private ArrayDeque<Long>[] writeTimelines;
+    private int topAuthor;
+    private long nextPostId;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Random random = new Random(42);
+        friends = powerLawGraph(random);
+        highDegree = new boolean[users];
+        for (int user = 0; user < users; user++) {
+            highDegree[user] = friends[user].length > highDegreeThreshold;
+            if (friends[user].length > friends[topAuthor].length) {
+                topAuthor = user;
+            }
+        }
+        posts = newLists(users);
+        LocalDateTime now = LocalDateTime.now();
+        for (int user = 0; user < users; user++) {
+            List<PostResponseDto> own = new ArrayList<>(POSTS_PER_USER);
+            for (int i = 0; i < POSTS_PER_USER; i++) {
+                own.add(new PostResponseDto(nextPostId++, "Title", "Text", (long) user,
+                        now.minusSeconds(random.nextInt(30 * 24 * 3600))));
+            }
+            own.sort(FeedMerger.NEWEST_FIRST);
+            posts[user] = own;
+        }
+        pushTimelines = newLists(users);
+        hybridTimelines = newLists(users);
+        for (int user = 0; user < users; user++) {
+            List<List<PostResponseDto>> pushed = new ArrayList<>();
+            List<List<PostResponseDto>> pushedWithoutHighDegree = new ArrayList<>();
+            for (int friend : friends[user]) {
+                pushed.add(posts[friend]);
+                if (!highDegree[friend]) {
+                    pushedWithoutHighDegree.add(posts[friend]);
+                }
+            }
+            pushTimelines[user] = FeedMerger.merge(pushed, 0, timelineDepth);
+            hybridTimelines[user] = FeedMerger.merge(pushedWithoutHighDegree, 0, timelineDepth);
+        }
+        writeTimelines = new ArrayDeque[users];
+        for (int user = 0; user < users; user++) {
+            writeTimelines[user] = new ArrayDeque<>();
+        }
+    }
+
+    @Benchmark
+    public List<PostResponseDto> pullRead() {
+        int reader = randomUser();
+        List<List<PostResponseDto>> sources = new ArrayList<>(friends[reader].length);
+        for (int friend : friends[reader]) {
+            sources.add(head(posts[friend]));
+        }
+        return FeedMerger.merge(sources, offset, size);
+    }
+
+    @Benchmark
+    public List<PostResponseDto> pushRead() {
+        List<PostResponseDto> timeline = pushTimelines[randomUser()];
+        return timeline.subList(Math.min(offset, timeline.size()), Math.min(offset + size, timeline.size()));
+    }
+
+    @Benchmark
+    public List<PostResponseDto> hybridRead() {
+        int reader = randomUser();
+        List<List<PostResponseDto>> sources = new ArrayList<>();
+        sources.add(head(hybridTimelines[reader]));
+        for (int friend : friends[reader]) {
+            if (highDegree[friend]) {
+                sources.add(head(posts[friend]));
+            }
+        }
+        return FeedMerger.merge(sources, offset, size);
+    }
+
+    @Benchmark
+    public int pushWrite() {
+        return fanOut(randomUser(), false);
+    }
+
+    @Benchmark
+    public int hybridWrite() {
+        return fanOut(randomUser(), true);
+    }
+
+    @Benchmark
+    public int pushWriteTopAuthor() {
+        return fanOut(topAuthor, false);
+    }
+
+    @Benchmark
+    public int hybridWriteTopAuthor() {
+        return fanOut(topAuthor, true);
+    }
+
+    private int fanOut(int author, boolean skipHighDegree) {
+        if (skipHighDegree && highDegree[author]) {
+            return 0;
+        }
+        long postId = nextPostId++;
+        for (int friend : friends[author]) {
+            ArrayDeque<Long> timeline = writeTimelines[friend];
+            timeline.addFirst(postId);
+            if (timeline.size() > timelineDepth) {
+                timeline.pollLast();
+            }
+        }
+        return friends[author].length;
+    }
+
+    private List<PostResponseDto> head(List<PostResponseDto> source) {
+        return source.subList(0, Math.min(offset + size, source.size()));
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(users);
+    }
+
+    /**
+     * Модель Чунга-Лу: ожидаемая степень вершины берется из распределения Парето,
+     * ребро (u, v) появляется с вероятностью, пропорциональной произведению весов.
+     */
+    private int[][] powerLawGraph(Random random) {
+        double[] weights = new double[users];
+        double[] cumulative = new double[users];
+        double total = 0;
+        for (int user = 0; user < users; user++) {
+            double degree = MIN_DEGREE / Math.pow(1 - random.nextDouble(), 1 / POWER_LAW_EXPONENT);
+            weights[user] = Math.min(degree, users / 2.0);
+            total += weights[user];
+            cumulative[user] = total;
+        }
+        List<Set<Integer>> adjacency = new ArrayList<>(users);
+        for (int user = 0; user < users; user++) {
+            adjacency.add(new HashSet<>());
+        }
+        long edges = Math.round(total / 2);
+        for (long edge = 0; edge < edges; edge++) {
+            int u = pick(cumulative, random.nextDouble() * total);
+            int v = pick(cumulative, random.nextDouble() * total);
+            if (u != v) {
+                adjacency.get(u).add(v);
+                adjacency.get(v).add(u);
+            }
+        }
+        int[][] graph = new int[users][];
+        for (int user = 0; user < users; user++) {
+            graph[user] = adjacency.get(user).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return graph;
+    }
+
+    private static int pick(double[] cumulative, double point) {
+        int index = Arrays.binarySearch(cumulative, point);
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PostResponseDto>[] newLists(int size) {
+        return new List[size];
+    }
+}
@@ -0,0 +1,72 @@
+package api.socialmedia.benchmark;
+
+import api.socialmedia.security.JwtTokenUtil;
+import api.socialmedia.security.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки JWT на один запрос.
+ * tripleParse - прежняя схема: фильтр доставал имя пользователя, затем validateToken еще раз разбирал токен
+ * ради имени и срока, и каждый разбор заново собирал парсер и ключ;
+ * singleParse - один разбор готовым парсером (промах кеша в {@link JwtTokenUtil#verify});
+ * cachedVerify - повторный запрос с тем же токеном (попадание в кеш проверенных токенов).
+ * Запуск: mvn test-compile, затем org.openjdk.jmh.Main JwtVerificationBenchmark с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtParser parser;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtTokenUtil = new JwtTokenUtil(SECRET, 86400000, 1000, new SimpleMeterRegistry());
+        parser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET))).build();
+        token = jwtTokenUtil.generateToken(new User("dave", "password", List.of()));
+        jwtTokenUtil.verify(token);
+    }
+
+    @Benchmark
+    public boolean tripleParse() {
+        String username = legacyParse(token).getSubject();
+        return legacyParse(token).getSubject().equals(username)
+                && !legacyParse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public Claims singleParse() {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public VerifiedToken cachedVerify() {
+        return jwtTokenUtil.verify(token);
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(SECRET)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
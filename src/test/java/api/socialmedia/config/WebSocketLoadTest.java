@@ -0,0 +1,174 @@
+package api.socialmedia.config;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+import api.socialmedia.event.MessageSentEvent;
+import api.socialmedia.security.AuthenticatedUser;
+import api.socialmedia.security.JwtTokenUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный тест push-канала: узел держит много простаивающих аутентифицированных STOMP-сессий,
+ * и доставка сообщения при этом доходит до нужной сессии.
+ * В обычном прогоне это короткая проверка на нескольких соединениях. Нагрузка включается явно:
+ * mvn test -Dtest=WebSocketLoadTest -Dpush.load-test.connections=1000. Клиенты и сервер в одном процессе,
+ * каждое соединение занимает два файловых дескриптора, поэтому предел задает ulimit -n.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "app.storage.local.root=target/push-load-blobs"
+})
+@DisplayName("Testing idle WebSocket connections.")
+public class WebSocketLoadTest {
+
+    private static final int SMOKE_CONNECTIONS = 20;
+    private static final int CONNECTIONS = Integer.getInteger("push.load-test.connections", SMOKE_CONNECTIONS);
+    private static final int CONNECT_BATCH = 500;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+    @Autowired
+    private SimpUserRegistry userRegistry;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    @DisplayName("Узел держит простаивающие сессии, сообщение доставляется подключенному получателю.")
+    public void testIdleConnectionsAndDelivery() throws Exception {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, password, email, friend_count)
+                SELECT 'push_' || g, 'x', 'push_' || g || '@example.org', 0
+                FROM generate_series(1, ?) g""", CONNECTIONS);
+        List<Map<String, Object>> users = jdbcTemplate.queryForList(
+                "SELECT id, username FROM users WHERE username LIKE 'push\\_%' ORDER BY id");
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        client.setMessageConverter(converter);
+        client.setDefaultHeartbeat(new long[]{0, 0});
+
+        List<StompSession> sessions = new ArrayList<>(users.size());
+        try {
+            for (int from = 0; from < users.size(); from += CONNECT_BATCH) {
+                List<CompletableFuture<StompSession>> batch = new ArrayList<>(CONNECT_BATCH);
+                for (Map<String, Object> user : users.subList(from, Math.min(from + CONNECT_BATCH, users.size()))) {
+                    batch.add(connect(client, (Long) user.get("id"), (String) user.get("username")));
+                }
+                for (CompletableFuture<StompSession> session : batch) {
+                    sessions.add(session.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                }
+            }
+            await(() -> userRegistry.getUserCount() == CONNECTIONS);
+
+            Long senderId = (Long) users.get(0).get("id");
+            Long receiverId = (Long) users.get(users.size() - 1).get("id");
+            CompletableFuture<MessageResponseDto> received = new CompletableFuture<>();
+            sessions.get(sessions.size() - 1).subscribe("/user/queue/messages", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return MessageResponseDto.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    received.complete((MessageResponseDto) payload);
+                }
+            });
+            await(() -> subscribed(receiverId));
+
+            eventPublisher.publishEvent(new MessageSentEvent(1L, senderId, receiverId, "Привет", LocalDateTime.now()));
+
+            MessageResponseDto message = received.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertEquals(receiverId, message.getReceiverId());
+            assertEquals("Привет", message.getText());
+            assertTrue(sessions.stream().allMatch(StompSession::isConnected));
+        } finally {
+            sessions.forEach(StompSession::disconnect);
+            client.stop();
+        }
+    }
+
+    private CompletableFuture<StompSession> connect(WebSocketStompClient client, Long userId, String username) {
+        StompHeaders headers = new StompHeaders();
+        headers.add("auth-token", "Bearer " + jwtTokenUtil.generateToken(new AuthenticatedUser(userId, username, List.of())));
+        return client.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), headers,
+                new StompSessionHandlerAdapter() {
+                });
+    }
+
+    private boolean subscribed(Long userId) {
+        SimpUser user = userRegistry.getUser(String.valueOf(userId));
+        return user != null && user.getSessions().stream().anyMatch(session -> !session.getSubscriptions().isEmpty());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in " + TIMEOUT_SECONDS + "s");
+            Thread.sleep(50);
+        }
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package api.socialmedia.datasource;
+
+import api.socialmedia.util.AccessTokenManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing read replica routing.")
+public class ReplicaRoutingDataSourceTest {
+
+    private static EmbeddedPostgres primary;
+    private static EmbeddedPostgres replica;
+
+    private final AccessTokenManager accessTokenManager = mock(AccessTokenManager.class);
+
+    @BeforeAll
+    static void start() throws IOException {
+        primary = EmbeddedPostgres.start();
+        replica = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    @DisplayName("Транзакции readOnly идут на реплику после проверки, остальные на primary.")
+    public void testReadOnlyTransactionsGoToReplica() {
+        ReplicaHealthMonitor monitor = monitor(replica.getPostgresDatabase());
+        Routing routing = new Routing(monitor);
+
+        assertEquals(primary.getPort(), routing.port(true), "до первой проверки реплики не используются");
+
+        monitor.checkReplicas();
+
+        assertEquals(replica.getPort(), routing.port(true));
+        assertEquals(primary.getPort(), routing.port(false));
+    }
+
+    @Test
+    @DisplayName("После своей записи пользователь читает с primary, остальные с реплики.")
+    public void testReadYourWritesPinning() {
+        ReplicaHealthMonitor monitor = monitor(replica.getPostgresDatabase());
+        monitor.checkReplicas();
+        Routing routing = new Routing(monitor);
+
+        when(accessTokenManager.getUserId()).thenReturn(7L);
+        routing.readYourWritesTracker.recordWrite(7L);
+        assertEquals(primary.getPort(), routing.port(true));
+
+        when(accessTokenManager.getUserId()).thenReturn(8L);
+        assertEquals(replica.getPort(), routing.port(true));
+    }
+
+    @Test
+    @DisplayName("Недоступная реплика исключается, чтения идут на primary.")
+    public void testUnavailableReplicaFallsBackToPrimary() throws SQLException {
+        DataSource broken = mock(DataSource.class);
+        when(broken.getConnection()).thenThrow(new SQLException("connection refused"));
+        ReplicaHealthMonitor monitor = monitor(broken);
+        monitor.checkReplicas();
+
+        assertNull(monitor.nextUsableReplica());
+        assertEquals(primary.getPort(), new Routing(monitor).port(true));
+    }
+
+    @Test
+    @DisplayName("Реплика без потокового приема WAL исключается, даже если применила все полученное.")
+    public void testReplicaWithoutWalReceiverIsExcluded() throws SQLException {
+        ReplicaHealthMonitor monitor = monitor(replicaReporting(false, 0));
+        monitor.checkReplicas();
+
+        assertNull(monitor.nextUsableReplica());
+    }
+
+    @Test
+    @DisplayName("Реплика, принимающая WAL, используется, пока отставание не больше допустимого.")
+    public void testStreamingReplicaUsableWithinMaxLag() throws SQLException {
+        ReplicaHealthMonitor lagging = monitor(replicaReporting(true, 30));
+        lagging.checkReplicas();
+        ReplicaHealthMonitor caughtUp = monitor(replicaReporting(true, 0));
+        caughtUp.checkReplicas();
+
+        assertNull(lagging.nextUsableReplica());
+        assertEquals("replica-0", caughtUp.nextUsableReplica());
+    }
+
+    @Test
+    @DisplayName("Транзакция без readOnly идет на primary, но не закрепляет пользователя за ним.")
+    public void testWriteTransactionDoesNotPin() {
+        ReplicaHealthMonitor monitor = monitor(replica.getPostgresDatabase());
+        monitor.checkReplicas();
+        Routing routing = new Routing(monitor);
+        when(accessTokenManager.getUserId()).thenReturn(7L);
+
+        assertEquals(primary.getPort(), routing.port(false));
+        assertEquals(replica.getPort(), routing.port(true));
+    }
+
+    @Test
+    @DisplayName("Чтения через PrimaryReads идут на primary внутри readOnly-транзакции и не закрепляют пользователя.")
+    public void testPrimaryReadsInsideReadOnlyTransaction() {
+        ReplicaHealthMonitor monitor = monitor(replica.getPostgresDatabase());
+        monitor.checkReplicas();
+        Routing routing = new Routing(monitor);
+        when(accessTokenManager.getUserId()).thenReturn(7L);
+
+        assertEquals(List.of(replica.getPort(), primary.getPort(), replica.getPort()), routing.readOnly(
+                routing::currentPort,
+                () -> routing.primaryReads.read(routing::currentPort),
+                routing::currentPort));
+        assertEquals(List.of(primary.getPort(), primary.getPort()), routing.readOnly(
+                () -> routing.primaryReads.read(routing::currentPort),
+                routing::currentPort));
+        assertEquals(replica.getPort(), routing.port(true));
+    }
+
+    /**
+     * Реплика, которая на проверке сообщает, принимает ли она WAL, и свое отставание.
+     */
+    private static DataSource replicaReporting(boolean streaming, double lagSeconds) throws SQLException {
+        ResultSet rows = mock(ResultSet.class);
+        when(rows.next()).thenReturn(true);
+        when(rows.getBoolean(1)).thenReturn(streaming);
+        when(rows.getDouble(2)).thenReturn(lagSeconds);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(rows);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private static ReplicaHealthMonitor monitor(DataSource replicaDataSource) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replicaDataSource);
+        return new ReplicaHealthMonitor(primary.getPostgresDatabase(), replicas, Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+    }
+
+    /**
+     * Та же сборка, что в DataSourceConfig, с транзакциями JDBC вместо JPA.
+     */
+    private class Routing {
+
+        private final ReadYourWritesTracker readYourWritesTracker = new ReadYourWritesTracker(Duration.ofSeconds(5));
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSourceTransactionManager transactionManager;
+        private final PrimaryReads primaryReads;
+
+        Routing(ReplicaHealthMonitor monitor) {
+            ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(monitor,
+                    readYourWritesTracker, accessTokenManager, new SimpleMeterRegistry());
+            Map<Object, Object> targets = new HashMap<>(monitor.getReplicas());
+            targets.put(ReplicaRoutingDataSource.PRIMARY, primary.getPostgresDatabase());
+            routingDataSource.setTargetDataSources(targets);
+            routingDataSource.afterPropertiesSet();
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.transactionManager = new DataSourceTransactionManager(dataSource);
+            this.primaryReads = new PrimaryReads(transactionManager);
+        }
+
+        int port(boolean readOnly) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(readOnly);
+            return transaction.execute(status -> currentPort());
+        }
+
+        /**
+         * Запросы по порядку в одной readOnly-транзакции.
+         */
+        @SafeVarargs
+        final List<Integer> readOnly(Supplier<Integer>... reads) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            return transaction.execute(status -> Arrays.stream(reads).map(Supplier::get).toList());
+        }
+
+        int currentPort() {
+            return jdbcTemplate.queryForObject("SELECT current_setting('port')::int", Integer.class);
+        }
+    }
+}
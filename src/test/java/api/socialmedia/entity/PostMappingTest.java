@@ -0,0 +1,73 @@
+package api.socialmedia.entity;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Каждое чтение поста (лента, список постов пользователя, поиск по id) выбирает ровно те колонки,
+ * что замаплены в сущности. Если в Post снова появится колонка с байтами файла,
+ * она поедет в каждый такой запрос, поэтому маппинг проверяется явно.
+ */
+@DisplayName("Testing Post entity mapping.")
+public class PostMappingTest {
+
+    private StandardServiceRegistry registry;
+
+    private PersistentClass post;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting("hibernate.boot.allow_jdbc_metadata_access", false)
+                .build();
+        Metadata metadata = new MetadataSources(registry).addAnnotatedClass(Post.class).buildMetadata();
+        post = metadata.getEntityBinding(Post.class.getName());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        StandardServiceRegistryBuilder.destroy(registry);
+    }
+
+    @Test
+    @DisplayName("Запросы постов не выбирают колонку file.")
+    public void testPostDoesNotSelectFileColumn() {
+        List<String> columns = Stream.concat(post.getIdentifier().getColumns().stream(),
+                        post.getPropertyClosure().stream().flatMap(property -> property.getColumns().stream()))
+                .map(Column::getName)
+                .toList();
+
+        assertFalse(columns.isEmpty());
+        assertFalse(columns.contains("file"), "posts.file is selected: " + columns);
+    }
+
+    @Test
+    @DisplayName("В сущности поста нет полей с байтами файла.")
+    public void testPostHasNoBinaryProperties() {
+        List<String> binary = post.getPropertyClosure().stream()
+                .filter(property -> property.getType().getReturnedClass() == byte[].class)
+                .map(Property::getName)
+                .toList();
+
+        assertTrue(binary.isEmpty(), "Binary properties in Post: " + binary);
+        assertTrue(Arrays.stream(Post.class.getDeclaredFields()).noneMatch(field -> field.getType() == byte[].class));
+    }
+}
@@ -0,0 +1,82 @@
+package api.socialmedia.event;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+import api.socialmedia.dto.responce.PostNotificationDto;
+import api.socialmedia.graph.FriendGraphIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing WebSocket push listener.")
+public class PushEventListenerTest {
+
+    private final SimpMessageSendingOperations messagingTemplate = mock(SimpMessageSendingOperations.class);
+    private final SimpUserRegistry userRegistry = mock(SimpUserRegistry.class);
+    private final FriendGraphIndex friendGraphIndex = mock(FriendGraphIndex.class);
+
+    private final PushEventListener listener =
+            new PushEventListener(messagingTemplate, userRegistry, friendGraphIndex, new SimpleMeterRegistry());
+
+    private static SimpUser connected(long userId) {
+        SimpUser user = mock(SimpUser.class);
+        when(user.getName()).thenReturn(String.valueOf(userId));
+        return user;
+    }
+
+    @Test
+    @DisplayName("Сообщение доставляется подключенному получателю, отключенный отправитель пропускается.")
+    public void testMessageDeliveredToConnectedReceiver() {
+        LocalDateTime date = LocalDateTime.now();
+        SimpUser receiver = connected(2L);
+        when(userRegistry.getUser("2")).thenReturn(receiver);
+
+        listener.onMessageSent(new MessageSentEvent(10L, 1L, 2L, "Привет", date));
+
+        verify(messagingTemplate).convertAndSendToUser("2", PushEventListener.MESSAGES_QUEUE,
+                new MessageResponseDto(10L, 1L, 2L, "Привет", date));
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Пост доставляется подключенным друзьям. Друзей меньше, чем сессий: перебираются друзья.")
+    public void testPostDeliveredByFriends() {
+        PostPublishedEvent event = new PostPublishedEvent(7L, 1L);
+        SimpUser friend = connected(3L);
+        when(friendGraphIndex.friendIds(1L)).thenReturn(new long[]{2L, 3L});
+        when(userRegistry.getUserCount()).thenReturn(1000);
+        when(userRegistry.getUser("3")).thenReturn(friend);
+
+        listener.onPostPublished(event);
+
+        verify(messagingTemplate).convertAndSendToUser("3", PushEventListener.FEED_QUEUE, new PostNotificationDto(7L, 1L));
+        verify(userRegistry, never()).getUsers();
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Пост доставляется подключенным друзьям. Сессий меньше, чем друзей: перебираются сессии.")
+    public void testPostDeliveredByConnectedUsers() {
+        PostPublishedEvent event = new PostPublishedEvent(7L, 1L);
+        SimpUser friend = connected(5L);
+        SimpUser stranger = connected(6L);
+        when(friendGraphIndex.friendIds(1L)).thenReturn(new long[]{2L, 3L, 4L, 5L});
+        when(userRegistry.getUserCount()).thenReturn(2);
+        when(userRegistry.getUsers()).thenReturn(Set.of(friend, stranger));
+
+        listener.onPostPublished(event);
+
+        verify(messagingTemplate).convertAndSendToUser("5", PushEventListener.FEED_QUEUE, new PostNotificationDto(7L, 1L));
+        verify(userRegistry, never()).getUser(anyString());
+        verify(messagingTemplate, times(1)).convertAndSendToUser(anyString(), anyString(), any());
+    }
+}
@@ -0,0 +1,112 @@
+package api.socialmedia.filter;
+
+import api.socialmedia.util.AccessTokenManager;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing upload limit filter.")
+public class UploadLimitFilterTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final AccessTokenManager tokenManager = mock(AccessTokenManager.class);
+
+    private UploadLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        when(tokenManager.getUserId()).thenReturn(USER_ID);
+        filter = new UploadLimitFilter(tokenManager, DataSize.ofKilobytes(1), 1);
+    }
+
+    @Test
+    @DisplayName("Загрузка в пределах лимитов проходит дальше по цепочке.")
+    public void testUploadWithinLimits() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(uploadRequest(512), response, chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Слишком большой запрос отклоняется с 413 до чтения тела.")
+    public void testUploadTooLarge() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(uploadRequest(4096), response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Запрос без Content-Length (chunked) отклоняется с 411 до чтения тела.")
+    public void testUploadWithoutContentLength() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/posts/create");
+        request.setServletPath("/posts/create");
+        request.addHeader(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(HttpStatus.LENGTH_REQUIRED.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Одновременная загрузка сверх лимита пользователя отклоняется с 429.")
+    public void testConcurrentUploadRejected() throws Exception {
+        MockHttpServletResponse nestedResponse = new MockHttpServletResponse();
+        MockFilterChain nestedChain = new MockFilterChain();
+        // пока первая загрузка не завершилась, пользователь начинает вторую
+        FilterChain firstChain = (request, response) ->
+                filter.doFilter(uploadRequest(512), nestedResponse, nestedChain);
+
+        filter.doFilter(uploadRequest(512), new MockHttpServletResponse(), firstChain);
+
+        assertNull(nestedChain.getRequest());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), nestedResponse.getStatus());
+        assertEquals("1", nestedResponse.getHeader(HttpHeaders.RETRY_AFTER));
+
+        // после завершения первой загрузки лимит освобождается
+        MockFilterChain nextChain = new MockFilterChain();
+        filter.doFilter(uploadRequest(512), new MockHttpServletResponse(), nextChain);
+        assertNotNull(nextChain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Запросы к другим адресам фильтром не ограничиваются.")
+    public void testOtherRequestsNotFiltered() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/posts");
+        request.setServletPath("/posts");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(tokenManager);
+    }
+
+    private static MockHttpServletRequest uploadRequest(int size) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/posts/create");
+        request.setServletPath("/posts/create");
+        request.setContent(new byte[size]);
+        return request;
+    }
+}
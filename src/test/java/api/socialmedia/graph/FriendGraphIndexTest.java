@@ -0,0 +1,72 @@
+package api.socialmedia.graph;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.event.FriendshipCreatedEvent;
+import api.socialmedia.event.FriendshipRemovedEvent;
+import api.socialmedia.repository.FriendshipRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing friend graph index.")
+public class FriendGraphIndexTest {
+
+    private final FriendshipRepository friendshipRepository = mock(FriendshipRepository.class);
+
+    private FriendGraphIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new FriendGraphIndex(friendshipRepository,
+                new PrimaryReads(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry(),
+                DataSize.ofMegabytes(1), Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Друзья загружаются один раз, проверка дружбы идет по загруженному массиву.")
+    public void testFriendIdsLoadedOnceSorted() {
+        when(friendshipRepository.findFriendIdArray(1L)).thenReturn(new long[]{3L, 5L, 7L});
+
+        assertArrayEquals(new long[]{3L, 5L, 7L}, index.friendIds(1L));
+        assertTrue(index.areFriends(1L, 5L));
+        assertFalse(index.areFriends(1L, 4L));
+
+        verify(friendshipRepository, times(1)).findFriendIdArray(1L);
+    }
+
+    @Test
+    @DisplayName("Новая и удаленная дружба применяются к загруженным массивам без запроса в базу.")
+    public void testWritePathsKeepIndexCurrent() {
+        when(friendshipRepository.findFriendIdArray(1L)).thenReturn(new long[]{3L, 7L});
+        when(friendshipRepository.findFriendIdArray(5L)).thenReturn(new long[]{});
+        index.friendIds(1L);
+        index.friendIds(5L);
+
+        index.onFriendshipCreated(new FriendshipCreatedEvent(1L, 5L));
+        assertArrayEquals(new long[]{3L, 5L, 7L}, index.friendIds(1L));
+        assertArrayEquals(new long[]{1L}, index.friendIds(5L));
+
+        index.onFriendshipRemoved(new FriendshipRemovedEvent(5L, 1L));
+        assertArrayEquals(new long[]{3L, 7L}, index.friendIds(1L));
+        assertArrayEquals(new long[]{}, index.friendIds(5L));
+
+        verify(friendshipRepository, times(1)).findFriendIdArray(1L);
+        verify(friendshipRepository, times(1)).findFriendIdArray(5L);
+    }
+
+    @Test
+    @DisplayName("Событие для незагруженного пользователя не загружает его граф.")
+    public void testWritePathSkipsUnloadedUsers() {
+        index.onFriendshipCreated(new FriendshipCreatedEvent(1L, 2L));
+
+        verifyNoInteractions(friendshipRepository);
+    }
+}
@@ -0,0 +1,53 @@
+package api.socialmedia.graph;
+
+import api.socialmedia.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing high degree users snapshot.")
+public class HighDegreeUsersTest {
+
+    private static final int THRESHOLD = 1000;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private HighDegreeUsers highDegreeUsers;
+
+    @BeforeEach
+    public void setUp() {
+        highDegreeUsers = new HighDegreeUsers(userRepository, new SimpleMeterRegistry(), THRESHOLD);
+    }
+
+    @Test
+    @DisplayName("Снимок загружается при первом обращении один раз, пересечение работает в обе стороны.")
+    public void testLoadedOnceAndIntersected() {
+        when(userRepository.findIdsByFriendCountGreaterThan(THRESHOLD)).thenReturn(List.of(3L, 9L, 20L));
+
+        assertTrue(highDegreeUsers.contains(9L));
+        assertFalse(highDegreeUsers.contains(4L));
+        assertArrayEquals(new long[]{3L, 20L}, highDegreeUsers.intersect(new long[]{1L, 3L, 20L}));
+        assertArrayEquals(new long[]{9L}, highDegreeUsers.intersect(new long[]{2L, 4L, 5L, 7L, 8L, 9L, 11L}));
+        assertArrayEquals(new long[]{}, highDegreeUsers.intersect(new long[]{}));
+
+        verify(userRepository, times(1)).findIdsByFriendCountGreaterThan(THRESHOLD);
+    }
+
+    @Test
+    @DisplayName("Плановое обновление заменяет снимок.")
+    public void testRefreshReplacesSnapshot() {
+        when(userRepository.findIdsByFriendCountGreaterThan(THRESHOLD)).thenReturn(List.of(3L), List.of(5L));
+
+        assertTrue(highDegreeUsers.contains(3L));
+        highDegreeUsers.refresh();
+
+        assertFalse(highDegreeUsers.contains(3L));
+        assertTrue(highDegreeUsers.contains(5L));
+    }
+}
@@ -0,0 +1,28 @@
+package api.socialmedia.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запоминает SQL, который Hibernate отправляет в базу, чтобы тест мог построить по нему план.
+ */
+public class CapturingStatementInspector implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new ArrayList<>();
+
+    @Override
+    public synchronized String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static synchronized void clear() {
+        STATEMENTS.clear();
+    }
+
+    public static synchronized List<String> statements() {
+        return List.copyOf(STATEMENTS);
+    }
+}
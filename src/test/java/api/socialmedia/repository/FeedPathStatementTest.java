@@ -0,0 +1,162 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.dto.responce.CursorPageDto;
+import api.socialmedia.dto.responce.PostResponseDto;
+import api.socialmedia.exception.UserNotFoundException;
+import api.socialmedia.graph.FriendGraphIndex;
+import api.socialmedia.graph.HighDegreeUsers;
+import api.socialmedia.service.impl.PostFeedServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL, который уходит в базу при чтении ленты: перехваченные запросы считаются,
+ * и ни один из них не должен обращаться к таблице users.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=api.socialmedia.repository.CapturingStatementInspector",
+        "spring.jpa.show-sql=false",
+        "app.feed.high-degree-threshold=10",
+        "app.storage.local.root=target/feed-path-blobs"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostFeedServiceImpl.class, FriendGraphIndex.class, HighDegreeUsers.class, PrimaryReads.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Testing SQL issued on the feed path.")
+public class FeedPathStatementTest {
+
+    private static final Pattern USERS_TABLE = Pattern.compile("\\busers\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+    @Autowired
+    private HighDegreeUsers highDegreeUsers;
+    @Autowired
+    private PostFeedServiceImpl postFeedService;
+
+    private long readerId;
+    private long friendId;
+    private long highDegreeFriendId;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    public void seed() {
+        readerId = insertUser(1);
+        friendId = insertUser(1);
+        highDegreeFriendId = insertUser(100);
+        insertFriendship(readerId, friendId);
+        insertFriendship(readerId, highDegreeFriendId);
+
+        long pushedPost = insertPost(friendId, 2);
+        jdbcTemplate.update("""
+                INSERT INTO timeline_entries (recipient_id, post_id, author_id, post_date)
+                SELECT ?, id, user_id, date FROM posts WHERE id = ?""", readerId, pushedPost);
+        insertPost(highDegreeFriendId, 1);
+        highDegreeUsers.refresh();
+        CapturingStatementInspector.clear();
+    }
+
+    @Test
+    @DisplayName("Id друзей читаются одним запросом по friendships, без обращения к users.")
+    public void testFriendIdsLoadedWithoutUsers() {
+        long[] friendIds = friendshipRepository.findFriendIdArray(readerId);
+
+        assertArrayEquals(new long[]{friendId, highDegreeFriendId}, friendIds);
+        List<String> statements = CapturingStatementInspector.statements();
+        assertEquals(1, statements.size(), statements::toString);
+        assertNoUsersAccess(statements);
+    }
+
+    @Test
+    @DisplayName("Прогретая лента: запрос материализованной ленты и запрос постов автора выше порога, без users.")
+    public void testWarmFeedDoesNotTouchUsers() {
+        postFeedService.getUserActivityFeed(readerId, PageRequest.of(0, 10));
+        CapturingStatementInspector.clear();
+
+        List<PostResponseDto> page = postFeedService.getUserActivityFeed(readerId, PageRequest.of(0, 10));
+        CursorPageDto<PostResponseDto> cursorPage = postFeedService.getUserActivityFeed(readerId, null, 10);
+
+        assertEquals(List.of(highDegreeFriendId, friendId), page.stream().map(PostResponseDto::getUserId).toList());
+        assertEquals(page.size(), cursorPage.getContent().size());
+        List<String> statements = CapturingStatementInspector.statements();
+        assertEquals(4, statements.size(), statements::toString);
+        assertNoUsersAccess(statements);
+    }
+
+    @Test
+    @DisplayName("Пустая лента несуществующего пользователя - единственный случай, когда читается users.")
+    public void testEmptyFeedChecksUser() {
+        assertThrows(UserNotFoundException.class,
+                () -> postFeedService.getUserActivityFeed(Long.MAX_VALUE, PageRequest.of(0, 10)));
+
+        assertTrue(CapturingStatementInspector.statements().stream().anyMatch(sql -> USERS_TABLE.matcher(sql).find()));
+    }
+
+    private static void assertNoUsersAccess(List<String> statements) {
+        statements.forEach(sql -> assertFalse(USERS_TABLE.matcher(sql).find(), sql));
+    }
+
+    private long insertUser(int friendCount) {
+        String username = "user_" + UUID.randomUUID();
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, password, email, friend_count)
+                VALUES (?, 'x', ?, ?) RETURNING id""", Long.class, username, username + "@example.org", friendCount);
+    }
+
+    private void insertFriendship(long userId, long otherId) {
+        jdbcTemplate.update("INSERT INTO friendships (user_one_id, user_two_id, date) VALUES (?, ?, now())",
+                Math.min(userId, otherId), Math.max(userId, otherId));
+    }
+
+    private long insertPost(long userId, int minutesAgo) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO posts (title, text, user_id, date)
+                VALUES ('title', 'text', ?, now() - ? * interval '1 minute') RETURNING id""", Long.class, userId, minutesAgo);
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
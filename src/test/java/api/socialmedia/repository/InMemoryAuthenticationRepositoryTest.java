@@ -0,0 +1,61 @@
+package api.socialmedia.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testing in-memory token store.")
+public class InMemoryAuthenticationRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final InMemoryAuthenticationRepository repository =
+            new InMemoryAuthenticationRepository(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("У пользователя может быть несколько сессий, поиск работает в обе стороны.")
+    public void testLookupBothWays() {
+        repository.putTokenAndUsername("t1", "dave", NOW.plusSeconds(60));
+        repository.putTokenAndUsername("t2", "dave", NOW.plusSeconds(120));
+        repository.putTokenAndUsername("t3", "erin", NOW.plusSeconds(60));
+
+        assertEquals("dave", repository.getUserNameByToken("t2"));
+        assertEquals(Set.of("t1", "t2"), repository.getTokensByUsername("dave"));
+
+        repository.removeTokenAndUsernameByToken("t1");
+
+        assertNull(repository.getUserNameByToken("t1"));
+        assertEquals(Set.of("t2"), repository.getTokensByUsername("dave"));
+    }
+
+    @Test
+    @DisplayName("Очистка удаляет только истекшие токены и чистит обратный индекс.")
+    public void testRemoveExpiredTokens() {
+        repository.putTokenAndUsername("old", "dave", NOW.minusSeconds(1));
+        repository.putTokenAndUsername("fresh", "dave", NOW.plusSeconds(60));
+        repository.putTokenAndUsername("gone", "erin", NOW);
+
+        assertNull(repository.getUserNameByToken("old"));
+        assertEquals(2, repository.removeExpiredTokens());
+
+        assertEquals(Set.of("fresh"), repository.getTokensByUsername("dave"));
+        assertEquals(Set.of(), repository.getTokensByUsername("erin"));
+        assertEquals(0, repository.removeExpiredTokens());
+    }
+
+    @Test
+    @DisplayName("Токен, удаленный при выходе, не ломает очистку.")
+    public void testRemovedTokenSkippedBySweep() {
+        repository.putTokenAndUsername("t1", "dave", NOW.minusSeconds(1));
+        repository.removeTokenAndUsernameByToken("t1");
+
+        assertEquals(0, repository.removeExpiredTokens());
+        assertEquals(Set.of(), repository.getTokensByUsername("dave"));
+    }
+}
@@ -0,0 +1,186 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.MessageResponseDto;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Секционирование messages по месяцам: запросы переписки читают только нужные секции,
+ * обслуживание создает секции вперед и отсоединяет старые.
+ * Планы снимаются EXPLAIN ANALYZE с настоящими значениями параметров: секции, которые план не выполнял,
+ * помечены never executed, а отсеченные при планировании в план не попадают.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=api.socialmedia.repository.CapturingStatementInspector",
+        "spring.jpa.show-sql=false",
+        "app.storage.local.root=target/message-partition-blobs"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayName("Testing messages partitioning.")
+public class MessagePartitionTest {
+
+    private static final YearMonth CURRENT = YearMonth.now();
+    private static final int HISTORY_MONTHS = 5;
+    private static final int MESSAGES_PER_MONTH = 30;
+    private static final Pattern PARTITION_SCAN = Pattern.compile(" on messages_p(\\d{6})\\b.*$", Pattern.MULTILINE);
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate jdbcTemplate;
+    private Long userOneId;
+    private Long userTwoId;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    /**
+     * Переписка с историей за несколько месяцев. Тест идет в транзакции, поэтому секции и строки откатываются.
+     */
+    @BeforeEach
+    public void seed() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        userOneId = insertUser("partition_one");
+        userTwoId = insertUser("partition_two");
+        for (int i = HISTORY_MONTHS; i > 0; i--) {
+            messageRepository.createPartition(CURRENT.minusMonths(i));
+        }
+        for (int i = HISTORY_MONTHS; i >= 0; i--) {
+            LocalDateTime monthStart = CURRENT.minusMonths(i).atDay(1).atStartOfDay();
+            jdbcTemplate.update("""
+                    INSERT INTO messages (sender_id, receiver_id, text, date)
+                    SELECT ?, ?, 'hello', ?::timestamp + g * interval '1 hour'
+                    FROM generate_series(1, ?) g""", userOneId, userTwoId, monthStart, MESSAGES_PER_MONTH);
+        }
+        CapturingStatementInspector.clear();
+    }
+
+    @Test
+    @DisplayName("Последние сообщения переписки читаются только из секции текущего месяца.")
+    public void testRecentConversationReadsCurrentPartition() {
+        List<MessageResponseDto> page = messageRepository.findConversation(userOneId, userTwoId, 20);
+
+        assertEquals(20, page.size());
+        assertTrue(page.stream().allMatch(message -> YearMonth.from(message.getDate()).equals(CURRENT)));
+        String plan = explainAnalyze(lastStatement(), userOneId, userTwoId, CURRENT.plusMonths(1).atDay(1).atStartOfDay(), 20);
+        assertEquals(Set.of(CURRENT), partitions(plan, true), plan);
+        assertFalse(partitions(plan, false).stream().anyMatch(CURRENT::isBefore), "future partitions are not pruned:\n" + plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    @DisplayName("Страница до курсора отсекает более новые секции и не доходит до более старых.")
+    public void testPageBeforeCursorPrunesNewerPartitions() {
+        YearMonth cursorMonth = CURRENT.minusMonths(2);
+        LocalDateTime cursorDate = cursorMonth.atDay(1).atStartOfDay().plusHours(20);
+
+        List<MessageResponseDto> page = messageRepository.findConversationBefore(userOneId, userTwoId, cursorDate, Long.MAX_VALUE, 10);
+
+        assertEquals(10, page.size());
+        assertTrue(page.stream().allMatch(message -> YearMonth.from(message.getDate()).equals(cursorMonth)));
+        String plan = explainAnalyze(lastStatement(), userOneId, userTwoId, CURRENT.plusMonths(1).atDay(1).atStartOfDay(),
+                cursorDate, cursorDate, Long.MAX_VALUE, 10);
+        assertEquals(Set.of(cursorMonth), partitions(plan, true), plan);
+        assertFalse(partitions(plan, false).stream().anyMatch(cursorMonth::isBefore), "newer partitions are not pruned:\n" + plan);
+    }
+
+    @Test
+    @DisplayName("Обслуживание создает секции вперед и отсоединяет секции старше срока хранения, оставляя их таблицами.")
+    public void testMaintenanceCreatesAndDetachesPartitions() {
+        YearMonth now = CURRENT.plusMonths(2);
+        Clock clock = Clock.fixed(now.atDay(10).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        MessagePartitionMaintenance maintenance =
+                new MessagePartitionMaintenance(messageRepository, transactionManager, 2, 3, Duration.ofSeconds(5), clock);
+
+        maintenance.maintain();
+
+        List<YearMonth> partitions = messageRepository.findPartitions();
+        assertEquals(now.minusMonths(3), partitions.get(0));
+        assertEquals(now.plusMonths(2), partitions.get(partitions.size() - 1));
+        assertEquals(6, partitions.size());
+        YearMonth detached = now.minusMonths(4);
+        assertEquals(MESSAGES_PER_MONTH, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + MessagePartitionRepositoryImpl.name(detached), Integer.class));
+        assertEquals(MESSAGES_PER_MONTH * 2, jdbcTemplate.queryForObject("SELECT count(*) FROM messages", Integer.class));
+    }
+
+    private Long insertUser(String username) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, password, email, friend_count)
+                VALUES (?, 'x', ? || '@example.org', 0) RETURNING id""", Long.class, username, username);
+    }
+
+    private static String lastStatement() {
+        List<String> statements = CapturingStatementInspector.statements();
+        return statements.get(statements.size() - 1);
+    }
+
+    private String explainAnalyze(String sql, Object... parameters) {
+        return String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN (ANALYZE, COSTS OFF, TIMING OFF, SUMMARY OFF) " + sql, String.class, parameters));
+    }
+
+    /**
+     * Секции в плане: все или только выполненные.
+     */
+    private static Set<YearMonth> partitions(String plan, boolean executedOnly) {
+        Set<YearMonth> partitions = new TreeSet<>();
+        Matcher matcher = PARTITION_SCAN.matcher(plan);
+        while (matcher.find()) {
+            if (!executedOnly || !matcher.group().contains("never executed")) {
+                partitions.add(YearMonth.of(Integer.parseInt(matcher.group(1).substring(0, 4)),
+                        Integer.parseInt(matcher.group(1).substring(4))));
+            }
+        }
+        return partitions;
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.MessageResponseDto;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Регрессия планов запросов: каждый метод репозитория вызывается на заполненной встроенной Postgres,
+ * перехваченный SQL разбирается EXPLAIN-ом в обобщенный план (без учета конкретных значений параметров),
+ * и тест падает, если по горячей таблице или ее секции идет последовательное сканирование.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=api.socialmedia.repository.CapturingStatementInspector",
+        "spring.jpa.show-sql=false",
+        "app.storage.local.root=target/query-plan-blobs"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayName("Testing query plans of repository methods.")
+public class QueryPlanTest {
+
+    private static final List<String> HOT_TABLES =
+            List.of("users", "posts", "followers", "friendships", "messages", "timeline_entries", "conversations");
+    /**
+     * Сообщения сидируются в секцию текущего месяца. Пустые секции будущих месяцев, как и в рабочей базе
+     * (autovacuum не анализирует таблицы без записей), остаются без статистики.
+     */
+    private static final List<String> ANALYZED_TABLES = List.of("users", "posts", "followers", "friendships",
+            MessagePartitionRepositoryImpl.name(YearMonth.now()), "timeline_entries", "conversations");
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("_p\\d{6}$");
+    private static final Pattern SORT = Pattern.compile("\\bSort\\s+\\(");
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+    private static final LocalDateTime CURSOR_DATE = LocalDateTime.now().minusDays(1);
+
+    private static final EmbeddedPostgres POSTGRES = start();
+    private static boolean seeded;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private FollowerRepository followerRepository;
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private ConversationRepository conversationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TimelineEntryRepository timelineEntryRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    public void seed() throws SQLException {
+        if (!seeded) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                statement.execute("""
+                        INSERT INTO users (username, password, email, friend_count)
+                        SELECT 'user_' || g, 'x', 'user_' || g || '@example.org', (random() * 300)::int
+                        FROM generate_series(1, 20000) g""");
+                statement.execute("""
+                        INSERT INTO posts (title, text, user_id, date)
+                        SELECT 'title', 'text', u.id, now() - g * interval '1 minute'
+                        FROM generate_series(1, 60000) g
+                        JOIN (SELECT id, row_number() OVER () AS n FROM users) u ON u.n = 1 + g % 20000""");
+                statement.execute("""
+                        INSERT INTO friendships (user_one_id, user_two_id, date)
+                        SELECT DISTINCT least(a.id, b.id), greatest(a.id, b.id), now()
+                        FROM (SELECT id, row_number() OVER () AS n FROM users) a
+                        CROSS JOIN generate_series(1, 5) k
+                        JOIN (SELECT id, row_number() OVER () AS n FROM users) b
+                          ON b.n = 1 + (a.n * 7 + k * 131) % 20000
+                        WHERE a.id <> b.id
+                        ON CONFLICT DO NOTHING""");
+                statement.execute("""
+                        INSERT INTO followers (sender_id, receiver_id, date)
+                        SELECT user_one_id, user_two_id, date FROM friendships
+                        ON CONFLICT DO NOTHING""");
+                statement.execute("""
+                        INSERT INTO messages (sender_id, receiver_id, text, date)
+                        SELECT user_one_id, user_two_id, 'hello', now()
+                        FROM friendships""");
+                statement.execute("""
+                        INSERT INTO conversations (user_one_id, user_two_id, last_message_id, last_sender_id,
+                                                   last_message_preview, last_message_date, user_two_unread)
+                        SELECT least(sender_id, receiver_id), greatest(sender_id, receiver_id), id, sender_id,
+                               text, date, 1
+                        FROM messages""");
+                statement.execute("""
+                        INSERT INTO timeline_entries (recipient_id, post_id, author_id, post_date)
+                        SELECT f.user_two_id, p.id, p.user_id, p.date
+                        FROM posts p JOIN friendships f ON f.user_one_id = p.user_id
+                        ON CONFLICT DO NOTHING""");
+                for (String table : ANALYZED_TABLES) {
+                    statement.execute("ANALYZE " + table);
+                }
+            }
+            seeded = true;
+        }
+        CapturingStatementInspector.clear();
+    }
+
+    @Test
+    @DisplayName("Запросы постов и ленты идут по индексам.")
+    public void testPostQueries() throws SQLException {
+        Long userId = anyId("users");
+        postRepository.findAllByUserId(userId, PAGE);
+        postRepository.findLatest(PAGE);
+        postRepository.findLatestBefore(CURSOR_DATE, Long.MAX_VALUE, PAGE);
+        postRepository.findLatestByUserId(userId, PAGE);
+        postRepository.findLatestByUserIdBefore(userId, CURSOR_DATE, Long.MAX_VALUE, PAGE);
+        postRepository.findTimeline(userId, PAGE);
+        postRepository.findTimelineBefore(userId, CURSOR_DATE, Long.MAX_VALUE, PAGE);
+        postRepository.findFileViewById(anyId("posts"));
+
+        assertNoSeqScanOnHotTables();
+    }
+
+    @Test
+    @DisplayName("Запросы дружбы и подписок идут по индексам.")
+    public void testFriendshipQueries() throws SQLException {
+        List<Long> userIds = anyIds("users");
+        Long userId = userIds.get(0);
+        Long otherId = userIds.get(1);
+        friendshipRepository.findFriendIdArray(userId);
+        friendshipRepository.findAllByUserId(userId);
+        friendshipRepository.deleteByUserIds(userId, otherId);
+        followerRepository.deleteBySenderIdAndReceiverId(userId, otherId);
+        followerRepository.insertIfAbsent(userId, otherId);
+
+        assertNoSeqScanOnHotTables();
+    }
+
+    @Test
+    @DisplayName("Страницы переписки двух пользователей читаются по индексу.")
+    public void testMessageQueries() throws SQLException {
+        List<Long> pair = anyConversation();
+        Long lowId = pair.get(0);
+        Long highId = pair.get(1);
+        List<MessageResponseDto> newest = messageRepository.findConversation(lowId, highId, PAGE.getPageSize());
+        messageRepository.findConversationBefore(lowId, highId, CURSOR_DATE, Long.MAX_VALUE, PAGE.getPageSize());
+        messageRepository.findConversationAfter(lowId, highId, CURSOR_DATE, 0L, PAGE.getPageSize());
+
+        assertFalse(newest.isEmpty());
+        assertNoSeqScanOnHotTables();
+        assertNoSort();
+    }
+
+    @Test
+    @DisplayName("Инбокс читается двумя проходами по индексам активности, переписка обновляется по первичному ключу.")
+    public void testConversationQueries() throws SQLException {
+        List<Long> pair = anyConversation();
+        Long lowId = pair.get(0);
+        Long highId = pair.get(1);
+        List<ConversationResponseDto> inbox = conversationRepository.findInbox(highId, PAGE.getPageSize());
+        conversationRepository.findInboxBefore(highId, CURSOR_DATE, Long.MAX_VALUE, PAGE.getPageSize());
+        conversationRepository.recordMessages(lowId, highId, Long.MAX_VALUE, lowId, "hello", LocalDateTime.now(), 0, 1);
+        conversationRepository.markRead(lowId, highId, highId);
+
+        assertFalse(inbox.isEmpty());
+        assertNoSeqScanOnHotTables();
+        assertNoSort();
+    }
+
+    @Test
+    @DisplayName("Запросы пользователей и ленты друзей идут по индексам.")
+    public void testUserAndTimelineQueries() throws SQLException {
+        List<Long> userIds = anyIds("users");
+        Long userId = userIds.get(0);
+        Long otherId = userIds.get(1);
+        userRepository.findByUsername("user_42");
+        userRepository.changeFriendCount(userIds, 1);
+        userRepository.findIdsByFriendCountGreaterThan(5000);
+        timelineEntryRepository.fanOut(anyId("posts"), userId);
+        timelineEntryRepository.backfill(userId, otherId, 800);
+        timelineEntryRepository.trimFriendsTimelines(userId, 800);
+        timelineEntryRepository.trimTimeline(userId, 800);
+        timelineEntryRepository.deleteByRecipientIdAndAuthorId(userId, otherId);
+
+        assertNoSeqScanOnHotTables();
+    }
+
+    private void assertNoSeqScanOnHotTables() throws SQLException {
+        List<String> statements = CapturingStatementInspector.statements();
+        assertFalse(statements.isEmpty(), "no SQL captured");
+        List<String> failures = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            for (String sql : statements) {
+                String plan = explain(statement, sql);
+                Matcher matcher = SEQ_SCAN.matcher(plan);
+                while (matcher.find()) {
+                    if (HOT_TABLES.contains(PARTITION_SUFFIX.matcher(matcher.group(1)).replaceFirst(""))) {
+                        failures.add(sql + "\n" + plan);
+                    }
+                }
+            }
+        }
+        assertTrue(failures.isEmpty(), () -> "Sequential scan on a hot table:\n" + String.join("\n\n", failures));
+    }
+
+    /**
+     * Страница читается в порядке индекса: сортировка в плане означала бы чтение всех строк до LIMIT.
+     */
+    private void assertNoSort() throws SQLException {
+        List<String> failures = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            for (String sql : CapturingStatementInspector.statements()) {
+                String plan = explain(statement, sql);
+                if (SORT.matcher(plan).find()) {
+                    failures.add(sql + "\n" + plan);
+                }
+            }
+        }
+        assertTrue(failures.isEmpty(), () -> "Sort instead of an ordered index scan:\n" + String.join("\n\n", failures));
+    }
+
+    /**
+     * Обобщенный план: запрос готовится с параметрами $n, а EXPLAIN EXECUTE получает NULL вместо значений.
+     */
+    private static String explain(Statement statement, String sql) throws SQLException {
+        StringBuilder parameterized = new StringBuilder();
+        int parameters = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                parameterized.append('$').append(++parameters);
+            } else {
+                parameterized.append(c);
+            }
+        }
+        statement.execute("PREPARE plan_check AS " + parameterized);
+        try {
+            StringJoiner arguments = new StringJoiner(", ", "(", ")");
+            for (int i = 0; i < parameters; i++) {
+                arguments.add("NULL");
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery("EXPLAIN EXECUTE plan_check" + (parameters > 0 ? arguments : ""))) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } finally {
+            statement.execute("DEALLOCATE plan_check");
+        }
+    }
+
+    private List<Long> anyConversation() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT least(sender_id, receiver_id), greatest(sender_id, receiver_id) FROM messages ORDER BY id OFFSET 100 LIMIT 1")) {
+            rows.next();
+            return List.of(rows.getLong(1), rows.getLong(2));
+        }
+    }
+
+    private Long anyId(String table) throws SQLException {
+        return anyIds(table).get(0);
+    }
+
+    private List<Long> anyIds(String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id FROM " + table + " ORDER BY id OFFSET 100 LIMIT 2")) {
+            List<Long> ids = new ArrayList<>();
+            while (rows.next()) {
+                ids.add(rows.getLong(1));
+            }
+            return ids;
+        }
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package api.socialmedia.repository;
+
+import api.socialmedia.config.HibernateCacheConfig;
+import api.socialmedia.config.HibernateListenerConfig;
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.entity.Role;
+import api.socialmedia.entity.User;
+import api.socialmedia.model.EnumRoles;
+import api.socialmedia.security.PrincipalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Второй уровень кеша на встроенной Postgres: каждое чтение идет в отдельной транзакции,
+ * поэтому попадание в кеш видно по статистике регионов Hibernate.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "app.storage.local.root=target/second-level-cache-blobs"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({HibernateCacheConfig.class, HibernateListenerConfig.class, PrincipalCache.class, PrimaryReads.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Testing Hibernate second-level cache.")
+public class SecondLevelCacheTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private PrincipalCache principalCache;
+
+    private Statistics statistics;
+    private TransactionTemplate transaction;
+    private User user;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transaction = new TransactionTemplate(transactionManager);
+        String username = "user_" + UUID.randomUUID();
+        user = userRepository.save(User.builder()
+                .username(username)
+                .password("x")
+                .email(username + "@example.org")
+                .roles(Set.of(new Role(EnumRoles.ROLE_USER)))
+                .build());
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Повторное чтение пользователя с ролями не идет в базу.")
+    public void testUserIsReadFromCache() {
+        User first = load(user.getId());
+        long queries = statistics.getPrepareStatementCount();
+        User second = load(user.getId());
+
+        assertEquals(queries, statistics.getPrepareStatementCount());
+        assertEquals(first.getUsername(), second.getUsername());
+        assertEquals(1, second.getRoles().size());
+        assertEquals(1, region("users").getHitCount());
+        assertEquals(1, region("user-roles").getHitCount());
+    }
+
+    @Test
+    @DisplayName("Изменение пользователя обновляет запись в кеше.")
+    public void testUpdateRefreshesCachedUser() {
+        load(user.getId());
+        transaction.executeWithoutResult(status -> {
+            User managed = userRepository.findById(user.getId()).orElseThrow();
+            managed.setEmail("changed@example.org");
+        });
+
+        long queries = statistics.getPrepareStatementCount();
+        assertEquals("changed@example.org", load(user.getId()).getEmail());
+        assertEquals(queries, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Нативное обновление счетчика друзей не сбрасывает регион пользователей.")
+    public void testFriendCountUpdateKeepsUsersRegion() {
+        load(user.getId());
+        transaction.executeWithoutResult(status -> userRepository.changeFriendCount(List.of(user.getId()), 1));
+
+        long hits = region("users").getHitCount();
+        load(user.getId());
+        assertEquals(hits + 1, region("users").getHitCount());
+    }
+
+    @Test
+    @DisplayName("Поиск по имени берется из кеша запросов и сбрасывается после записи в users.")
+    public void testFindByUsernameUsesQueryCache() {
+        userRepository.findByUsername(user.getUsername());
+        userRepository.findByUsername(user.getUsername());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        userRepository.save(User.builder()
+                .username("other_" + UUID.randomUUID())
+                .password("x")
+                .email(UUID.randomUUID() + "@example.org")
+                .build());
+        userRepository.findByUsername(user.getUsername());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    @DisplayName("Изменение только ролей пользователя сбрасывает закешированный принципал.")
+    public void testRoleChangeEvictsPrincipal() {
+        assertEquals(Set.of("ROLE_USER"), authorities());
+        transaction.executeWithoutResult(status -> {
+            User managed = userRepository.findById(user.getId()).orElseThrow();
+            managed.getRoles().add(new Role(EnumRoles.ROLE_ADMIN));
+        });
+
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), authorities());
+    }
+
+    private Set<String> authorities() {
+        return principalCache.get(user.getUsername()).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+
+    private User load(Long id) {
+        return transaction.execute(status -> {
+            User loaded = userRepository.findById(id).orElseThrow();
+            loaded.getRoles().size();
+            return loaded;
+        });
+    }
+
+    private CacheRegionStatistics region(String name) {
+        return statistics.getDomainDataRegionStatistics(name);
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package api.socialmedia.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testing JWT token util.")
+public class JwtTokenUtilTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+    private static final UserDetails USER = new User("dave", "password", List.of());
+
+    private final JwtTokenUtil jwtTokenUtil = new JwtTokenUtil(SECRET, 86400000, 100, new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("Выпущенный токен проверяется один раз, повторная проверка берется из кеша.")
+    public void testVerifyCachesClaims() {
+        String token = jwtTokenUtil.generateToken(USER);
+
+        VerifiedToken verified = jwtTokenUtil.verify(token);
+
+        assertEquals("dave", verified.getUsername());
+        assertTrue(verified.getExpiresAt().isAfter(verified.getIssuedAt()));
+        assertSame(verified, jwtTokenUtil.verify(token));
+    }
+
+    @Test
+    @DisplayName("Токен с измененной подписью отклоняется.")
+    public void testVerifyRejectsTamperedToken() {
+        String token = jwtTokenUtil.generateToken(USER);
+        jwtTokenUtil.verify(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtTokenUtil.verify(tampered));
+    }
+
+    @Test
+    @DisplayName("Истекший токен отклоняется и не кешируется.")
+    public void testVerifyRejectsExpiredToken() {
+        JwtTokenUtil expiring = new JwtTokenUtil(SECRET, -2 * 1000 * 60 * 24, 100, new SimpleMeterRegistry());
+        String token = expiring.generateToken(USER);
+
+        assertThrows(ExpiredJwtException.class, () -> expiring.verify(token));
+        assertThrows(ExpiredJwtException.class, () -> expiring.verify(token));
+    }
+
+    @Test
+    @DisplayName("Пустой токен отклоняется.")
+    public void testVerifyRejectsEmptyToken() {
+        assertThrows(IllegalArgumentException.class, () -> jwtTokenUtil.verify(""));
+    }
+}
@@ -0,0 +1,57 @@
+package api.socialmedia.security;
+
+import api.socialmedia.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testing login rate limiter.")
+public class LoginRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final LoginRateLimiter limiter = new LoginRateLimiter(2, 6, 3, 60, 100, meterRegistry, now::get);
+
+    @Test
+    @DisplayName("Сверх емкости корзины логина попытка отклоняется с 429 и временем до нового токена.")
+    public void testUsernameBucketExhausted() {
+        limiter.checkLogin("dave", "10.0.0.1");
+        limiter.checkLogin("dave", "10.0.0.2");
+
+        TooManyRequestsException exc = assertThrows(TooManyRequestsException.class,
+                () -> limiter.checkLogin("dave", "10.0.0.3"));
+        assertEquals(11, exc.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.counter("auth.rate-limited", "scope", "username").count());
+
+        limiter.checkLogin("erin", "10.0.0.3");
+    }
+
+    @Test
+    @DisplayName("Корзина пополняется со временем.")
+    public void testBucketRefills() {
+        limiter.checkLogin("dave", "10.0.0.1");
+        limiter.checkLogin("dave", "10.0.0.1");
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkLogin("dave", "10.0.0.1"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        limiter.checkLogin("dave", "10.0.0.1");
+    }
+
+    @Test
+    @DisplayName("Корзина IP ограничивает попытки с одного адреса на разные логины.")
+    public void testIpBucketExhausted() {
+        limiter.checkLogin("a", "10.0.0.1");
+        limiter.checkLogin("b", "10.0.0.1");
+        limiter.checkIp("10.0.0.1");
+
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkLogin("c", "10.0.0.1"));
+        assertEquals(1, meterRegistry.counter("auth.rate-limited", "scope", "ip").count());
+    }
+}
@@ -0,0 +1,97 @@
+package api.socialmedia.security;
+
+import api.socialmedia.datasource.PrimaryReads;
+import api.socialmedia.entity.Role;
+import api.socialmedia.entity.User;
+import api.socialmedia.model.EnumRoles;
+import api.socialmedia.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing principal cache.")
+public class PrincipalCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private final PrincipalCache principalCache =
+            new PrincipalCache(userRepository, new PrimaryReads(mock(PlatformTransactionManager.class)),
+                    new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
+    private User user() {
+        return User.builder()
+                .id(4L)
+                .username("dave")
+                .password("hash")
+                .roles(Set.of(new Role(EnumRoles.ROLE_USER)))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Принципал читается из базы один раз и содержит id и роли без пароля.")
+    public void testPrincipalLoadedOnce() {
+        when(userRepository.findByUsername("dave")).thenReturn(Optional.of(user()));
+
+        AuthenticatedUser principal = principalCache.get("dave");
+
+        assertEquals(4L, principal.getId());
+        assertNull(principal.getPassword());
+        assertEquals("ROLE_USER", principal.getAuthorities().get(0).getAuthority());
+        assertSame(principal, principalCache.get("dave"));
+        verify(userRepository, times(1)).findByUsername("dave");
+    }
+
+    @Test
+    @DisplayName("Изменение пользователя сбрасывает закешированный принципал.")
+    public void testUserChangeEvictsPrincipal() {
+        when(userRepository.findByUsername("dave")).thenReturn(Optional.of(user()));
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("principalCache", principalCache);
+        PrincipalCacheInvalidator invalidator = new PrincipalCacheInvalidator(beanFactory.getBeanProvider(PrincipalCache.class));
+        principalCache.get("dave");
+
+        invalidator.onUserChanged(user());
+        principalCache.get("dave");
+
+        verify(userRepository, times(2)).findByUsername("dave");
+    }
+
+    @Test
+    @DisplayName("Переименование пользователя сбрасывает принципал, закешированный по прежнему имени.")
+    public void testRenameEvictsPrincipalByOldUsername() {
+        when(userRepository.findByUsername("dave")).thenReturn(Optional.of(user()));
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("principalCache", principalCache);
+        PrincipalCacheInvalidator invalidator = new PrincipalCacheInvalidator(beanFactory.getBeanProvider(PrincipalCache.class));
+        principalCache.get("dave");
+        User renamed = user();
+        invalidator.onUserLoaded(renamed);
+        renamed.setUsername("david");
+
+        invalidator.onUserChanged(renamed);
+        principalCache.get("dave");
+
+        verify(userRepository, times(2)).findByUsername("dave");
+    }
+
+    @Test
+    @DisplayName("Несуществующий пользователь не кешируется.")
+    public void testUnknownUserNotCached() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> principalCache.get("ghost"));
+        assertThrows(UsernameNotFoundException.class, () -> principalCache.get("ghost"));
+
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+}
@@ -0,0 +1,93 @@
+package api.socialmedia.security;
+
+import api.socialmedia.exception.AccessDeniedException;
+import api.socialmedia.exception.UnauthorizedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing STOMP authentication interceptor.")
+public class StompAuthenticationInterceptorTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private final JwtTokenUtil jwtTokenUtil = new JwtTokenUtil(SECRET, 86400000, 100, new SimpleMeterRegistry());
+    private final PrincipalCache principalCache = mock(PrincipalCache.class);
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    private final StompAuthenticationInterceptor interceptor =
+            new StompAuthenticationInterceptor(jwtTokenUtil, principalCache);
+
+    private static Message<byte[]> frame(StompHeaderAccessor accessor) {
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> connect(String authHeader) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (authHeader != null) {
+            accessor.setNativeHeader("auth-token", authHeader);
+        }
+        return frame(accessor);
+    }
+
+    private static Message<byte[]> subscribe(String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        return frame(accessor);
+    }
+
+    @Test
+    @DisplayName("CONNECT с валидным JWT получает принципала с id пользователя.")
+    public void testConnectWithValidToken() {
+        AuthenticatedUser user = new AuthenticatedUser(4L, "dave", List.of());
+        when(principalCache.get("dave")).thenReturn(user);
+        String token = jwtTokenUtil.generateToken(user);
+
+        Message<?> message = interceptor.preSend(connect("Bearer " + token), channel);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        assertEquals(new StompPrincipal(4L), accessor.getUser());
+        assertEquals("4", accessor.getUser().getName());
+    }
+
+    @Test
+    @DisplayName("CONNECT без токена или с поддельным токеном отклоняется.")
+    public void testConnectWithoutValidToken() {
+        assertThrows(UnauthorizedException.class, () -> interceptor.preSend(connect(null), channel));
+        assertThrows(UnauthorizedException.class, () -> interceptor.preSend(connect("Bearer not-a-jwt"), channel));
+        verifyNoInteractions(principalCache);
+    }
+
+    @Test
+    @DisplayName("CONNECT с токеном удаленного пользователя отклоняется.")
+    public void testConnectWithDeletedUser() {
+        String token = jwtTokenUtil.generateToken(new AuthenticatedUser(5L, "ghost", List.of()));
+        when(principalCache.get("ghost")).thenThrow(new UsernameNotFoundException("ghost"));
+
+        assertThrows(UnauthorizedException.class, () -> interceptor.preSend(connect("Bearer " + token), channel));
+    }
+
+    @Test
+    @DisplayName("Подписка разрешена только на свои очереди, SEND запрещен.")
+    public void testSubscriptionsAndSend() {
+        interceptor.preSend(subscribe("/user/queue/messages"), channel);
+
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(subscribe("/queue/messages-user123"), channel));
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(subscribe(null), channel));
+        StompHeaderAccessor send = StompHeaderAccessor.create(StompCommand.SEND);
+        send.setDestination("/queue/messages-user123");
+        assertThrows(AccessDeniedException.class, () -> interceptor.preSend(frame(send), channel));
+    }
+}
@@ -1,20 +1,36 @@
 package api.socialmedia.service;
 
+import api.socialmedia.dto.responce.FileMetadataDto;
 import api.socialmedia.entity.Post;
+import api.socialmedia.exception.FileStorageException;
 import api.socialmedia.exception.PostNotFoundException;
 import api.socialmedia.repository.PostRepository;
+import api.socialmedia.repository.projection.PostFileView;
 import api.socialmedia.service.impl.FileServiceImpl;
+import api.socialmedia.storage.BlobStore;
+import api.socialmedia.storage.StoredBlob;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 
 @ActiveProfiles("test")
@@ -22,38 +38,163 @@ import static org.mockito.Mockito.when;
 @DisplayName("Testing File service functionality.")
 public class FileServiceImplTest {
 
+    private static final String BLOB_KEY = "a".repeat(64);
+
+    private static final byte[] PNG_HEADER = new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0};
+
+    private final SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
     @Mock
     private PostRepository postRepository;
 
+    @Mock
+    private BlobStore blobStore;
+
     @InjectMocks
     private FileServiceImpl fileService;
 
     @Test
-    @DisplayName("Загрузка файла. Должно пройти успешно.")
-    public void testDownloadFileSuccess() {
+    @DisplayName("Сохранение файла в хранилище. Должно пройти успешно.")
+    public void testStoreFileSuccess() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "hello.txt",
+                MediaType.TEXT_PLAIN_VALUE, "Hello, World!".getBytes());
+
+        when(blobStore.put(any(InputStream.class))).thenReturn(new StoredBlob(BLOB_KEY, file.getSize(), true));
+
+        FileMetadataDto result = fileService.storeFile(file);
+
+        assertEquals(BLOB_KEY, result.getBlobKey());
+        assertEquals(file.getSize(), result.getSize());
+        assertEquals(MediaType.TEXT_PLAIN_VALUE, result.getContentType());
+        verify(blobStore).put(any(InputStream.class));
+    }
+
+    @Test
+    @DisplayName("Сохранение файла. Тип содержимого определяется по сигнатуре, а не по заявленному типу.")
+    public void testStoreFileDetectsContentType() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "picture",
+                MediaType.MULTIPART_FORM_DATA_VALUE, PNG_HEADER);
+
+        when(blobStore.put(any(InputStream.class))).thenAnswer(invocation -> {
+            // хранилище должно получить файл целиком, включая прочитанную сигнатуру
+            byte[] stored = invocation.getArgument(0, InputStream.class).readAllBytes();
+            assertArrayEquals(PNG_HEADER, stored);
+            return new StoredBlob(BLOB_KEY, stored.length, true);
+        });
+
+        FileMetadataDto result = fileService.storeFile(file);
+
+        assertEquals(MediaType.IMAGE_PNG_VALUE, result.getContentType());
+    }
+
+    @Test
+    @DisplayName("Сохранение файла. Неразрешенный тип по имени файла сохраняется как application/octet-stream.")
+    public void testStoreFileRejectsUnsafeTypeFromFilename() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "page.html",
+                MediaType.TEXT_HTML_VALUE, "<script>alert(1)</script>".getBytes());
+
+        when(blobStore.put(any(InputStream.class))).thenReturn(new StoredBlob(BLOB_KEY, file.getSize(), true));
+
+        FileMetadataDto result = fileService.storeFile(file);
+
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, result.getContentType());
+    }
+
+    @Test
+    @DisplayName("Сохранение файла. Неразрешенный или неразбираемый заявленный тип сохраняется как application/octet-stream.")
+    public void testStoreFileRejectsUnsafeDeclaredType() throws IOException {
+        when(blobStore.put(any(InputStream.class))).thenReturn(new StoredBlob(BLOB_KEY, 5, false));
+
+        FileMetadataDto svg = fileService.storeFile(new MockMultipartFile("file", "picture",
+                "image/svg+xml", "<svg/>".getBytes()));
+        FileMetadataDto malformed = fileService.storeFile(new MockMultipartFile("file", "picture",
+                "not a type", "hello".getBytes()));
+
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, svg.getContentType());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, malformed.getContentType());
+    }
+
+    @Test
+    @DisplayName("Получение метаданных файла. Должно пройти успешно, блоб не читается.")
+    public void testGetFileMetadataSuccess() {
+        Long postId = 1L;
+        LocalDateTime date = LocalDateTime.now();
+        Post post = new Post(postId, "Title", "Text", BLOB_KEY, 4L, MediaType.IMAGE_PNG_VALUE, 1L, date);
+
+        when(postRepository.findFileViewById(postId)).thenReturn(Optional.of(fileView(post)));
+
+        FileMetadataDto result = fileService.getFileMetadata(postId);
+
+        assertEquals(postId, result.getPostId());
+        assertEquals(BLOB_KEY, result.getBlobKey());
+        assertEquals(4L, result.getSize());
+        assertEquals(MediaType.IMAGE_PNG_VALUE, result.getContentType());
+        assertEquals(date, result.getLastModified());
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    @DisplayName("Неудачная загрузка файла. Должно выбросить исключение.")
+    public void testGetFileMetadata_PostNotFoundException() {
+        Long postId = 1L;
+        when(postRepository.findFileViewById(postId)).thenReturn(Optional.empty());
+        assertThrows(PostNotFoundException.class, () -> fileService.getFileMetadata(postId));
+        verify(postRepository).findFileViewById(postId);
+    }
+
+    @Test
+    @DisplayName("Загрузка файла поста без вложения. Должно выбросить исключение.")
+    public void testGetFileMetadata_NoFile() {
         Long postId = 1L;
-        byte[] fileData = new byte[]{1, 2, 3, 4};
         Post post = new Post();
         post.setId(postId);
-        post.setFileData(fileData);
+        when(postRepository.findFileViewById(postId)).thenReturn(Optional.of(fileView(post)));
+        assertThrows(PostNotFoundException.class, () -> fileService.getFileMetadata(postId));
+    }
 
-        when(postRepository.getPostById(postId)).thenReturn(post);
+    @Test
+    @DisplayName("Загрузка файла. Должно пройти успешно.")
+    public void testDownloadFileSuccess() throws IOException {
+        byte[] fileData = new byte[]{1, 2, 3, 4};
 
-        byte[] result = fileService.downloadFile(postId);
+        when(blobStore.load(BLOB_KEY)).thenReturn(new ByteArrayResource(fileData));
+
+        Resource result = fileService.downloadFile(BLOB_KEY);
 
         assertNotNull(result);
-        assertArrayEquals(fileData, result);
-        verify(postRepository).getPostById(postId);
+        assertArrayEquals(fileData, result.getContentAsByteArray());
+        verify(blobStore).load(BLOB_KEY);
     }
 
     @Test
-    @DisplayName("Неудачная загрузка файла. Должно выбросить исключение.")
-    public void testDownloadFile_PostNotFoundException() {
-        Long postId = 1L;
-        when(postRepository.getPostById(postId)).thenReturn(null);
-        assertThrows(PostNotFoundException.class, () -> fileService.downloadFile(postId));
-        verify(postRepository).getPostById(postId);
+    @DisplayName("Загрузка файла, отсутствующего в хранилище. Должно выбросить исключение.")
+    public void testDownloadFile_MissingBlob() {
+        when(blobStore.load(BLOB_KEY)).thenReturn(new FileSystemResource("/nonexistent/" + BLOB_KEY));
+        assertThrows(FileStorageException.class, () -> fileService.downloadFile(BLOB_KEY));
     }
-}
 
+    private PostFileView fileView(Post post) {
+        return projectionFactory.createProjection(PostFileView.class, post);
+    }
+
+    @Test
+    @DisplayName("Блоб, записанный для несохраненного поста, удаляется, если на него никто не ссылается.")
+    public void testDiscardFileDeletesNewOrphanedBlob() throws IOException {
+        when(postRepository.existsByBlobKey(BLOB_KEY)).thenReturn(false);
+
+        fileService.discardFile(FileMetadataDto.builder().blobKey(BLOB_KEY).newBlob(true).build());
 
+        verify(blobStore).delete(BLOB_KEY);
+    }
+
+    @Test
+    @DisplayName("Уже существовавший блоб и блоб, на который ссылается другой пост, не удаляются.")
+    public void testDiscardFileKeepsSharedBlob() throws IOException {
+        when(postRepository.existsByBlobKey(BLOB_KEY)).thenReturn(true);
+
+        fileService.discardFile(FileMetadataDto.builder().blobKey(BLOB_KEY).newBlob(false).build());
+        fileService.discardFile(FileMetadataDto.builder().blobKey(BLOB_KEY).newBlob(true).build());
+
+        verify(blobStore, never()).delete(any());
+    }
+}
@@ -1,33 +1,44 @@
 package api.socialmedia.service;
 
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
+import api.socialmedia.dto.request.FriendshipBatchRequestDto;
 import api.socialmedia.dto.request.FriendshipRequestDto;
 import api.socialmedia.dto.responce.FollowersResponseDto;
 import api.socialmedia.dto.responce.FriendshipResponseDto;
 import api.socialmedia.entity.Follower;
 import api.socialmedia.entity.Friendship;
 import api.socialmedia.entity.User;
+import api.socialmedia.event.FriendshipCreatedEvent;
+import api.socialmedia.event.FriendshipRemovedEvent;
+import api.socialmedia.exception.AccessDeniedException;
 import api.socialmedia.exception.DuplicateFriendshipRequestException;
 import api.socialmedia.exception.FriendshipNotFoundException;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.RequestNotFoundException;
 import api.socialmedia.repository.FollowerRepository;
 import api.socialmedia.repository.FriendshipRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.service.impl.FriendshipServiceImpl;
+import api.socialmedia.util.AccessTokenManager;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
-import java.util.Arrays;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ActiveProfiles("test")
@@ -47,6 +58,15 @@ public class FriendshipServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private AccessTokenManager tokenManager;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
     @Test
     @DisplayName("Отправка запроса на добавление в друзья. Должно пройти успешно")
     public void testSendFriendshipRequest() {
@@ -66,16 +86,14 @@ public class FriendshipServiceImplTest {
         follower.setReceiver(receiver);
 
 
-        when(followerRepository.existsBySenderIdAndReceiverId(sender.getId(), receiver.getId())).thenReturn(false);
-        when(followerRepository.save(any(Follower.class))).thenReturn(follower);
+        when(followerRepository.saveAndFlush(any(Follower.class))).thenReturn(follower);
         when(userRepository.getById(1L)).thenReturn(sender);
         when(userRepository.getById(2L)).thenReturn(receiver);
 
         FollowersResponseDto responseDto = friendshipService.sendFriendshipRequest(requestDto);
 
         verify(userRepository).getById(1L);
-        verify(followerRepository).existsBySenderIdAndReceiverId(1L, 2L);
-        verify(followerRepository).save(any(Follower.class));
+        verify(followerRepository).saveAndFlush(any(Follower.class));
 
         assertNotNull(responseDto);
     }
@@ -87,10 +105,11 @@ public class FriendshipServiceImplTest {
         requestDto.setSenderId(1L);
         requestDto.setReceiverId(2L);
 
-        when(followerRepository.existsBySenderIdAndReceiverId(1L, 2L)).thenReturn(true);
+        // второй такой же запрос отсекает уникальный индекс (sender_id, receiver_id)
+        when(followerRepository.saveAndFlush(any(Follower.class))).thenThrow(uniqueViolation());
 
         assertThrows(DuplicateFriendshipRequestException.class, () -> friendshipService.sendFriendshipRequest(requestDto));
-        verify(followerRepository).existsBySenderIdAndReceiverId(1L, 2L);
+        verify(followerRepository).saveAndFlush(any(Follower.class));
 
     }
 
@@ -116,20 +135,16 @@ public class FriendshipServiceImplTest {
         newFriendship.setUserTwo(receiver);
 
         when(followerRepository.findById(requestId)).thenReturn(Optional.of(follower));
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(sender.getId(), receiver.getId())).thenReturn(false);
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(receiver.getId(), sender.getId())).thenReturn(false);
-        when(followerRepository.existsByReceiverIdAndSenderId(sender.getId(), receiver.getId())).thenReturn(false);
-        when(friendshipRepository.save(any(Friendship.class))).thenReturn(newFriendship);
-        when(followerRepository.save(any(Follower.class))).thenReturn(follower);
+        when(friendshipRepository.saveAndFlush(any(Friendship.class))).thenReturn(newFriendship);
+        when(followerRepository.insertIfAbsent(receiver.getId(), sender.getId())).thenReturn(1);
 
         FriendshipResponseDto responseDto = friendshipService.acceptFriendshipRequest(requestId);
 
         verify(followerRepository).findById(requestId);
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(sender.getId(), receiver.getId());
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(receiver.getId(), sender.getId());
-        verify(followerRepository).existsByReceiverIdAndSenderId(sender.getId(), receiver.getId());
-        verify(friendshipRepository).save(any(Friendship.class));
-        verify(followerRepository).save(any(Follower.class));
+        verify(friendshipRepository).saveAndFlush(any(Friendship.class));
+        verify(followerRepository).insertIfAbsent(receiver.getId(), sender.getId());
+        verify(userRepository).changeFriendCount(List.of(sender.getId(), receiver.getId()), 1);
+        verify(eventPublisher).publishEvent(new FriendshipCreatedEvent(sender.getId(), receiver.getId()));
 
         assertNotNull(responseDto);
         assertEquals(newFriendship.getId(), responseDto.getId());
@@ -167,43 +182,32 @@ public class FriendshipServiceImplTest {
         follower.setReceiver(receiver);
 
         when(followerRepository.findById(requestId)).thenReturn(Optional.of(follower));
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(sender.getId(), receiver.getId())).thenReturn(true);
+        when(friendshipRepository.saveAndFlush(any(Friendship.class))).thenThrow(uniqueViolation());
 
         assertThrows(DuplicateFriendshipRequestException.class, () -> friendshipService.acceptFriendshipRequest(requestId));
 
         verify(followerRepository).findById(requestId);
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(sender.getId(), receiver.getId());
+        verify(friendshipRepository).saveAndFlush(any(Friendship.class));
         verifyNoMoreInteractions(followerRepository, friendshipRepository);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
     @DisplayName("Удаление дружбы. Должно проходить успешно")
     public void testRemoveFriendship() {
         // Создаем тестовые данные
-        Long removerId = 1L;
-        Long deletedId = 2L;
-
-        User remover = new User();
-        remover.setId(removerId);
-
-        User deleted = new User();
-        deleted.setId(deletedId);
-
-        Friendship friendship = new Friendship();
-        friendship.setUserOne(remover);
-        friendship.setUserTwo(deleted);
+        Long removerId = 2L;
+        Long deletedId = 1L;
 
-        when(friendshipRepository.findByUserOneIdAndUserTwoId(removerId, deletedId)).thenReturn(Optional.of(friendship));
-        when(userRepository.getById(removerId)).thenReturn(remover);
-        when(userRepository.getById(deletedId)).thenReturn(deleted);
+        // дружба хранится как (меньший id, больший id), независимо от того, кто удаляет
+        when(friendshipRepository.deleteByUserIds(deletedId, removerId)).thenReturn(1);
 
         friendshipService.removeFriendship(removerId, deletedId);
 
-        verify(friendshipRepository).findByUserOneIdAndUserTwoId(removerId, deletedId);
-        verify(friendshipRepository).delete(friendship);
-        verify(userRepository).getById(removerId);
-        verify(userRepository).getById(deletedId);
-        verify(followerRepository).deleteBySenderAndReceiver(remover, deleted);
+        verify(friendshipRepository).deleteByUserIds(deletedId, removerId);
+        verify(followerRepository).deleteBySenderIdAndReceiverId(removerId, deletedId);
+        verify(userRepository).changeFriendCount(List.of(removerId, deletedId), -1);
+        verify(eventPublisher).publishEvent(new FriendshipRemovedEvent(removerId, deletedId));
     }
 
     @Test
@@ -212,15 +216,14 @@ public class FriendshipServiceImplTest {
         Long removerId = 1L;
         Long deletedId = 2L;
 
-        when(friendshipRepository.findByUserOneIdAndUserTwoId(removerId, deletedId)).thenReturn(Optional.empty());
-        when(friendshipRepository.findByUserTwoIdAndUserOneId(removerId, deletedId)).thenReturn(Optional.empty());
+        when(friendshipRepository.deleteByUserIds(removerId, deletedId)).thenReturn(0);
 
         assertThrows(FriendshipNotFoundException.class, () -> {
             friendshipService.removeFriendship(removerId, deletedId);
         });
 
-        verify(friendshipRepository).findByUserOneIdAndUserTwoId(removerId, deletedId);
-        verify(friendshipRepository).findByUserTwoIdAndUserOneId(removerId, deletedId);
+        verify(friendshipRepository).deleteByUserIds(removerId, deletedId);
+        verifyNoInteractions(followerRepository, eventPublisher);
     }
 
     @Test
@@ -260,28 +263,95 @@ public class FriendshipServiceImplTest {
     @Test
     @DisplayName("Получение списка дружб пользователя. Должно пройти успешно.")
     public void testGetFriendshipsForUserSuccess() {
-        Long userId = 1L;
+        Long userId = 5L;
+        LocalDateTime date = LocalDateTime.now();
 
-        User user = new User();
-        user.setId(userId);
+        List<FriendshipResponseDto> friendships = List.of(
+                new FriendshipResponseDto(10L, 2L, userId, date),
+                new FriendshipResponseDto(11L, userId, 7L, date));
 
-        Friendship friendship1 = new Friendship();
-        friendship1.setUserOne(user);
-        friendship1.setUserTwo(new User());
+        // репозиторий сразу возвращает DTO, сущности пользователей не загружаются
+        when(friendshipRepository.findAllByUserId(userId)).thenReturn(friendships);
 
-        Friendship friendship2 = new Friendship();
-        friendship2.setUserOne(new User());
-        friendship2.setUserTwo(user);
+        List<FriendshipResponseDto> result = friendshipService.getFriendshipsForUser(userId);
 
-        List<Friendship> friendships = Arrays.asList(friendship1, friendship2);
+        assertEquals(friendships, result);
+        verify(friendshipRepository).findAllByUserId(userId);
+        verifyNoInteractions(userRepository);
+    }
 
-        when(friendshipRepository.findByUserOneIdOrUserTwoId(userId, userId)).thenReturn(friendships);
+    @Test
+    @DisplayName("Пакетная отправка запросов в друзья. Повторяющиеся получатели схлопываются, запросы сохраняются одним пакетом")
+    public void testSendFriendshipRequests() {
+        FriendshipBatchRequestDto requestDto = new FriendshipBatchRequestDto();
+        requestDto.setSenderId(1L);
+        requestDto.setReceiverIds(List.of(2L, 3L, 2L));
 
-        List<FriendshipResponseDto> result = friendshipService.getFriendshipsForUser(userId);
+        User sender = new User();
+        sender.setId(1L);
+        User receiverOne = new User();
+        receiverOne.setId(2L);
+        User receiverTwo = new User();
+        receiverTwo.setId(3L);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(sender, receiverOne, receiverTwo));
+        when(followerRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<FollowersResponseDto> result = friendshipService.sendFriendshipRequests(requestDto);
+
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getReceiverId());
+        assertEquals(3L, result.get(1).getReceiverId());
+        verify(followerRepository).saveAllAndFlush(anyList());
+    }
 
-        assertNotNull(result);
-        assertEquals(friendships.size(), result.size());
+    @Test
+    @DisplayName("Пакетная отправка запросов с уже существующим запросом. Должна выбросить исключение")
+    public void testSendFriendshipRequestsDuplicate() {
+        FriendshipBatchRequestDto requestDto = new FriendshipBatchRequestDto();
+        requestDto.setSenderId(1L);
+        requestDto.setReceiverIds(List.of(2L));
+
+        User sender = new User();
+        sender.setId(1L);
+        User receiver = new User();
+        receiver.setId(2L);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(sender, receiver));
+        when(followerRepository.saveAllAndFlush(anyList())).thenThrow(uniqueViolation());
+
+        assertThrows(DuplicateFriendshipRequestException.class, () -> friendshipService.sendFriendshipRequests(requestDto));
+    }
+
+    @Test
+    @DisplayName("Пакетная отправка запросов без списка получателей. Должна выбросить исключение")
+    public void testSendFriendshipRequestsWithoutReceivers() {
+        FriendshipBatchRequestDto requestDto = new FriendshipBatchRequestDto();
+        requestDto.setSenderId(1L);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+
+        assertThrows(InputDataException.class, () -> friendshipService.sendFriendshipRequests(requestDto));
+        verifyNoInteractions(userRepository, followerRepository);
+    }
+
+    @Test
+    @DisplayName("Пакетная отправка запросов от имени другого пользователя. Должна выбросить исключение")
+    public void testSendFriendshipRequestsOnBehalfOfAnotherUser() {
+        FriendshipBatchRequestDto requestDto = new FriendshipBatchRequestDto();
+        requestDto.setSenderId(1L);
+        requestDto.setReceiverIds(List.of(2L));
+
+        when(tokenManager.getUserId()).thenReturn(3L);
+
+        assertThrows(AccessDeniedException.class, () -> friendshipService.sendFriendshipRequests(requestDto));
+        verifyNoInteractions(userRepository, followerRepository);
+    }
 
-        verify(friendshipRepository).findByUserOneIdOrUserTwoId(userId, userId);
+    private static DataIntegrityViolationException uniqueViolation() {
+        return new DataIntegrityViolationException("duplicate key",
+                new SQLException("duplicate key value violates unique constraint", "23505"));
     }
 }
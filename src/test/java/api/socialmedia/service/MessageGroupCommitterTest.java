@@ -0,0 +1,182 @@
+package api.socialmedia.service;
+
+import api.socialmedia.entity.Message;
+import api.socialmedia.entity.User;
+import api.socialmedia.exception.TooManyRequestsException;
+import api.socialmedia.service.impl.MessageGroupCommitter;
+import api.socialmedia.service.impl.MessageWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Testing message group commit.")
+public class MessageGroupCommitterTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final MessageWriter messageWriter = mock(MessageWriter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MessageGroupCommitter committer;
+
+    @AfterEach
+    public void tearDown() {
+        committer.stop();
+    }
+
+    private MessageGroupCommitter start(Duration batchWindow, int maxBatchSize, int queueCapacity) {
+        committer = new MessageGroupCommitter(messageWriter, meterRegistry, true, batchWindow, maxBatchSize, queueCapacity);
+        committer.start();
+        return committer;
+    }
+
+    private static Message message(String text) {
+        User sender = new User();
+        sender.setId(1L);
+        User receiver = new User();
+        receiver.setId(2L);
+        return new Message(null, sender, receiver, text, LocalDateTime.now());
+    }
+
+    @Test
+    @DisplayName("Сообщения, пришедшие в одно окно, пишутся одной пачкой и подтверждаются после записи.")
+    public void testMessagesInWindowWrittenAsOneBatch() throws Exception {
+        start(Duration.ofMillis(300), 100, 100);
+
+        List<CompletableFuture<Void>> sent = List.of(committer.submit(message("1")),
+                committer.submit(message("2")), committer.submit(message("3")));
+
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        verify(messageWriter).write(argThat(messages -> messages.size() == 3));
+        verifyNoMoreInteractions(messageWriter);
+        assertEquals(3, meterRegistry.get("messages.group-commit.ack").timer().count());
+        assertEquals(3, meterRegistry.get("messages.group-commit.batch").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Полная пачка пишется сразу, не дожидаясь конца окна.")
+    public void testFullBatchWrittenBeforeWindowEnds() throws Exception {
+        start(Duration.ofMinutes(1), 2, 100);
+
+        CompletableFuture<Void> first = committer.submit(message("1"));
+        CompletableFuture<Void> second = committer.submit(message("2"));
+
+        CompletableFuture.allOf(first, second).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        verify(messageWriter).write(argThat(messages -> messages.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Если пачка не записалась, сообщения пишутся по одному, ошибку получает только виновное.")
+    public void testFailedBatchRetriedOneByOne() throws Exception {
+        doThrow(new IllegalStateException("constraint violation"))
+                .when(messageWriter).write(argThat(messages -> messages.stream().anyMatch(m -> m.getText().equals("bad"))));
+        start(Duration.ofMillis(300), 100, 100);
+
+        CompletableFuture<Void> good = committer.submit(message("good"));
+        CompletableFuture<Void> bad = committer.submit(message("bad"));
+
+        good.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        verify(messageWriter, times(3)).write(anyList());
+    }
+
+    @Test
+    @DisplayName("Ошибка записи пачки завершает ее future с ошибкой, а поток записи продолжает работу.")
+    public void testWriterSurvivesError() throws Exception {
+        doThrow(new AssertionError("writer crashed"))
+                .doNothing()
+                .when(messageWriter).write(anyList());
+        start(Duration.ofMillis(1), 100, 100);
+
+        CompletableFuture<Void> failed = committer.submit(message("1"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, e.getCause());
+
+        committer.submit(message("2")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        verify(messageWriter, times(2)).write(anyList());
+    }
+
+    @Test
+    @DisplayName("Когда очередь заполнена, сообщение отклоняется с 429.")
+    public void testRejectedWhenQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(messageWriter).write(anyList());
+        start(Duration.ZERO, 1, 1);
+
+        CompletableFuture<Void> inFlight = committer.submit(message("1"));
+        assertTrue(writing.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        CompletableFuture<Void> queued = committer.submit(message("2"));
+        CompletableFuture<Void> rejected = committer.submit(message("3"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(TooManyRequestsException.class, e.getCause());
+        assertEquals(1, meterRegistry.get("messages.group-commit.rejected").counter().count());
+        release.countDown();
+        CompletableFuture.allOf(inFlight, queued).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("При остановке оставшиеся в очереди сообщения дописываются.")
+    public void testStopWritesQueuedMessages() {
+        start(Duration.ofMinutes(1), 100, 100);
+
+        CompletableFuture<Void> sent = committer.submit(message("1"));
+        committer.stop();
+
+        assertTrue(sent.isDone());
+        assertFalse(sent.isCompletedExceptionally());
+        verify(messageWriter).write(argThat(messages -> messages.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Сообщения, отправленные во время остановки, либо дописываются, либо отклоняются: ни одно не зависает.")
+    public void testNoMessageLostWhileStopping() throws Exception {
+        start(Duration.ofMillis(1), 100, 10_000);
+        List<CompletableFuture<Void>> sent = new CopyOnWriteArrayList<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        ExecutorService senders = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                senders.execute(() -> {
+                    while (!stopped.get()) {
+                        sent.add(committer.submit(message("1")));
+                    }
+                    sent.add(committer.submit(message("after stop")));
+                });
+            }
+            Thread.sleep(50);
+            committer.stop();
+            stopped.set(true);
+            senders.shutdown();
+            assertTrue(senders.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            senders.shutdownNow();
+        }
+
+        assertTrue(sent.stream().allMatch(CompletableFuture::isDone));
+        assertTrue(sent.stream().filter(CompletableFuture::isCompletedExceptionally).count() >= 4);
+    }
+}
@@ -1,31 +1,48 @@
 package api.socialmedia.service;
 
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
 import api.socialmedia.dto.request.MessageRequestDto;
+import api.socialmedia.dto.responce.ConversationResponseDto;
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.MessageResponseDto;
-import api.socialmedia.entity.Friendship;
 import api.socialmedia.entity.Message;
 import api.socialmedia.entity.User;
+import api.socialmedia.event.MessageSentEvent;
+import api.socialmedia.exception.AccessDeniedException;
 import api.socialmedia.exception.FriendshipNotFoundException;
-import api.socialmedia.repository.FriendshipRepository;
+import api.socialmedia.exception.InputDataException;
+import api.socialmedia.graph.FriendGraphIndex;
+import api.socialmedia.repository.ConversationRepository;
 import api.socialmedia.repository.MessageRepository;
 import api.socialmedia.repository.UserRepository;
+import api.socialmedia.service.impl.MessageGroupCommitter;
 import api.socialmedia.service.impl.MessageServiceImpl;
+import api.socialmedia.service.impl.MessageWriter;
+import api.socialmedia.util.AccessTokenManager;
+import api.socialmedia.util.MessageCursor;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ActiveProfiles("test")
@@ -36,15 +53,36 @@ public class MessageServiceImplTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private ConversationRepository conversationRepository;
+
     @Mock
     private UserRepository userRepository;
 
     @Mock
-    private FriendshipRepository friendshipRepository;
+    private FriendGraphIndex friendGraphIndex;
+
+    @Mock
+    private AccessTokenManager tokenManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MessageGroupCommitter groupCommitter;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
 
-    @InjectMocks
     private MessageServiceImpl messageService;
 
+    @BeforeEach
+    public void setUp() {
+        MessageWriter messageWriter = new MessageWriter(messageRepository, conversationRepository, eventPublisher);
+        messageService = new MessageServiceImpl(messageRepository, conversationRepository, userRepository,
+                friendGraphIndex, tokenManager, messageWriter, groupCommitter, readYourWritesTracker);
+    }
+
 
     @Test
     @DisplayName("Отправка сообщения. Должно пройти успешно.")
@@ -61,18 +99,46 @@ public class MessageServiceImplTest {
 
         when(userRepository.findById(senderId)).thenReturn(Optional.of(sender));
         when(userRepository.findById(receiverId)).thenReturn(Optional.of(receiver));
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(senderId, receiverId)).thenReturn(true);
+        when(friendGraphIndex.areFriends(senderId, receiverId)).thenReturn(true);
 
         MessageRequestDto messageRequestDto = new MessageRequestDto();
         messageRequestDto.setSenderId(senderId);
         messageRequestDto.setReceiverId(receiverId);
         messageRequestDto.setText(text);
 
-        messageService.sendMessage(messageRequestDto);
+        CompletableFuture<Void> result = messageService.sendMessage(messageRequestDto);
 
+        assertTrue(result.isDone());
         verify(userRepository).findById(senderId);
         verify(userRepository).findById(receiverId);
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(senderId, receiverId);
+        verify(friendGraphIndex).areFriends(senderId, receiverId);
+        verify(conversationRepository).recordMessages(eq(senderId), eq(receiverId), isNull(), eq(senderId), eq(text),
+                any(LocalDateTime.class), eq(0), eq(1));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof MessageSentEvent sent
+                && sent.getSenderId().equals(senderId) && sent.getReceiverId().equals(receiverId)
+                && sent.getText().equals(text)));
+    }
+
+    @Test
+    @DisplayName("Отправка сообщения при групповой записи. Сообщение уходит в очередь, ответ - future коммита пачки.")
+    public void testSendMessageWithGroupCommit() {
+        User sender = new User();
+        sender.setId(1L);
+        User receiver = new User();
+        receiver.setId(2L);
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(sender));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(receiver));
+        when(friendGraphIndex.areFriends(1L, 2L)).thenReturn(true);
+        when(groupCommitter.isEnabled()).thenReturn(true);
+        when(groupCommitter.submit(any(Message.class))).thenReturn(committed);
+
+        assertSame(committed, messageService.sendMessage(messageRequest(1L, 2L)));
+
+        verify(groupCommitter).submit(argThat(message -> message.getSender() == sender
+                && message.getReceiver() == receiver && message.getText().equals("Привет")));
+        verifyNoInteractions(messageRepository, conversationRepository, eventPublisher);
     }
 
     @Test
@@ -90,7 +156,7 @@ public class MessageServiceImplTest {
 
         when(userRepository.findById(senderId)).thenReturn(Optional.of(sender));
         when(userRepository.findById(receiverId)).thenReturn(Optional.of(receiver));
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(senderId, receiverId)).thenReturn(false);
+        when(friendGraphIndex.areFriends(senderId, receiverId)).thenReturn(false);
 
         MessageRequestDto messageRequestDto = new MessageRequestDto();
         messageRequestDto.setSenderId(senderId);
@@ -101,72 +167,213 @@ public class MessageServiceImplTest {
 
         verify(userRepository).findById(senderId);
         verify(userRepository).findById(receiverId);
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(senderId, receiverId);
-        verifyNoInteractions(messageRepository);
+        verify(friendGraphIndex).areFriends(senderId, receiverId);
+        verifyNoInteractions(messageRepository, conversationRepository);
     }
 
 
 
     @Test
-    @DisplayName("Получение списка сообщений между друзьями. Должно пройти успешно.")
+    @DisplayName("Получение переписки без курсора. Читаются последние сообщения, пара пользователей нормализуется.")
     public void testGetMessagesSuccess() {
+        Long userOneId = 2L;
+        Long userTwoId = 1L;
+        LocalDateTime now = LocalDateTime.now();
+        MessageResponseDto newest = new MessageResponseDto(3L, 2L, 1L, "Hi", now);
+        MessageResponseDto middle = new MessageResponseDto(2L, 1L, 2L, "Hello", now.minusMinutes(1));
+        MessageResponseDto oldest = new MessageResponseDto(1L, 1L, 2L, "Hey", now.minusMinutes(2));
+
+        when(friendGraphIndex.areFriends(userOneId, userTwoId)).thenReturn(true);
+        when(messageRepository.findConversation(1L, 2L, 3))
+                .thenReturn(List.of(newest, middle, oldest));
+
+        CursorPageDto<MessageResponseDto> result = messageService.getMessages(userOneId, userTwoId, null, null, 2);
+
+        assertEquals(List.of(3L, 2L), result.getContent().stream().map(MessageResponseDto::getId).toList());
+        assertTrue(result.isHasNext());
+        assertEquals(MessageCursor.of(middle).encode(), result.getNextCursor());
+        verify(friendGraphIndex).areFriends(userOneId, userTwoId);
+    }
+
+    @Test
+    @DisplayName("Получение переписки с курсором after. Более новые сообщения читаются по возрастанию и отдаются от новых к старым.")
+    public void testGetMessagesAfterCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        MessageCursor cursor = new MessageCursor(now, 5L);
+        MessageResponseDto first = new MessageResponseDto(6L, 1L, 2L, "One", now.plusMinutes(1));
+        MessageResponseDto second = new MessageResponseDto(7L, 2L, 1L, "Two", now.plusMinutes(2));
+
+        when(friendGraphIndex.areFriends(1L, 2L)).thenReturn(true);
+        when(messageRepository.findConversationAfter(1L, 2L, now, 5L, 3))
+                .thenReturn(List.of(first, second));
+
+        CursorPageDto<MessageResponseDto> result = messageService.getMessages(1L, 2L, null, cursor.encode(), 2);
+
+        assertEquals(List.of(7L, 6L), result.getContent().stream().map(MessageResponseDto::getId).toList());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Получение переписки сразу с before и after неудачно. Должно выбросить исключение.")
+    public void testGetMessages_BothCursors() {
+        String cursor = new MessageCursor(LocalDateTime.now(), 5L).encode();
+
+        assertThrows(InputDataException.class, () -> messageService.getMessages(1L, 2L, cursor, cursor, 10));
+
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("Получение списка сообщений неудачно из-за отсутствия дружбы. Должно выбросить исключение.")
+    public void testGetMessages_FriendshipNotFoundException() {
         Long userOneId = 1L;
         Long userTwoId = 2L;
 
+        when(friendGraphIndex.areFriends(userOneId, userTwoId)).thenReturn(false);
+
+        assertThrows(FriendshipNotFoundException.class, () -> messageService.getMessages(userOneId, userTwoId, null, null, 10));
+
+        verify(friendGraphIndex).areFriends(userOneId, userTwoId);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("Пакетная отправка сообщений. Пользователи читаются одним запросом, сообщения сохраняются одним saveAll.")
+    public void testSendMessagesSuccess() {
+        User sender = new User();
+        sender.setId(1L);
+        User receiverOne = new User();
+        receiverOne.setId(2L);
+        User receiverTwo = new User();
+        receiverTwo.setId(3L);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(sender, receiverOne, receiverTwo));
+        when(friendGraphIndex.areFriends(anyLong(), anyLong())).thenReturn(true);
+
+        messageService.sendMessages(List.of(messageRequest(1L, 2L), messageRequest(1L, 3L)));
+
+        verify(userRepository).findAllById(any());
+        verify(messageRepository).saveAll(argThat(messages -> ((List<Message>) messages).size() == 2));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Пакетная отправка в одну переписку. Переписка обновляется одним запросом, непрочитанные суммируются.")
+    public void testSendMessagesRecordsConversationOnce() {
         User userOne = new User();
-        userOne.setId(userOneId);
+        userOne.setId(1L);
+        User userTwo = new User();
+        userTwo.setId(2L);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(userOne, userTwo));
+        when(friendGraphIndex.areFriends(anyLong(), anyLong())).thenReturn(true);
 
+        messageService.sendMessages(List.of(messageRequest(1L, 2L), messageRequest(1L, 2L), messageRequest(1L, 2L)));
+
+        verify(conversationRepository).recordMessages(eq(1L), eq(2L), isNull(), eq(1L), eq("Привет"),
+                any(LocalDateTime.class), eq(0), eq(3));
+        verifyNoMoreInteractions(conversationRepository);
+    }
+
+    @Test
+    @DisplayName("Пакетная отправка в несколько переписок. Переписки обновляются в порядке ключа, а не прихода сообщений.")
+    public void testSendMessagesRecordsConversationsInKeyOrder() {
+        User userOne = new User();
+        userOne.setId(1L);
         User userTwo = new User();
-        userTwo.setId(userTwoId);
+        userTwo.setId(2L);
+        User userThree = new User();
+        userThree.setId(3L);
 
-        Friendship friendship = new Friendship();
-        friendship.setUserOne(userOne);
-        friendship.setUserTwo(userTwo);
+        when(tokenManager.getUserId()).thenReturn(2L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(userOne, userTwo, userThree));
+        when(friendGraphIndex.areFriends(anyLong(), anyLong())).thenReturn(true);
 
-        Message message1 = new Message();
-        message1.setId(1L);
-        message1.setSender(userOne);
-        message1.setReceiver(userTwo);
-        message1.setText("Hello");
-        message1.setDate(LocalDateTime.now());
+        messageService.sendMessages(List.of(messageRequest(2L, 3L), messageRequest(2L, 1L)));
 
-        Message message2 = new Message();
-        message2.setId(2L);
-        message2.setSender(userTwo);
-        message2.setReceiver(userOne);
-        message2.setText("Hi");
-        message2.setDate(LocalDateTime.now());
+        InOrder inOrder = inOrder(conversationRepository);
+        inOrder.verify(conversationRepository).recordMessages(eq(1L), eq(2L), isNull(), eq(2L), eq("Привет"),
+                any(LocalDateTime.class), eq(1), eq(0));
+        inOrder.verify(conversationRepository).recordMessages(eq(2L), eq(3L), isNull(), eq(2L), eq("Привет"),
+                any(LocalDateTime.class), eq(0), eq(1));
+    }
 
-        List<Message> messages = Arrays.asList(message1, message2);
+    @Test
+    @DisplayName("Пакетная отправка неудачна, если одна из пар не дружит. Ничего не сохраняется.")
+    public void testSendMessages_FriendshipNotFoundException() {
+        User sender = new User();
+        sender.setId(1L);
+        User receiverOne = new User();
+        receiverOne.setId(2L);
+        User receiverTwo = new User();
+        receiverTwo.setId(3L);
 
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(userOneId, userTwoId)).thenReturn(true);
-        when(messageRepository.findBySenderIdAndReceiverIdOrSenderIdAndReceiverIdOrderByDateAsc(userOneId, userTwoId, userTwoId, userOneId))
-                .thenReturn(messages);
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(userRepository.findAllById(any())).thenReturn(List.of(sender, receiverOne, receiverTwo));
+        when(friendGraphIndex.areFriends(1L, 2L)).thenReturn(true);
+        when(friendGraphIndex.areFriends(1L, 3L)).thenReturn(false);
 
-        List<MessageResponseDto> result = messageService.getMessages(userOneId, userTwoId);
+        assertThrows(FriendshipNotFoundException.class,
+                () -> messageService.sendMessages(List.of(messageRequest(1L, 2L), messageRequest(1L, 3L))));
 
-        assertNotNull(result);
-        assertEquals(messages.size(), result.size());
+        verifyNoInteractions(messageRepository, conversationRepository);
+    }
 
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(userOneId, userTwoId);
-        verify(messageRepository).findBySenderIdAndReceiverIdOrSenderIdAndReceiverIdOrderByDateAsc(userOneId, userTwoId, userTwoId, userOneId);
+    @Test
+    @DisplayName("Пакетная отправка без списка сообщений. Должна выбросить исключение без обращения к базе.")
+    public void testSendMessages_NullBatch() {
+        assertThrows(InputDataException.class, () -> messageService.sendMessages(null));
+
+        verifyNoInteractions(userRepository, messageRepository);
     }
 
     @Test
-    @DisplayName("Получение списка сообщений неудачно из-за отсутствия дружбы. Должно выбросить исключение.")
-    public void testGetMessages_FriendshipNotFoundException() {
-        Long userOneId = 1L;
-        Long userTwoId = 2L;
+    @DisplayName("Пакетная отправка от имени другого пользователя. Должна выбросить исключение без обращения к базе.")
+    public void testSendMessages_AnotherSender() {
+        when(tokenManager.getUserId()).thenReturn(1L);
 
-        when(friendshipRepository.existsByUserOneIdAndUserTwoId(userOneId, userTwoId)).thenReturn(false);
+        assertThrows(AccessDeniedException.class,
+                () -> messageService.sendMessages(List.of(messageRequest(1L, 2L), messageRequest(3L, 2L))));
 
-        assertThrows(FriendshipNotFoundException.class, () -> messageService.getMessages(userOneId, userTwoId));
+        verifyNoInteractions(userRepository, messageRepository);
+    }
 
-        verify(friendshipRepository).existsByUserOneIdAndUserTwoId(userOneId, userTwoId);
-        verifyNoInteractions(messageRepository);
+    @Test
+    @DisplayName("Получение инбокса по курсору. Читается страница текущего пользователя до курсора.")
+    public void testGetInboxWithCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        MessageCursor cursor = new MessageCursor(now, 10L);
+        ConversationResponseDto newer = new ConversationResponseDto(2L, 9L, 2L, "Hi", now.minusMinutes(1), 1);
+        ConversationResponseDto older = new ConversationResponseDto(3L, 8L, 1L, "Hey", now.minusMinutes(2), 0);
+
+        when(tokenManager.getUserId()).thenReturn(1L);
+        when(conversationRepository.findInboxBefore(1L, now, 10L, 2)).thenReturn(List.of(newer, older));
+
+        CursorPageDto<ConversationResponseDto> result = messageService.getInbox(cursor.encode(), 1);
+
+        assertEquals(List.of(newer), result.getContent());
+        assertTrue(result.isHasNext());
+        assertEquals(MessageCursor.of(newer).encode(), result.getNextCursor());
     }
 
-}
+    @Test
+    @DisplayName("Отметка переписки прочитанной. Обнуляется счетчик текущего пользователя в канонической паре.")
+    public void testMarkConversationRead() {
+        when(tokenManager.getUserId()).thenReturn(5L);
 
+        messageService.markConversationRead(3L);
 
+        verify(conversationRepository).markRead(3L, 5L, 5L);
+    }
 
+    private static MessageRequestDto messageRequest(Long senderId, Long receiverId) {
+        MessageRequestDto messageRequestDto = new MessageRequestDto();
+        messageRequestDto.setSenderId(senderId);
+        messageRequestDto.setReceiverId(receiverId);
+        messageRequestDto.setText("Привет");
+        return messageRequestDto;
+    }
+}
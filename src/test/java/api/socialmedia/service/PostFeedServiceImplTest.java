@@ -1,33 +1,31 @@
 package api.socialmedia.service;
 
+import api.socialmedia.dto.responce.CursorPageDto;
 import api.socialmedia.dto.responce.PostResponseDto;
-import api.socialmedia.entity.Friendship;
-import api.socialmedia.entity.Post;
-import api.socialmedia.entity.User;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.UserNotFoundException;
-import api.socialmedia.mapper.PostMapper;
-import api.socialmedia.repository.FriendshipRepository;
+import api.socialmedia.graph.FriendGraphIndex;
+import api.socialmedia.graph.HighDegreeUsers;
 import api.socialmedia.repository.PostRepository;
 import api.socialmedia.repository.UserRepository;
 import api.socialmedia.service.impl.PostFeedServiceImpl;
+import api.socialmedia.util.PostCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ActiveProfiles("test")
@@ -40,72 +38,106 @@ public class PostFeedServiceImplTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    private FriendshipRepository friendshipRepository;
+    private FriendGraphIndex friendGraphIndex;
     @Mock
-    private PostMapper postMapper;
-    @InjectMocks
+    private HighDegreeUsers highDegreeUsers;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
     private PostFeedServiceImpl postFeedService;
 
     private static final Long USER_ID = 1L;
+    private static final int DEPTH = 800;
+    private static final String FILE_URL = "http://localhost:8080/file/download/";
+
+    private static final long[] FRIEND_IDS = {2L, 9L};
+
+    @BeforeEach
+    public void setUp() {
+        postFeedService = new PostFeedServiceImpl(postRepository, userRepository, friendGraphIndex,
+                highDegreeUsers, meterRegistry, DEPTH);
+        when(friendGraphIndex.friendIds(USER_ID)).thenReturn(FRIEND_IDS);
+        when(highDegreeUsers.intersect(FRIEND_IDS)).thenReturn(new long[0]);
+    }
 
     @Test
     @DisplayName("Получение ленты активности пользователя. Должно пройти успешно.")
     public void testGetUserActivityFeed() {
         // Создаем тестовые данные
-        User user = new User();
-        user.setId(USER_ID);
-
-        User user2 = new User();
-        user2.setId(2L);
-
-        User user3 = new User();
-        user3.setId(3L);
-
-        Friendship friendship1 = new Friendship();
-        friendship1.setUserOne(user);
-        friendship1.setUserTwo(user2);
+        PostResponseDto post1 = post(1L, 2L, LocalDateTime.now());
+        PostResponseDto post2 = post(2L, 2L, LocalDateTime.now().minusHours(1));
 
-        Friendship friendship2 = new Friendship();
-        friendship2.setUserOne(user);
-        friendship2.setUserTwo(user3);
+        List<PostResponseDto> posts = Arrays.asList(post1, post2);
 
-        List<Friendship> friendships = new ArrayList<>();
-        friendships.add(friendship1);
-        friendships.add(friendship2);
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "title"));
 
-        Post post1 = new Post();
-        post1.setId(1L);
-        post1.setDate(LocalDateTime.now().minusHours(1));
+        // мокируем репозитории, лента сразу читается в DTO
+        when(postRepository.findTimeline(USER_ID, PageRequest.of(0, 10))).thenReturn(posts);
 
-        Post post2 = new Post();
-        post2.setId(2L);
-        post2.setDate(LocalDateTime.now());
-
-        List<Post> posts = Arrays.asList(post1, post2);
+        List<PostResponseDto> result = postFeedService.getUserActivityFeed(USER_ID, pageable);
 
-        // Создаем список тестовых id пользователей
-        List<Long> friendIds = Arrays.asList(2L, 3L);
+        // непустая лента бывает только у существующего пользователя, таблица users не читается
+        verifyNoInteractions(userRepository);
+        // порядок ленты задается индексом ленты, пользовательская сортировка отбрасывается
+        verify(postRepository).findTimeline(USER_ID, PageRequest.of(0, 10));
 
-        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "date"));
+        assertNotNull(result);
+        assertEquals(posts.size(), result.size());
+        assertEquals(FILE_URL + 1L, result.get(0).getFileUrl());
+    }
 
-        Page<Post> postPage = new PageImpl<>(posts, pageable, posts.size());
+    @Test
+    @DisplayName("Гибридная лента. Посты друзей с большим числом друзей подтягиваются при чтении и сливаются по дате.")
+    public void testGetUserActivityFeed_PullsHighDegreeAuthors() {
+        LocalDateTime now = LocalDateTime.now();
+        PostResponseDto pushed1 = post(1L, 2L, now.minusMinutes(1));
+        PostResponseDto pushed2 = post(2L, 2L, now.minusMinutes(3));
+        PostResponseDto pulled1 = post(3L, 9L, now);
+        PostResponseDto pulled2 = post(4L, 9L, now.minusMinutes(2));
+
+        when(highDegreeUsers.intersect(FRIEND_IDS)).thenReturn(new long[]{9L});
+        when(postRepository.findTimeline(USER_ID, PageRequest.of(0, 6))).thenReturn(List.of(pushed1, pushed2));
+        when(postRepository.findLatestByUserId(9L, PageRequest.of(0, 6))).thenReturn(List.of(pulled1, pulled2));
+
+        // вторая страница по 3 поста: из 4 постов остается последний
+        List<PostResponseDto> secondPage = postFeedService.getUserActivityFeed(USER_ID, PageRequest.of(1, 3));
+
+        assertEquals(List.of(2L), secondPage.stream().map(PostResponseDto::getId).toList());
+        assertEquals(1, meterRegistry.get("feed.hybrid.merge").timer().count());
+        assertEquals(4.0, meterRegistry.get("feed.hybrid.merge.candidates").summary().totalAmount());
+    }
 
+    @Test
+    @DisplayName("Страница глубже хранимой ленты отклоняется без чтения источников.")
+    public void testGetUserActivityFeed_RejectsDeepOffset() {
+        when(highDegreeUsers.intersect(FRIEND_IDS)).thenReturn(new long[]{9L});
 
-        // мокируем репозитории и маппер
-        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
-        when(friendshipRepository.findByUserOneIdOrUserTwoId(USER_ID, USER_ID)).thenReturn(friendships);
-        when(postRepository.findByUserIdIn(friendIds,pageable)).thenReturn(postPage);
-        when(postMapper.postEntityToPostResponseDto(any(Post.class))).thenReturn(new PostResponseDto());
+        assertThrows(InputDataException.class,
+                () -> postFeedService.getUserActivityFeed(USER_ID, PageRequest.of(DEPTH / 10, 10)));
 
-        List<PostResponseDto> result = postFeedService.getUserActivityFeed(USER_ID, pageable);
+        verifyNoInteractions(postRepository);
+    }
 
-        verify(userRepository).findById(USER_ID);
-        verify(friendshipRepository).findByUserOneIdOrUserTwoId(USER_ID, USER_ID);
-        verify(postRepository).findByUserIdIn(eq(friendIds), eq(pageable));
-        verify(postMapper, times(posts.size())).postEntityToPostResponseDto(any(Post.class));
+    @Test
+    @DisplayName("Лента по курсору. Каждый источник читается после курсора, страница собирается слиянием.")
+    public void testGetUserActivityFeedByCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        PostCursor cursor = new PostCursor(now, 10L);
+        PostResponseDto pushed = post(8L, 2L, now.minusMinutes(2));
+        PostResponseDto pulled1 = post(9L, 9L, now.minusMinutes(1));
+        PostResponseDto pulled2 = post(7L, 9L, now.minusMinutes(3));
+
+        when(highDegreeUsers.intersect(FRIEND_IDS)).thenReturn(new long[]{9L});
+        when(postRepository.findTimelineBefore(USER_ID, now, 10L, PageRequest.of(0, 3))).thenReturn(List.of(pushed));
+        when(postRepository.findLatestByUserIdBefore(9L, now, 10L, PageRequest.of(0, 3))).thenReturn(List.of(pulled1, pulled2));
+
+        CursorPageDto<PostResponseDto> page = postFeedService.getUserActivityFeed(USER_ID, cursor.encode(), 2);
+
+        assertEquals(List.of(9L, 8L), page.getContent().stream().map(PostResponseDto::getId).toList());
+        assertTrue(page.isHasNext());
+        assertEquals(PostCursor.of(pushed).encode(), page.getNextCursor());
+    }
 
-        assertNotNull(result);
-        assertEquals(posts.size(), result.size());
+    private static PostResponseDto post(Long id, Long userId, LocalDateTime date) {
+        return new PostResponseDto(id, "Title", "Text", userId, date);
     }
 
     @Test
@@ -114,11 +146,13 @@ public class PostFeedServiceImplTest {
         Long userId = 1L;
         Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "date"));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(friendGraphIndex.friendIds(userId)).thenReturn(new long[0]);
+        when(highDegreeUsers.intersect(new long[0])).thenReturn(new long[0]);
+        when(userRepository.existsById(userId)).thenReturn(false);
 
         assertThrows(UserNotFoundException.class,
                 () -> postFeedService.getUserActivityFeed(userId, pageable));
 
-        verify(userRepository).findById(userId);
+        verify(userRepository).existsById(userId);
     }
 }
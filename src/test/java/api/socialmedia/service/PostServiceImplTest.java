@@ -1,19 +1,28 @@
 package api.socialmedia.service;
 
+import api.socialmedia.datasource.ReadYourWritesTracker;
 import api.socialmedia.dto.request.PostRequestDto;
+import api.socialmedia.dto.responce.CursorPageDto;
+import api.socialmedia.dto.responce.FileMetadataDto;
 import api.socialmedia.dto.responce.PostResponseDto;
 import api.socialmedia.entity.Post;
+import api.socialmedia.event.PostPublishedEvent;
+import api.socialmedia.event.PostUpdatedEvent;
 import api.socialmedia.exception.AccessDeniedException;
+import api.socialmedia.exception.InputDataException;
 import api.socialmedia.exception.PostNotFoundException;
 import api.socialmedia.mapper.PostMapper;
 import api.socialmedia.repository.PostRepository;
 import api.socialmedia.service.impl.PostServiceImpl;
 import api.socialmedia.util.AccessTokenManager;
+import api.socialmedia.util.PostCursor;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
@@ -49,6 +58,15 @@ public class PostServiceImplTest {
     @Mock
     private AccessTokenManager tokenManager;
 
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
     public static final MockMultipartFile MOCK_MULTIPART_FILE
             = new MockMultipartFile(
             "file",
@@ -58,6 +76,9 @@ public class PostServiceImplTest {
     );
 
     private static final String FILE_URL = "http://localhost:8080/file/download/1";
+    private static final String FILE_URL_PREFIX = "http://localhost:8080/file/download/";
+
+    private static final String BLOB_KEY = "a".repeat(64);
 
 
     @Test
@@ -72,8 +93,13 @@ public class PostServiceImplTest {
 
         // мокаем зависимости
 
-        Post post = new Post(1L, "post_one", "text*test*text", file.getBytes(), userId, date);
+        Post post = new Post(1L, "post_one", "text*test*text", null, null, null, userId, date);
         when(postMapper.postRequestDtoToPostEntity(requestDto)).thenReturn(post);
+        when(fileService.storeFile(file)).thenReturn(FileMetadataDto.builder()
+                .blobKey(BLOB_KEY)
+                .size(file.getSize())
+                .contentType(MediaType.TEXT_PLAIN_VALUE)
+                .build());
         when(postRepository.save(any(Post.class))).thenReturn(post);
         when(postMapper.postEntityToPostResponseDto(post)).thenReturn(expectedResponseDto);
 
@@ -81,7 +107,30 @@ public class PostServiceImplTest {
         PostResponseDto responseDto = postService.createPost(requestDto, file);
         assertEquals(userId, responseDto.getUserId());
         assertEquals(requestDto.getText(), responseDto.getText());
+        assertEquals(BLOB_KEY, post.getBlobKey());
+        assertEquals(file.getSize(), post.getFileSize());
+        assertEquals(MediaType.TEXT_PLAIN_VALUE, post.getContentType());
+        verify(eventPublisher).publishEvent(new PostPublishedEvent(post.getId(), post.getUserId()));
+    }
 
+    @Test
+    @DisplayName("Создать пост. Пост не сохранился - записанный для него файл удаляется.")
+    public void testCreatePost_saveFailedDiscardsFile() {
+        PostRequestDto requestDto = new PostRequestDto("post_one", "text*test*text");
+        FileMetadataDto storedFile = FileMetadataDto.builder()
+                .blobKey(BLOB_KEY)
+                .size(MOCK_MULTIPART_FILE.getSize())
+                .contentType(MediaType.TEXT_PLAIN_VALUE)
+                .newBlob(true)
+                .build();
+        when(postMapper.postRequestDtoToPostEntity(requestDto)).thenReturn(new Post());
+        when(fileService.storeFile(MOCK_MULTIPART_FILE)).thenReturn(storedFile);
+        when(postRepository.save(any(Post.class))).thenThrow(new DataIntegrityViolationException("insert failed"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> postService.createPost(requestDto, MOCK_MULTIPART_FILE));
+
+        verify(fileService).discardFile(storedFile);
+        verifyNoInteractions(eventPublisher, readYourWritesTracker);
     }
 
     @Test
@@ -99,10 +148,10 @@ public class PostServiceImplTest {
     @DisplayName("Получить пост по ID. Должен пройти успешно")
     public void testFindByIdValidPost() {
         Long postId = 1L;
-        Post post = new Post(postId, "Title", "Text", new byte[0], 1L, LocalDateTime.now());
+        Post post = new Post(postId, "Title", "Text", BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, 1L, LocalDateTime.now());
 
         //мокируем репозиторий
-        when(postRepository.getPostById(postId)).thenReturn(post);
+        when(postRepository.findById(postId)).thenReturn(Optional.of(post));
 
         //мокируем маппер
         PostResponseDto responseDto = new PostResponseDto(post.getId(), post.getTitle(), post.getText(), FILE_URL + post.getId(), post.getUserId(), post.getDate());
@@ -114,10 +163,10 @@ public class PostServiceImplTest {
     }
 
     @Test
-    @DisplayName("Получить пост по ID. Возврат null - PostNotFoundException")
+    @DisplayName("Получить пост по ID. Поста нет - PostNotFoundException")
     public void testFindByIdNonexistentPost_PostNotFoundException404() {
         Long postId = 1L;
-        when(postRepository.getPostById(postId)).thenReturn(null);
+        when(postRepository.findById(postId)).thenReturn(Optional.empty());
         //ожидаем ошибку
         assertThrows(PostNotFoundException.class, () -> postService.findById(postId));
     }
@@ -129,12 +178,12 @@ public class PostServiceImplTest {
         Long postId = 1L;
 
         PostRequestDto editRequest = new PostRequestDto("Updated Title", "Updated Text");
-        Post postFromDB = new Post(postId, "Title", "Text", new byte[0], userId, LocalDateTime.now());
+        Post postFromDB = new Post(postId, "Title", "Text", BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, userId, LocalDateTime.now());
 
         when(tokenManager.getUserId()).thenReturn(userId);
         when(postRepository.findById(postId)).thenReturn(Optional.of(postFromDB));
 
-        Post updatedPost = new Post(postId, editRequest.getTitle(), editRequest.getText(), new byte[0], userId, LocalDateTime.now());
+        Post updatedPost = new Post(postId, editRequest.getTitle(), editRequest.getText(), BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, userId, LocalDateTime.now());
         when(postRepository.save(any())).thenReturn(updatedPost);
 
         when(postMapper.postEntityToPostResponseDto(updatedPost)).thenReturn(
@@ -151,6 +200,8 @@ public class PostServiceImplTest {
 
         verify(postRepository, times(1)).findById(postId);
         verify(postRepository, times(1)).save(any());
+        verify(eventPublisher).publishEvent(new PostUpdatedEvent(postId, userId));
+        verify(eventPublisher, never()).publishEvent(any(PostPublishedEvent.class));
     }
 
     @Test()
@@ -161,7 +212,7 @@ public class PostServiceImplTest {
         Long postId = 1L;
 
         PostRequestDto editRequest = new PostRequestDto("Updated Title", "Updated Text");
-        Post postFromDB = new Post(postId, "Title", "Text", new byte[0], userId, LocalDateTime.now());
+        Post postFromDB = new Post(postId, "Title", "Text", BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, userId, LocalDateTime.now());
 
         when(tokenManager.getUserId()).thenReturn(deniedUserId);
         when(postRepository.findById(postId)).thenReturn(Optional.of(postFromDB));
@@ -188,7 +239,7 @@ public class PostServiceImplTest {
         Long userId = 1L;
         Long postId = 1L;
 
-        Post postFromDB = new Post(postId, "Title", "Text", new byte[0], userId, LocalDateTime.now());
+        Post postFromDB = new Post(postId, "Title", "Text", BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, userId, LocalDateTime.now());
 
         when(tokenManager.getUserId()).thenReturn(userId);
         when(postRepository.findById(postId)).thenReturn(Optional.of(postFromDB));
@@ -197,6 +248,7 @@ public class PostServiceImplTest {
 
         verify(postRepository, times(1)).findById(postId);
         verify(postRepository, times(1)).deleteById(postId);
+        verify(readYourWritesTracker).recordWrite(userId);
     }
 
     @Test()
@@ -205,7 +257,7 @@ public class PostServiceImplTest {
         Long userId = 1L;
         Long postId = 1L;
 
-        Post postFromDB = new Post(postId, "Title", "Text", new byte[0], userId + 1, LocalDateTime.now());
+        Post postFromDB = new Post(postId, "Title", "Text", BLOB_KEY, 0L, MediaType.TEXT_PLAIN_VALUE, userId + 1, LocalDateTime.now());
 
         when(tokenManager.getUserId()).thenReturn(userId);
         when(postRepository.findById(postId)).thenReturn(Optional.of(postFromDB));
@@ -232,25 +284,66 @@ public class PostServiceImplTest {
         int pageSize = 10;
         Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "date"));
 
-        List<Post> mockPosts = new ArrayList<>();
-        mockPosts.add(new Post(1L, "Title 1", "Text 1", new byte[0], 1L, LocalDateTime.now()));
-        mockPosts.add(new Post(2L, "Title 2", "Text 2", new byte[0], 2L, LocalDateTime.now()));
-
-        // мокируем репозиторий
-        Page<Post> mockPage = new PageImpl<>(mockPosts);
-        when(postRepository.findAll(pageable)).thenReturn(mockPage);
+        List<PostResponseDto> mockPosts = new ArrayList<>();
+        mockPosts.add(new PostResponseDto(1L, "Title 1", "Text 1", 1L, LocalDateTime.now()));
+        mockPosts.add(new PostResponseDto(2L, "Title 2", "Text 2", 2L, LocalDateTime.now()));
 
-        // мокируем маппер
-        PostResponseDto responseDto1 = new PostResponseDto(1L, "Title 1", "Text 1", FILE_URL + 1L, 1L, LocalDateTime.now());
-        PostResponseDto responseDto2 = new PostResponseDto(2L, "Title 2", "Text 2", FILE_URL + 2L, 2L, LocalDateTime.now());
-        when(postMapper.postEntityToPostResponseDto(mockPosts.get(0))).thenReturn(responseDto1);
-        when(postMapper.postEntityToPostResponseDto(mockPosts.get(1))).thenReturn(responseDto2);
+        // мокируем репозиторий, он сразу возвращает DTO без ссылки на файл
+        Page<PostResponseDto> mockPage = new PageImpl<>(mockPosts);
+        when(postRepository.findAllResponses(pageable)).thenReturn(mockPage);
 
         Page<PostResponseDto> result = postService.getAllPosts(pageable);
 
         assertEquals(mockPage.getTotalElements(), result.getTotalElements());
-        assertEquals(responseDto1, result.getContent().get(0));
-        assertEquals(responseDto2, result.getContent().get(1));
+        assertEquals(FILE_URL_PREFIX + 1L, result.getContent().get(0).getFileUrl());
+        assertEquals(FILE_URL_PREFIX + 2L, result.getContent().get(1).getFileUrl());
+        verifyNoInteractions(postMapper);
+    }
+
+    @Test
+    @DisplayName("Получить посты по курсору. Первая страница, есть следующая.")
+    public void testGetPostsFirstPage() {
+        LocalDateTime date = LocalDateTime.now();
+        PostResponseDto post1 = new PostResponseDto(3L, "Title 3", "Text 3", 1L, date);
+        PostResponseDto post2 = new PostResponseDto(2L, "Title 2", "Text 2", 1L, date.minusMinutes(1));
+        PostResponseDto post3 = new PostResponseDto(1L, "Title 1", "Text 1", 1L, date.minusMinutes(2));
+
+        // читаем на один пост больше размера страницы, чтобы узнать, есть ли следующая
+        when(postRepository.findLatest(PageRequest.of(0, 3))).thenReturn(List.of(post1, post2, post3));
+
+        CursorPageDto<PostResponseDto> result = postService.getPosts(null, 2);
+
+        assertEquals(2, result.getContent().size());
+        assertEquals(FILE_URL_PREFIX + 3L, result.getContent().get(0).getFileUrl());
+        assertTrue(result.isHasNext());
+        assertEquals(PostCursor.of(post2).encode(), result.getNextCursor());
+        verify(postRepository, never()).findAllResponses(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Получить посты пользователя по курсору. Последняя страница.")
+    public void testGetUsersPostsAfterCursor() {
+        Long userId = 1L;
+        LocalDateTime date = LocalDateTime.now();
+        PostResponseDto post = new PostResponseDto(1L, "Title 1", "Text 1", userId, date);
+        String cursor = new PostCursor(date.plusMinutes(1), 2L).encode();
+
+        when(postRepository.findLatestByUserIdBefore(userId, date.plusMinutes(1), 2L, PageRequest.of(0, 11)))
+                .thenReturn(List.of(post));
+
+        CursorPageDto<PostResponseDto> result = postService.getUsersPosts(userId, cursor, 10);
+
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Получить посты по курсору. Некорректный курсор.")
+    public void testGetPosts_InvalidCursor() {
+        assertThrows(InputDataException.class, () -> postService.getPosts("not-a-cursor", 10));
+        assertThrows(InputDataException.class, () -> postService.getPosts(null, 0));
+        verifyNoInteractions(postRepository);
     }
 
     @Test
@@ -261,8 +354,8 @@ public class PostServiceImplTest {
         Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "date"));
 
         // мокируем репозиторий, он должен вернуть пустой Page
-        Page<Post> emptyPage = new PageImpl<>(Collections.emptyList());
-        when(postRepository.findAll(pageable)).thenReturn(emptyPage);
+        Page<PostResponseDto> emptyPage = new PageImpl<>(Collections.emptyList());
+        when(postRepository.findAllResponses(pageable)).thenReturn(emptyPage);
 
         assertThrows(PostNotFoundException.class, () -> postService.getAllPosts(pageable));
     }
@@ -276,25 +369,19 @@ public class PostServiceImplTest {
         Long userId = 1L;
         Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "date"));
 
-        List<Post> mockPosts = new ArrayList<>();
-        mockPosts.add(new Post(1L, "Title 1", "Text 1", new byte[0], userId, LocalDateTime.now()));
-        mockPosts.add(new Post(2L, "Title 2", "Text 2", new byte[0], userId, LocalDateTime.now()));
+        List<PostResponseDto> mockPosts = new ArrayList<>();
+        mockPosts.add(new PostResponseDto(1L, "Title 1", "Text 1", userId, LocalDateTime.now()));
+        mockPosts.add(new PostResponseDto(2L, "Title 2", "Text 2", userId, LocalDateTime.now()));
 
-        // мокируем репозиторий
-        Page<Post> mockPage = new PageImpl<>(mockPosts);
+        // мокируем репозиторий, он сразу возвращает DTO без ссылки на файл
+        Page<PostResponseDto> mockPage = new PageImpl<>(mockPosts);
         when(postRepository.findAllByUserId(userId, pageable)).thenReturn(mockPage);
 
-        // мокируем маппер, должен вернуть PostResponseDto
-        PostResponseDto responseDto1 = new PostResponseDto(1L, "Title 1", "Text 1", FILE_URL + 1L, userId, LocalDateTime.now());
-        PostResponseDto responseDto2 = new PostResponseDto(2L, "Title 2", "Text 2", FILE_URL + 2L, userId, LocalDateTime.now());
-        when(postMapper.postEntityToPostResponseDto(mockPosts.get(0))).thenReturn(responseDto1);
-        when(postMapper.postEntityToPostResponseDto(mockPosts.get(1))).thenReturn(responseDto2);
-
         Page<PostResponseDto> result = postService.getAllUsersPosts(pageable, userId);
 
         assertEquals(mockPage.getTotalElements(), result.getTotalElements());
-        assertEquals(responseDto1, result.getContent().get(0));
-        assertEquals(responseDto2, result.getContent().get(1));
+        assertEquals(FILE_URL_PREFIX + 1L, result.getContent().get(0).getFileUrl());
+        assertEquals(FILE_URL_PREFIX + 2L, result.getContent().get(1).getFileUrl());
     }
 
     @Test
@@ -306,7 +393,7 @@ public class PostServiceImplTest {
         Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "date"));
 
         // мокируем репозиторий, он должен вернуть пустой Page
-        Page<Post> emptyPage = new PageImpl<>(Collections.emptyList());
+        Page<PostResponseDto> emptyPage = new PageImpl<>(Collections.emptyList());
         when(postRepository.findAllByUserId(userId, pageable)).thenReturn(emptyPage);
 
         assertThrows(PostNotFoundException.class, () -> postService.getAllUsersPosts(pageable, userId));
@@ -0,0 +1,77 @@
+package api.socialmedia.service;
+
+import api.socialmedia.graph.HighDegreeUsers;
+import api.socialmedia.repository.TimelineEntryRepository;
+import api.socialmedia.service.impl.TimelineServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@DisplayName("Testing Timeline service functionality.")
+public class TimelineServiceImplTest {
+
+    private static final int DEPTH = 100;
+
+    @Mock
+    private TimelineEntryRepository timelineEntryRepository;
+
+    @Mock
+    private HighDegreeUsers highDegreeUsers;
+
+    private TimelineServiceImpl timelineService;
+
+    @BeforeEach
+    public void setUp() {
+        timelineService = new TimelineServiceImpl(timelineEntryRepository, highDegreeUsers, DEPTH);
+    }
+
+    @Test
+    @DisplayName("Рассылка поста друзьям. Ленты получателей обрезаются до глубины после вставки.")
+    public void testFanOut() {
+        timelineService.fanOut(10L, 1L);
+
+        InOrder inOrder = inOrder(timelineEntryRepository);
+        inOrder.verify(timelineEntryRepository).fanOut(10L, 1L);
+        inOrder.verify(timelineEntryRepository).trimFriendsTimelines(1L, DEPTH);
+    }
+
+    @Test
+    @DisplayName("Пост автора с числом друзей выше порога не рассылается, разосланные ранее записи удаляются.")
+    public void testFanOut_HighDegreeAuthor() {
+        when(highDegreeUsers.contains(1L)).thenReturn(true);
+
+        timelineService.fanOut(10L, 1L);
+
+        verify(timelineEntryRepository).deleteByPostId(10L);
+        verifyNoMoreInteractions(timelineEntryRepository);
+    }
+
+    @Test
+    @DisplayName("Новая дружба. Ленты обоих пользователей дополняются постами друг друга.")
+    public void testBackfill() {
+        timelineService.backfill(1L, 2L);
+
+        verify(timelineEntryRepository).backfill(1L, 2L, DEPTH);
+        verify(timelineEntryRepository).backfill(2L, 1L, DEPTH);
+        verify(timelineEntryRepository).trimTimeline(1L, DEPTH);
+        verify(timelineEntryRepository).trimTimeline(2L, DEPTH);
+    }
+
+    @Test
+    @DisplayName("Удаление дружбы. Посты бывших друзей убираются из обеих лент.")
+    public void testEvict() {
+        timelineService.evict(1L, 2L);
+
+        verify(timelineEntryRepository).deleteByRecipientIdAndAuthorId(1L, 2L);
+        verify(timelineEntryRepository).deleteByRecipientIdAndAuthorId(2L, 1L);
+    }
+}
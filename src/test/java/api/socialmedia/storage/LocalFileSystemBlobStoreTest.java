@@ -0,0 +1,81 @@
+package api.socialmedia.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testing local file system blob store.")
+public class LocalFileSystemBlobStoreTest {
+
+    // SHA-256 от "Hello, World!"
+    private static final String HELLO_KEY = "dffd6021bb2bd5b0af676290809ec3a53191dd81c7f70a4b28688a362182986f";
+
+    @TempDir
+    Path root;
+
+    @Test
+    @DisplayName("Сохранение блоба. Ключ - SHA-256 содержимого, файл лежит в шардированном каталоге.")
+    public void testPutStoresContentAddressedBlob() throws IOException {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+        StoredBlob blob = store.put(stream("Hello, World!"));
+
+        assertEquals(HELLO_KEY, blob.getKey());
+        assertEquals(13, blob.getSize());
+        assertTrue(Files.exists(root.resolve("df").resolve("fd").resolve(HELLO_KEY)));
+        try (InputStream in = store.load(blob.getKey()).getInputStream()) {
+            assertEquals("Hello, World!", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("Повторное сохранение того же содержимого не создает копию и не оставляет временных файлов.")
+    public void testPutDeduplicates() throws IOException {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+        StoredBlob first = store.put(stream("Hello, World!"));
+        StoredBlob second = store.put(stream("Hello, World!"));
+
+        assertEquals(first.getKey(), second.getKey());
+        assertTrue(first.isCreated());
+        assertFalse(second.isCreated());
+        try (Stream<Path> tmp = Files.list(root.resolve("tmp"))) {
+            assertEquals(0, tmp.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Удаление блоба. Повторное удаление не считается ошибкой.")
+    public void testDelete() throws IOException {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+        StoredBlob blob = store.put(stream("Hello, World!"));
+
+        store.delete(blob.getKey());
+        store.delete(blob.getKey());
+
+        assertFalse(store.exists(blob.getKey()));
+    }
+
+    @Test
+    @DisplayName("Некорректный ключ блоба отклоняется.")
+    public void testInvalidKeyRejected() {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root);
+
+        assertThrows(IllegalArgumentException.class, () -> store.load("../../etc/passwd"));
+        assertFalse(store.exists("a".repeat(64)));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package api.socialmedia.util;
+
+import api.socialmedia.dto.responce.PostResponseDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testing feed k-way merge.")
+public class FeedMergerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    @Test
+    @DisplayName("Источники сливаются по дате по убыванию, при равной дате - по id.")
+    public void testMergeOrdersByDateThenId() {
+        List<PostResponseDto> timeline = List.of(post(5L, 0), post(3L, 2), post(1L, 4));
+        List<PostResponseDto> author = List.of(post(6L, 1), post(4L, 2), post(2L, 5));
+
+        List<PostResponseDto> merged = FeedMerger.merge(List.of(timeline, author), 0, 10);
+
+        assertEquals(List.of(5L, 6L, 4L, 3L, 1L, 2L), ids(merged));
+    }
+
+    @Test
+    @DisplayName("Пост из нескольких источников попадает в ленту один раз, пагинация учитывает дубли.")
+    public void testMergeSkipsDuplicatesAndPages() {
+        List<PostResponseDto> timeline = List.of(post(4L, 0), post(3L, 1), post(2L, 2));
+        List<PostResponseDto> author = List.of(post(4L, 0), post(2L, 2), post(1L, 3));
+
+        assertEquals(List.of(4L, 3L), ids(FeedMerger.merge(List.of(timeline, author), 0, 2)));
+        assertEquals(List.of(2L, 1L), ids(FeedMerger.merge(List.of(timeline, author), 2, 2)));
+        assertTrue(FeedMerger.merge(List.of(timeline, author), 4, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Пустые источники не мешают слиянию.")
+    public void testMergeWithEmptySources() {
+        assertTrue(FeedMerger.merge(List.of(), 0, 10).isEmpty());
+        assertEquals(List.of(1L), ids(FeedMerger.merge(List.of(List.of(), List.of(post(1L, 0))), 0, 10)));
+    }
+
+    private static PostResponseDto post(Long id, int minutesAgo) {
+        PostResponseDto post = new PostResponseDto();
+        post.setId(id);
+        post.setDate(NOW.minusMinutes(minutesAgo));
+        return post;
+    }
+
+    private static List<Long> ids(List<PostResponseDto> posts) {
+        return posts.stream().map(PostResponseDto::getId).toList();
+    }
+}